@@ -0,0 +1,52 @@
+package minesweeper.benchmarks;
+
+import minesweeper.ConcurrentField;
+import minesweeper.FieldGenerator;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Builds the boards the benchmarks run on from their parameter strings
+ */
+final class Boards {
+    /** Seed of the first layout, every run of a benchmark sees the same boards */
+    static final long SEED = 0x5EEDL;
+    /** Invocations timed together by the benchmarks too short to time one by one */
+    static final int BATCH = 32;
+
+    private Boards() {
+    }
+
+    /**
+     * Creates a reproducible field from a size given as width x height / mines
+     * @param board the board, for example 40x20/99
+     * @return the field, generated on the common pool
+     */
+    static FieldGenerator create(String board) {
+        int[] size = parse(board);
+        return new FieldGenerator(size[0], size[1], size[2], SEED, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a field many threads can play, from a size given as width x height / mines
+     * @param board the board, for example 40x20/99
+     * @param seed the seed of the layout
+     * @return the field, generated on the common pool
+     */
+    static ConcurrentField createConcurrent(String board, long seed) {
+        int[] size = parse(board);
+        return new ConcurrentField(size[0], size[1], size[2], seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses a size given as width x height / mines
+     * @param board the board, for example 40x20/99
+     * @return the width, height and mines
+     */
+    private static int[] parse(String board) {
+        int cross = board.indexOf('x');
+        int slash = board.indexOf('/');
+        return new int[] {Integer.parseInt(board.substring(0, cross)),
+                Integer.parseInt(board.substring(cross + 1, slash)), Integer.parseInt(board.substring(slash + 1))};
+    }
+}
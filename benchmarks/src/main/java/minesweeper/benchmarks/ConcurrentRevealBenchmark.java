@@ -0,0 +1,101 @@
+package minesweeper.benchmarks;
+
+import minesweeper.ConcurrentField;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads clearing one board together. Each thread reveals every safe space
+ * in its own band of rows, and the flood fills cross into the other bands
+ * and race for the same spaces there. The total work doesn't depend on the
+ * number of threads, so with more cores the board should clear sooner
+ * instead of queueing up behind each other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ConcurrentRevealBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"2000x2000/600000"})
+    public String board;
+
+    private ExecutorService executor;
+    private ConcurrentField field;
+    private long seed = Boards.SEED;
+
+    @Setup(Level.Trial)
+    public void startThreads() {
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopThreads() {
+        executor.shutdown();
+    }
+
+    @Setup(Level.Invocation)
+    public void createField() {
+        field = Boards.createConcurrent(board, ++seed);
+    }
+
+    @Benchmark
+    public boolean clear() throws InterruptedException, ExecutionException {
+        List<Callable<Void>> sweeps = new ArrayList<Callable<Void>>();
+        for (int t = 0; t < threads; t++) {
+            final int fromRow = t * field.getHeight() / threads;
+            final int toRow = (t + 1) * field.getHeight() / threads;
+            sweeps.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    sweep(fromRow, toRow);
+                    return null;
+                }
+            });
+        }
+        for (Future<Void> sweep : executor.invokeAll(sweeps)) {
+            sweep.get();
+        }
+        return field.getGameWin();
+    }
+
+    /**
+     * Reveals every safe space in a band of rows
+     * @param fromRow the first row of the band
+     * @param toRow the row after the last one of the band
+     */
+    private void sweep(int fromRow, int toRow) {
+        int width = field.getWidth();
+        for (int y = fromRow; y < toRow; y++) {
+            for (int x = 0; x < width; x++) {
+                if (field.getFieldValue(x, y) != -1) {
+                    field.revealSpace(x, y);
+                }
+            }
+        }
+    }
+}
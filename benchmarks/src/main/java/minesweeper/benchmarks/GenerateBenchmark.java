@@ -0,0 +1,48 @@
+package minesweeper.benchmarks;
+
+import minesweeper.FieldGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Field generation at the presets and at large sizes and densities. The
+ * field's storage is reused, so this is the layout and the number counting,
+ * not the allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class GenerateBenchmark {
+    @Param({"9x9/10", "16x16/40", "30x16/99", "40x20/99", "1000x1000/100000", "1000x1000/300000",
+            "10000x10000/10000000", "10000x10000/20000000"})
+    public String board;
+
+    private FieldGenerator field;
+    private long seed;
+
+    @Setup
+    public void setup() {
+        field = Boards.create(board);
+        seed = Boards.SEED;
+    }
+
+    @Benchmark
+    public FieldGenerator generateField() {
+        field.reset(++seed);
+        return field;
+    }
+}
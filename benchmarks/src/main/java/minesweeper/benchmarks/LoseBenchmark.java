@@ -0,0 +1,68 @@
+package minesweeper.benchmarks;
+
+import minesweeper.FieldGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Revealing every mine when a game is lost, on a board that has been
+ * opened up by a first click and had a few flags placed. Like the reveals,
+ * each iteration loses a batch of games played before it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, batchSize = Boards.BATCH)
+@Measurement(iterations = 30, batchSize = Boards.BATCH)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@OperationsPerInvocation(Boards.BATCH)
+public class LoseBenchmark {
+    @Param({"30x16/99", "1000x1000/150000"})
+    public String board;
+
+    private final FieldGenerator[] fields = new FieldGenerator[Boards.BATCH];
+    private int next;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void createFields() {
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = Boards.create(board);
+            fields[i].setFirstClickOpening(true);
+        }
+        seed = Boards.SEED;
+    }
+
+    @Setup(Level.Iteration)
+    public void playFields() {
+        for (FieldGenerator field : fields) {
+            field.reset(++seed);
+            field.revealSpace(field.getWidth() / 2, field.getHeight() / 2);
+            // Flag along the top row, some right and some wrong
+            for (int x = 0; x < field.getWidth(); x += 3) {
+                field.markMine(x, 0);
+            }
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public FieldGenerator loseGame() {
+        FieldGenerator field = fields[next++];
+        field.loseGame();
+        return field;
+    }
+}
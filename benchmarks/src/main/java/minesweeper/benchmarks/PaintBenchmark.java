@@ -0,0 +1,68 @@
+package minesweeper.benchmarks;
+
+import minesweeper.FieldGenerator;
+import minesweeper.MineCanvas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Painting the canvas offscreen into an image, either the whole of an
+ * Advanced board or the single tile a click usually repaints. Runs headless,
+ * the canvas is never shown.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PaintBenchmark {
+    @Param({"board", "tile"})
+    public String clip;
+
+    private MineCanvas canvas;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setup() {
+        FieldGenerator field = Boards.create("40x20/99");
+        field.setFirstClickOpening(true);
+        field.revealSpace(field.getWidth() / 2, field.getHeight() / 2);
+        field.markMine(0, 0);
+        canvas = new MineCanvas(field, null);
+        image = new BufferedImage(field.getWidth() * 32, field.getHeight() * 32, BufferedImage.TYPE_INT_ARGB);
+        canvas.setSize(image.getWidth(), image.getHeight());
+        graphics = image.createGraphics();
+        if (clip.equals("tile")) {
+            graphics.setClip(field.getWidth() / 2 * 32, field.getHeight() / 2 * 32, 32, 32);
+        } else {
+            graphics.setClip(0, 0, image.getWidth(), image.getHeight());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        canvas.paint(graphics);
+        return image;
+    }
+}
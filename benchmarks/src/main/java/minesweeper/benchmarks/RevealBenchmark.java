@@ -0,0 +1,72 @@
+package minesweeper.benchmarks;
+
+import minesweeper.FieldGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The flood fill of a first click that opens up an empty space. A small
+ * opening is an Expert board, a medium one a sparse large board, and a full
+ * one a board without mines where the click reveals everything.
+ * A small opening takes a few microseconds, too short to time one at a
+ * time or to regenerate its field in between, so each iteration clicks a
+ * batch of fields regenerated before it, timed as a whole and reported
+ * per field.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, batchSize = Boards.BATCH)
+@Measurement(iterations = 30, batchSize = Boards.BATCH)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@OperationsPerInvocation(Boards.BATCH)
+public class RevealBenchmark {
+    @Param({"small", "medium", "full"})
+    public String opening;
+
+    private final FieldGenerator[] fields = new FieldGenerator[Boards.BATCH];
+    private int next;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void createFields() {
+        for (int i = 0; i < fields.length; i++) {
+            if (opening.equals("small")) {
+                fields[i] = Boards.create("30x16/99");
+            } else if (opening.equals("medium")) {
+                fields[i] = Boards.create("500x500/7500");
+            } else {
+                fields[i] = Boards.create("2000x2000/0");
+            }
+            fields[i].setFirstClickOpening(true);
+        }
+        seed = Boards.SEED;
+    }
+
+    @Setup(Level.Iteration)
+    public void resetFields() {
+        for (FieldGenerator field : fields) {
+            field.reset(++seed);
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public boolean revealSpace() {
+        FieldGenerator field = fields[next++];
+        return field.revealSpace(field.getWidth() / 2, field.getHeight() / 2);
+    }
+}
@@ -0,0 +1,141 @@
+package minesweeper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentFieldTest {
+    private static final int THREADS = 8;
+
+    /**
+     * Once every safe space is revealed the game is won, and clicking a
+     * mine after that doesn't lose it
+     */
+    @Test
+    void wonGameStaysWon() {
+        ConcurrentField field = new ConcurrentField(9, 9, 10, 42L, null);
+        field.revealSpace(4, 4);
+        int mineX = -1;
+        int mineY = -1;
+        for (int y = 0; y < 9; y++) {
+            for (int x = 0; x < 9; x++) {
+                if (field.getFieldValue(x, y) == FieldGenerator.FIELD_MINE) {
+                    mineX = x;
+                    mineY = y;
+                } else {
+                    assertFalse(field.revealSpace(x, y));
+                }
+            }
+        }
+        assertTrue(field.getGameWin());
+        assertFalse(field.revealSpace(mineX, mineY));
+        assertEquals(FieldGenerator.MASK_HIDDEN, field.getMaskValue(mineX, mineY));
+        field.markMine(mineX, mineY);
+        assertEquals(FieldGenerator.MASK_HIDDEN, field.getMaskValue(mineX, mineY));
+        field.loseGame();
+        assertTrue(field.getGameWin());
+    }
+
+    /**
+     * Eight threads reveal every safe space of the same board in their own
+     * random order while others flag the mines. Every space has to be
+     * revealed by exactly one of them, on the layout a FieldGenerator makes
+     * from the same seed.
+     */
+    @Test
+    void threadsRevealEverySpaceOnce() throws Exception {
+        SplittableRandom random = new SplittableRandom(3);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int game = 0; game < 200; game++) {
+                final int width = 20 + random.nextInt(150);
+                final int height = 20 + random.nextInt(100);
+                int mines = random.nextInt(width * height / 6);
+                long seed = random.nextLong();
+                boolean opening = random.nextBoolean();
+                final ConcurrentField field = new ConcurrentField(width, height, mines, seed, null);
+                field.setFirstClickOpening(opening);
+                final int firstX = random.nextInt(width);
+                final int firstY = random.nextInt(height);
+                List<Callable<Integer>> players = new ArrayList<Callable<Integer>>();
+                for (int t = 0; t < THREADS; t++) {
+                    final boolean flagger = t % 4 == 3;
+                    final long playerSeed = random.nextLong();
+                    players.add(new Callable<Integer>() {
+                        @Override
+                        public Integer call() {
+                            return play(field, firstX, firstY, flagger, playerSeed);
+                        }
+                    });
+                }
+                int revealed = 0;
+                for (Future<Integer> player : executor.invokeAll(players)) {
+                    revealed += player.get();
+                }
+                FieldGenerator expected = new FieldGenerator(width, height, mines, seed, null);
+                expected.setFirstClickOpening(opening);
+                expected.revealSpace(firstX, firstY);
+                int marked = 0;
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        assertEquals(expected.getFieldValue(x, y), field.getFieldValue(x, y));
+                        int mask = field.getMaskValue(x, y);
+                        if (field.getFieldValue(x, y) != FieldGenerator.FIELD_MINE) {
+                            assertEquals(FieldGenerator.MASK_REVEALED, mask);
+                        } else if (mask == FieldGenerator.MASK_MARKED) {
+                            marked++;
+                        }
+                    }
+                }
+                assertEquals(width * height - mines, revealed, "game " + game);
+                assertTrue(field.getGameWin());
+                assertEquals(mines - marked, field.getMinesRemaining());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Plays a board from one thread, in a random order
+     * @return the spaces this thread revealed, from its own changes
+     */
+    private static int play(ConcurrentField field, int firstX, int firstY, boolean flagger, long seed) {
+        int width = field.getWidth();
+        int height = field.getHeight();
+        int[] order = new int[width * height];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < order.length; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        assertFalse(field.revealSpace(firstX, firstY));
+        int revealed = field.getChanges().size();
+        for (int i : order) {
+            int x = i % width;
+            int y = i / width;
+            if (field.getFieldValue(x, y) == FieldGenerator.FIELD_MINE) {
+                if (flagger) {
+                    field.markMine(x, y);
+                    field.unMark(x, y);
+                    field.markMine(x, y);
+                }
+            } else if (!flagger) {
+                assertFalse(field.revealSpace(x, y));
+                revealed += field.getChanges().size();
+            }
+        }
+        return revealed;
+    }
+}
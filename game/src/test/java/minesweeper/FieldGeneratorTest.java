@@ -0,0 +1,36 @@
+package minesweeper;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FieldGeneratorTest {
+    /**
+     * One click on an empty 4000x4000 board floods all 16 million spaces.
+     * It runs on a thread with a small stack, so a recursive flood fill
+     * would overflow it.
+     */
+    @Test
+    void revealFloodsLargeEmptyBoard() throws InterruptedException {
+        final FieldGenerator field = new FieldGenerator(4000, 4000, 0, 1L, null);
+        final boolean[] lost = new boolean[1];
+        final Throwable[] failure = new Throwable[1];
+        Thread reveal = new Thread(null, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    lost[0] = field.revealSpace(0, 0);
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        }, "reveal", 256 * 1024);
+        reveal.start();
+        reveal.join();
+        assertNull(failure[0]);
+        assertFalse(lost[0]);
+        assertTrue(field.getGameWin());
+    }
+}
@@ -0,0 +1,162 @@
+package minesweeper;
+
+import minesweeper.solver.Solver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GameReplayTest {
+    /**
+     * Records seeded games, plain, with first click openings and with no
+     * guessing, and replays each log on the field it creates. The replay
+     * has to end the same way with every space showing the same.
+     */
+    @Test
+    void replayMatchesRecordedGame() throws IOException {
+        for (int game = 0; game < 60; game++) {
+            FieldGenerator field = new FieldGenerator(16, 16, 40, game, null);
+            field.setFirstClickOpening(game % 3 == 1);
+            field.setNoGuess(game % 3 == 2);
+            GameRecorder recorder = field.startRecording();
+            boolean lost = play(field, new SplittableRandom(game));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            recorder.write(out);
+            assertEquals(recorder.getSize(), out.size());
+
+            GameReplay replay = GameReplay.read(new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(recorder.getCount(), replay.getCount());
+            FieldGenerator replayed = replay.createField();
+            boolean replayLost = false;
+            for (int i = 0; i < replay.getCount(); i++) {
+                replayLost |= replay.apply(replayed, i);
+            }
+            assertEquals(lost, replayLost, "game " + game);
+            assertEquals(field.getGameWin(), replayed.getGameWin(), "game " + game);
+            for (int y = 0; y < 16; y++) {
+                for (int x = 0; x < 16; x++) {
+                    assertEquals(field.getFieldValue(x, y), replayed.getFieldValue(x, y), "game " + game);
+                    assertEquals(field.getMaskValue(x, y), replayed.getMaskValue(x, y), "game " + game);
+                }
+            }
+        }
+    }
+
+    /**
+     * A log cut anywhere in its header, or in the middle of its last move,
+     * doesn't read
+     */
+    @Test
+    void truncatedLogIsRejected() throws IOException {
+        FieldGenerator field = new FieldGenerator(16, 16, 40, 1L, null);
+        GameRecorder recorder = field.startRecording();
+        play(field, new SplittableRandom(1));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.write(out);
+        byte[] log = out.toByteArray();
+        // A recorder that hasn't recorded anything writes just the header
+        int header = new FieldGenerator(16, 16, 40, 1L, null).startRecording().getSize();
+        for (int length = 0; length < header; length++) {
+            assertUnreadable(Arrays.copyOf(log, length));
+        }
+        assertUnreadable(Arrays.copyOf(log, log.length - 1));
+    }
+
+    /**
+     * Logs with a wrong magic number or version, an impossible field, a
+     * move off the field or with an unknown action, or a varint that never
+     * ends, don't read
+     */
+    @Test
+    void corruptLogIsRejected() throws IOException {
+        FieldGenerator field = new FieldGenerator(9, 9, 10, 1L, null);
+        GameRecorder recorder = field.startRecording();
+        field.revealSpace(4, 4);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.write(out);
+        byte[] log = out.toByteArray();
+        GameReplay.read(new ByteArrayInputStream(log));
+
+        byte[] magic = log.clone();
+        magic[0] ^= 1;
+        assertUnreadable(magic);
+        byte[] version = log.clone();
+        version[4] = 99;
+        assertUnreadable(version);
+        // Width, height and mines are one byte varints from byte 6
+        byte[] tooManyMines = log.clone();
+        tooManyMines[8] = 81;
+        assertUnreadable(tooManyMines);
+        byte[] noWidth = log.clone();
+        noWidth[6] = 0;
+        assertUnreadable(noWidth);
+        // A move 81 spaces on from the first one, off the 9x9 field
+        assertUnreadable(append(log, 81 * 2 << 2 | GameRecorder.REVEAL, 0));
+        assertUnreadable(append(log, 3, 0));
+        byte[] endless = Arrays.copyOf(log, log.length + 11);
+        Arrays.fill(endless, log.length, endless.length, (byte) 0xFF);
+        assertUnreadable(endless);
+    }
+
+    /**
+     * Plays until the game ends, revealing what the solver proves safe and
+     * flagging what it proves mines, and guessing when it finds nothing.
+     * Some flags are put down and taken back so the log has every action.
+     * @return true if the game was lost
+     */
+    private static boolean play(FieldGenerator field, SplittableRandom random) {
+        Solver solver = new Solver();
+        field.markMine(0, 0);
+        field.unMark(0, 0);
+        boolean lost = field.revealSpace(random.nextInt(field.getWidth()), random.nextInt(field.getHeight()));
+        while (!lost && !field.getGameWin()) {
+            solver.solve(field);
+            if (solver.getSafeCount() > 0) {
+                for (int k = 0; k < solver.getSafeCount(); k++) {
+                    lost |= field.revealSpace(solver.getSafeX(k), solver.getSafeY(k));
+                }
+                for (int k = 0; k < solver.getMineCount(); k++) {
+                    field.markMine(solver.getMineX(k), solver.getMineY(k));
+                }
+            } else {
+                int x;
+                int y;
+                do {
+                    x = random.nextInt(field.getWidth());
+                    y = random.nextInt(field.getHeight());
+                } while (field.getMaskValue(x, y) != FieldGenerator.MASK_HIDDEN);
+                lost = field.revealSpace(x, y);
+            }
+        }
+        return lost;
+    }
+
+    /**
+     * Adds a move to a log
+     * @param move the first varint of the move, less than 2^14
+     * @param millis the milliseconds since the last move, less than 2^7
+     */
+    private static byte[] append(byte[] log, int move, int millis) {
+        byte[] longer = Arrays.copyOf(log, log.length + 3);
+        longer[log.length] = (byte) (move & 0x7F | 0x80);
+        longer[log.length + 1] = (byte) (move >>> 7);
+        longer[log.length + 2] = (byte) millis;
+        return longer;
+    }
+
+    private static void assertUnreadable(final byte[] log) {
+        assertThrows(IOException.class, new Executable() {
+            @Override
+            public void execute() throws IOException {
+                GameReplay.read(new ByteArrayInputStream(log));
+            }
+        });
+    }
+}
@@ -0,0 +1,153 @@
+package minesweeper;
+
+import minesweeper.util.IntDeque;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OpeningIndexTest {
+    /**
+     * Plays random reveals, flags and unflags on random fields, checking
+     * the mask after every move against a plain flood fill. Flags inside
+     * an opening stop it being revealed in bulk, so they're where the
+     * index has to fall back to the flood fill.
+     */
+    @Test
+    void bulkRevealMatchesFloodFill() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int game = 0; game < 2000; game++) {
+            int width = 1 + random.nextInt(40);
+            int height = 1 + random.nextInt(30);
+            int mines = random.nextInt(Math.max(1, width * height / 5));
+            FieldGenerator field = new FieldGenerator(width, height, mines, random.nextLong(), null);
+            field.setFirstClickOpening(random.nextBoolean());
+            int firstX = random.nextInt(width);
+            int firstY = random.nextInt(height);
+            field.revealSpace(firstX, firstY);
+            int[] values = values(field);
+            int[] expected = new int[width * height];
+            flood(values, expected, width, height, firstY * width + firstX);
+            // Asking for the 3BV builds the index the reveals after it use, with
+            // the flags counted as they're placed or as it's built
+            boolean buildFirst = game % 2 == 0;
+            if (buildFirst) {
+                field.get3BV();
+            }
+            // Flag some of the hidden spaces before most openings are reached
+            for (int i = 0; i < values.length; i++) {
+                if (expected[i] == FieldGenerator.MASK_HIDDEN && random.nextInt(8) == 0) {
+                    field.markMine(i % width, i / width);
+                    expected[i] = FieldGenerator.MASK_MARKED;
+                }
+            }
+            if (!buildFirst) {
+                field.get3BV();
+            }
+            for (int move = 0; move < 200; move++) {
+                int i = random.nextInt(width * height);
+                int action = random.nextInt(10);
+                if (action < 3) {
+                    field.markMine(i % width, i / width);
+                    if (expected[i] == FieldGenerator.MASK_HIDDEN) {
+                        expected[i] = FieldGenerator.MASK_MARKED;
+                    }
+                } else if (action < 5) {
+                    field.unMark(i % width, i / width);
+                    if (expected[i] == FieldGenerator.MASK_MARKED) {
+                        expected[i] = FieldGenerator.MASK_HIDDEN;
+                    }
+                } else if (values[i] != FieldGenerator.FIELD_MINE) {
+                    field.revealSpace(i % width, i / width);
+                    flood(values, expected, width, height, i);
+                }
+                assertArrayEquals(expected, masks(field), "game " + game + " move " + move);
+            }
+        }
+    }
+
+    /**
+     * Checks the 3BV and the number of openings of random fields against
+     * counts made straight from the layout
+     */
+    @Test
+    void countsMatchLayout() {
+        SplittableRandom random = new SplittableRandom(2);
+        for (int game = 0; game < 2000; game++) {
+            int width = 1 + random.nextInt(40);
+            int height = 1 + random.nextInt(30);
+            int mines = random.nextInt(Math.max(1, width * height / 4));
+            FieldGenerator field = new FieldGenerator(width, height, mines, random.nextLong(), null);
+            field.revealSpace(random.nextInt(width), random.nextInt(height));
+            int[] values = values(field);
+            // Each opening is flood filled once, the numbers next to none are a click each
+            int[] seen = new int[width * height];
+            int openings = 0;
+            int clicks = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == FieldGenerator.FIELD_EMPTY && seen[i] == FieldGenerator.MASK_HIDDEN) {
+                    flood(values, seen, width, height, i);
+                    openings++;
+                }
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] > 0 && seen[i] == FieldGenerator.MASK_HIDDEN) {
+                    clicks++;
+                }
+            }
+            assertEquals(openings, field.getOpeningCount(), "game " + game);
+            assertEquals(openings + clicks, field.get3BV(), "game " + game);
+        }
+    }
+
+    /**
+     * Reveals a space the way a player's click does, flood filling through
+     * empty spaces and stopping at flags
+     */
+    private static void flood(int[] values, int[] masks, int width, int height, int start) {
+        if (masks[start] != FieldGenerator.MASK_HIDDEN) {
+            return;
+        }
+        masks[start] = FieldGenerator.MASK_REVEALED;
+        IntDeque stack = new IntDeque();
+        if (values[start] == FieldGenerator.FIELD_EMPTY) {
+            stack.addLast(start);
+        }
+        while (!stack.isEmpty()) {
+            int cell = stack.pollLast();
+            int x = cell % width;
+            int y = cell / width;
+            for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, height - 1); ny++) {
+                for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, width - 1); nx++) {
+                    int next = ny * width + nx;
+                    if (masks[next] == FieldGenerator.MASK_HIDDEN && values[next] != FieldGenerator.FIELD_MINE) {
+                        masks[next] = FieldGenerator.MASK_REVEALED;
+                        if (values[next] == FieldGenerator.FIELD_EMPTY) {
+                            stack.addLast(next);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] values(Board board) {
+        int width = board.getWidth();
+        int[] values = new int[width * board.getHeight()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = board.getFieldValue(i % width, i / width);
+        }
+        return values;
+    }
+
+    private static int[] masks(Board board) {
+        int width = board.getWidth();
+        int[] masks = new int[width * board.getHeight()];
+        for (int i = 0; i < masks.length; i++) {
+            masks[i] = board.getMaskValue(i % width, i / width);
+        }
+        return masks;
+    }
+}
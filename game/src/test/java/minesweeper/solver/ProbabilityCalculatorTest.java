@@ -0,0 +1,276 @@
+package minesweeper.solver;
+
+import minesweeper.Board;
+import minesweeper.ChangeSet;
+import minesweeper.FieldGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProbabilityCalculatorTest {
+    /**
+     * Plays small boards by always revealing the safest space, checking
+     * every position against the probabilities found by going through
+     * every layout that fits what's revealed
+     */
+    @Test
+    void matchesEnumerationOnSmallBoards() {
+        SplittableRandom random = new SplittableRandom(5);
+        ProbabilityCalculator calculator = new ProbabilityCalculator(Long.MAX_VALUE / 4, 0);
+        int positions = 0;
+        for (int game = 0; game < 200; game++) {
+            int width = 4 + random.nextInt(2);
+            int height = 4;
+            int mines = 3 + random.nextInt(width * height / 4);
+            FieldGenerator field = new FieldGenerator(width, height, mines, game, null);
+            boolean lost = field.revealSpace(random.nextInt(width), random.nextInt(height));
+            while (!lost && !field.getGameWin()) {
+                double[] expected = enumerate(field);
+                assertTrue(calculator.calculate(field));
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        if (field.getMaskValue(x, y) != FieldGenerator.MASK_REVEALED) {
+                            assertEquals(expected[y * width + x], calculator.getProbability(x, y), 1e-9,
+                                    "game " + game + " space " + x + "," + y);
+                        }
+                    }
+                }
+                positions++;
+                lost = field.revealSpace(calculator.getSafestX(), calculator.getSafestY());
+            }
+        }
+        assertTrue(positions > 400);
+    }
+
+    /**
+     * A big board opened in many places has thousands of components, too
+     * many to combine exactly in the budget
+     */
+    @Test
+    void manyComponentsStayConsistent() {
+        int size = 600;
+        FieldGenerator field = new FieldGenerator(size, size, size * size / 6, 7L, null);
+        field.setFirstClickOpening(false);
+        field.revealSpace(size / 2, size / 2);
+        SplittableRandom random = new SplittableRandom(3);
+        for (int click = 0; click < 4000; click++) {
+            int x = random.nextInt(size);
+            int y = random.nextInt(size);
+            if (field.getFieldValue(x, y) != FieldGenerator.FIELD_MINE) {
+                field.revealSpace(x, y);
+            }
+        }
+        ProbabilityCalculator calculator = new ProbabilityCalculator();
+        assertFalse(calculator.calculate(field));
+        assertConsistent(field, calculator);
+    }
+
+    /**
+     * Every other space revealed in a checkerboard makes components
+     * thousands of spaces wide, far too wide to count or to keep a count
+     * per space and mine count for
+     */
+    @Test
+    void wideComponentsStayConsistent() {
+        Lattice lattice = new Lattice(600, 0.3, 0.6, 1L);
+        ProbabilityCalculator calculator = new ProbabilityCalculator();
+        assertFalse(calculator.calculate(lattice));
+        assertConsistent(lattice, calculator);
+    }
+
+    /**
+     * Checks every probability is between 0 and 1, and that they add up to
+     * about the number of mines
+     */
+    private static void assertConsistent(Board board, ProbabilityCalculator calculator) {
+        double sum = 0;
+        for (int y = 0; y < board.getHeight(); y++) {
+            for (int x = 0; x < board.getWidth(); x++) {
+                if (board.getMaskValue(x, y) != FieldGenerator.MASK_REVEALED) {
+                    double p = calculator.getProbability(x, y);
+                    assertTrue(p >= 0 && p <= 1, x + "," + y + " has probability " + p);
+                    sum += p;
+                }
+            }
+        }
+        assertEquals(board.getMines(), sum, board.getMines() * 0.01);
+        assertEquals(0, board.getMaskValue(calculator.getSafestX(), calculator.getSafestY()));
+    }
+
+    /**
+     * Gets the chance each space is a mine by going through every layout
+     * of the hidden spaces that fits the revealed numbers
+     */
+    private static double[] enumerate(Board board) {
+        int width = board.getWidth();
+        int height = board.getHeight();
+        int[] hidden = new int[width * height];
+        int count = 0;
+        for (int i = 0; i < width * height; i++) {
+            if (board.getMaskValue(i % width, i / width) != FieldGenerator.MASK_REVEALED) {
+                hidden[count++] = i;
+            }
+        }
+        double[] mineCounts = new double[width * height];
+        double[] layouts = new double[1];
+        place(board, hidden, count, 0, board.getMines(), new boolean[width * height], mineCounts, layouts);
+        for (int i = 0; i < mineCounts.length; i++) {
+            mineCounts[i] /= layouts[0];
+        }
+        return mineCounts;
+    }
+
+    private static void place(Board board, int[] hidden, int count, int next, int left, boolean[] mine,
+                              double[] mineCounts, double[] layouts) {
+        if (left == 0) {
+            if (fits(board, mine)) {
+                layouts[0]++;
+                for (int k = 0; k < count; k++) {
+                    if (mine[hidden[k]]) {
+                        mineCounts[hidden[k]]++;
+                    }
+                }
+            }
+            return;
+        }
+        if (count - next < left) {
+            return;
+        }
+        mine[hidden[next]] = true;
+        place(board, hidden, count, next + 1, left - 1, mine, mineCounts, layouts);
+        mine[hidden[next]] = false;
+        place(board, hidden, count, next + 1, left, mine, mineCounts, layouts);
+    }
+
+    private static boolean fits(Board board, boolean[] mine) {
+        int width = board.getWidth();
+        int height = board.getHeight();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (board.getMaskValue(x, y) == FieldGenerator.MASK_REVEALED
+                        && countAround(width, height, mine, x, y) != board.getFieldValue(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int countAround(int width, int height, boolean[] mine, int x, int y) {
+        int n = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                int nx = x + dx;
+                int ny = y + dy;
+                if (nx >= 0 && ny >= 0 && nx < width && ny < height && mine[ny * width + nx]) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * A square board with mines only on the odd spaces of a checkerboard,
+     * and some of the even spaces revealed
+     */
+    private static final class Lattice implements Board {
+        private final int size;
+        private final boolean[] mine;
+        private final boolean[] revealed;
+        private int mines;
+
+        Lattice(int size, double density, double revealedDensity, long seed) {
+            this.size = size;
+            mine = new boolean[size * size];
+            revealed = new boolean[size * size];
+            SplittableRandom random = new SplittableRandom(seed);
+            for (int i = 0; i < size * size; i++) {
+                boolean odd = ((i % size + i / size) & 1) == 1;
+                if (odd && random.nextDouble() < density) {
+                    mine[i] = true;
+                    mines++;
+                }
+                revealed[i] = !odd && random.nextDouble() < revealedDensity;
+            }
+        }
+
+        @Override
+        public int getWidth() {
+            return size;
+        }
+
+        @Override
+        public int getHeight() {
+            return size;
+        }
+
+        @Override
+        public boolean inBounds(int x, int y) {
+            return x >= 0 && y >= 0 && x < size && y < size;
+        }
+
+        @Override
+        public int getFieldValue(int x, int y) {
+            return mine[y * size + x] ? FieldGenerator.FIELD_MINE : countAround(size, size, mine, x, y);
+        }
+
+        @Override
+        public int getMaskValue(int x, int y) {
+            return revealed[y * size + x] ? FieldGenerator.MASK_REVEALED : FieldGenerator.MASK_HIDDEN;
+        }
+
+        @Override
+        public boolean revealSpace(int x, int y) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void markMine(int x, int y) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void unMark(int x, int y) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void loseGame() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ChangeSet getChanges() {
+            return null;
+        }
+
+        @Override
+        public int getMinesRemaining() {
+            return mines;
+        }
+
+        @Override
+        public boolean getGameWin() {
+            return false;
+        }
+
+        @Override
+        public boolean getFirstClick() {
+            return false;
+        }
+
+        @Override
+        public void setFirstClickOpening(boolean opening) {
+        }
+
+        @Override
+        public int getMines() {
+            return mines;
+        }
+    }
+}
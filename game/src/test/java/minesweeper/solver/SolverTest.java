@@ -0,0 +1,202 @@
+package minesweeper.solver;
+
+import minesweeper.Board;
+import minesweeper.ChangeSet;
+import minesweeper.FieldGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SolverTest {
+    /**
+     * Checks the solver against every layout of small random boards with
+     * random spaces revealed and flagged. Nothing it proves may be wrong in
+     * any layout that fits, and when a space is safe in all of them it has
+     * to find a safe space.
+     */
+    @Test
+    void matchesEnumerationOnSmallBoards() {
+        SplittableRandom random = new SplittableRandom(7);
+        Solver solver = new Solver();
+        int provable = 0;
+        for (int game = 0; game < 5000; game++) {
+            int width = 2 + random.nextInt(3);
+            int height = 2 + random.nextInt(3);
+            int size = width * height;
+            int mines = 1 + random.nextInt(size / 2);
+            Fixed board = new Fixed(width, height, mines, random);
+            // Spaces some fitting layout has a mine on, and some has none on
+            boolean[] canMine = new boolean[size];
+            boolean[] canSafe = new boolean[size];
+            for (int layout = 0; layout < 1 << size; layout++) {
+                if (Integer.bitCount(layout) == mines && board.fits(layout)) {
+                    for (int i = 0; i < size; i++) {
+                        if ((layout >> i & 1) != 0) {
+                            canMine[i] = true;
+                        } else {
+                            canSafe[i] = true;
+                        }
+                    }
+                }
+            }
+            solver.solve(board);
+            for (int k = 0; k < solver.getSafeCount(); k++) {
+                int i = solver.getSafeY(k) * width + solver.getSafeX(k);
+                assertFalse(canMine[i], "game " + game + " proved a possible mine safe");
+            }
+            for (int k = 0; k < solver.getMineCount(); k++) {
+                int i = solver.getMineY(k) * width + solver.getMineX(k);
+                assertFalse(canSafe[i], "game " + game + " proved a possibly safe space a mine");
+            }
+            boolean safeExists = false;
+            for (int i = 0; i < size; i++) {
+                safeExists |= board.mask[i] != FieldGenerator.MASK_REVEALED && !canMine[i];
+            }
+            if (safeExists) {
+                provable++;
+                assertTrue(solver.getSafeCount() > 0, "game " + game + " missed a provably safe space");
+            }
+        }
+        assertTrue(provable > 1000);
+    }
+
+    /**
+     * A small board with a random layout, some of its safe spaces revealed
+     * and some of its hidden spaces flagged, rightly or not
+     */
+    private static final class Fixed implements Board {
+        private final int width;
+        private final int height;
+        private final int mines;
+        private final int[] field;
+        private final int[] mask;
+
+        Fixed(int width, int height, int mines, SplittableRandom random) {
+            this.width = width;
+            this.height = height;
+            this.mines = mines;
+            int size = width * height;
+            int layout = 0;
+            while (Integer.bitCount(layout) < mines) {
+                layout |= 1 << random.nextInt(size);
+            }
+            field = new int[size];
+            mask = new int[size];
+            for (int i = 0; i < size; i++) {
+                boolean mine = (layout >> i & 1) != 0;
+                field[i] = mine ? FieldGenerator.FIELD_MINE : countAround(layout, i);
+                if (!mine && random.nextInt(3) == 0) {
+                    mask[i] = FieldGenerator.MASK_REVEALED;
+                } else if (random.nextInt(6) == 0) {
+                    mask[i] = FieldGenerator.MASK_MARKED;
+                }
+            }
+        }
+
+        /**
+         * Checks whether a layout agrees with every revealed number
+         * @param layout bit i set for a mine on space i
+         * @return true if the layout fits
+         */
+        boolean fits(int layout) {
+            for (int i = 0; i < field.length; i++) {
+                if (mask[i] == FieldGenerator.MASK_REVEALED &&
+                        ((layout >> i & 1) != 0 || countAround(layout, i) != field[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int countAround(int layout, int i) {
+            int x = i % width;
+            int y = i / width;
+            int n = 0;
+            for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, height - 1); ny++) {
+                for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, width - 1); nx++) {
+                    if ((nx != x || ny != y) && (layout >> (ny * width + nx) & 1) != 0) {
+                        n++;
+                    }
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public boolean inBounds(int x, int y) {
+            return x >= 0 && y >= 0 && x < width && y < height;
+        }
+
+        @Override
+        public int getFieldValue(int x, int y) {
+            return field[y * width + x];
+        }
+
+        @Override
+        public int getMaskValue(int x, int y) {
+            return mask[y * width + x];
+        }
+
+        @Override
+        public boolean revealSpace(int x, int y) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void markMine(int x, int y) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void unMark(int x, int y) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void loseGame() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ChangeSet getChanges() {
+            return null;
+        }
+
+        @Override
+        public int getMinesRemaining() {
+            return mines;
+        }
+
+        @Override
+        public boolean getGameWin() {
+            return false;
+        }
+
+        @Override
+        public boolean getFirstClick() {
+            return false;
+        }
+
+        @Override
+        public void setFirstClickOpening(boolean opening) {
+        }
+
+        @Override
+        public int getMines() {
+            return mines;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package minesweeper.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntDequeTest {
+    /**
+     * Random adds and polls at both ends against an ArrayDeque, starting
+     * from the smallest array so the items wrap around its end and it
+     * grows with them wrapped
+     */
+    @Test
+    void matchesArrayDeque() {
+        SplittableRandom random = new SplittableRandom(3);
+        IntDeque deque = new IntDeque(1);
+        Deque<Integer> expected = new ArrayDeque<Integer>();
+        for (int i = 0; i < 200000; i++) {
+            int op = random.nextInt(4);
+            if (op == 0) {
+                deque.addFirst(i);
+                expected.addFirst(i);
+            } else if (op == 1) {
+                deque.addLast(i);
+                expected.addLast(i);
+            } else if (op == 2 && !expected.isEmpty()) {
+                assertEquals(expected.pollFirst().intValue(), deque.pollFirst());
+            } else if (op == 3 && !expected.isEmpty()) {
+                assertEquals(expected.pollLast().intValue(), deque.pollLast());
+            }
+            assertEquals(expected.size(), deque.size());
+        }
+        assertSameItems(expected, deque);
+    }
+
+    /**
+     * Items added to the front wrap to the end of the array at once, then
+     * the array grows twice with the items wrapped and keeps their order
+     */
+    @Test
+    void growsWhileWrapped() {
+        final IntDeque deque = new IntDeque(4);
+        Deque<Integer> expected = new ArrayDeque<Integer>();
+        for (int i = 0; i < 3; i++) {
+            deque.addLast(i);
+            expected.addLast(i);
+        }
+        for (int i = 3; i < 16; i++) {
+            deque.addFirst(i);
+            expected.addFirst(i);
+            assertSameItems(expected, deque);
+        }
+        deque.clear();
+        assertTrue(deque.isEmpty());
+        assertThrows(NoSuchElementException.class, new Executable() {
+            @Override
+            public void execute() {
+                deque.pollLast();
+            }
+        });
+    }
+
+    private static void assertSameItems(Deque<Integer> expected, IntDeque deque) {
+        assertEquals(expected.size(), deque.size());
+        Iterator<Integer> items = expected.iterator();
+        for (int i = 0; i < deque.size(); i++) {
+            assertEquals(items.next().intValue(), deque.get(i));
+        }
+    }
+}
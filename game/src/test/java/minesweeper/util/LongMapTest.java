@@ -0,0 +1,89 @@
+package minesweeper.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LongMapTest {
+    /**
+     * Random puts, gets and removes on an unbounded map, over keys that
+     * differ only in their high half as well, against a HashMap
+     */
+    @Test
+    void matchesHashMap() {
+        SplittableRandom random = new SplittableRandom(3);
+        LongMap<Long> map = new LongMap<Long>();
+        Map<Long, Long> expected = new HashMap<Long, Long>();
+        for (long i = 0; i < 500000; i++) {
+            long key = random.nextInt(5000) - 2500 + ((long) random.nextInt(4) << 32);
+            int op = random.nextInt(3);
+            if (op == 0) {
+                map.put(key, i);
+                expected.put(key, i);
+            } else if (op == 1) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        int walked = 0;
+        for (int slot = map.nextSlot(0); slot >= 0; slot = map.nextSlot(slot + 1)) {
+            assertEquals(expected.get(map.keyAt(slot)), map.valueAt(slot));
+            walked++;
+        }
+        assertEquals(expected.size(), walked);
+    }
+
+    /**
+     * Random puts, gets, removes and evictions on a bounded map against an
+     * access-ordered LinkedHashMap, whose eldest entry is the least
+     * recently used
+     */
+    @Test
+    void evictsLikeAccessOrderedLinkedHashMap() {
+        final int maxSize = 100;
+        SplittableRandom random = new SplittableRandom(5);
+        LongMap<Long> map = new LongMap<Long>(maxSize);
+        Map<Long, Long> expected = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > maxSize;
+            }
+        };
+        for (long i = 0; i < 500000; i++) {
+            long key = random.nextInt(300);
+            int op = random.nextInt(10);
+            if (op < 4) {
+                map.put(key, i);
+                expected.put(key, i);
+            } else if (op < 8) {
+                assertEquals(expected.get(key), map.get(key));
+            } else if (op == 8) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                Iterator<Long> eldest = expected.values().iterator();
+                Long oldest = eldest.hasNext() ? eldest.next() : null;
+                assertEquals(oldest, map.peekOldest());
+                if (random.nextBoolean()) {
+                    if (oldest != null) {
+                        eldest.remove();
+                    }
+                    assertEquals(oldest, map.removeOldest());
+                }
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.peekOldest());
+        assertNull(map.removeOldest());
+    }
+}
@@ -0,0 +1,109 @@
+package minesweeper;
+
+/**
+ * The game state the GUI and console play against. Field values are
+ * FIELD_MINE or the number of touching mines, mask states are one of the
+ * FieldGenerator MASK_ constants.
+ */
+public interface Board {
+
+    /**
+     * Gets the width of the board
+     * @return the x-size of the board
+     */
+    int getWidth();
+
+    /**
+     * Gets the height of the board
+     * @return the y-size of the board
+     */
+    int getHeight();
+
+    /**
+     * Checks whether the given coordinates are on the board
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return true if the coordinates are on the board
+     */
+    boolean inBounds(int x, int y);
+
+    /**
+     * Gets the field value at x, y
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return FIELD_MINE, or the number of mines touching the space
+     */
+    int getFieldValue(int x, int y);
+
+    /**
+     * Gets the mask state at x, y
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return one of the MASK_ constants
+     */
+    int getMaskValue(int x, int y);
+
+    /**
+     * Reveals a space, opening up every connected empty space
+     * @param x the x-coordinate to be revealed
+     * @param y the y-coordinate to be revealed
+     * @return whether or not the game has been lost
+     */
+    boolean revealSpace(int x, int y);
+
+    /**
+     * Mark the space at x, y as a mine
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    void markMine(int x, int y);
+
+    /**
+     * Unmark the space at x, y
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    void unMark(int x, int y);
+
+    /**
+     * Reveals the mines and sets the incorrect flags
+     */
+    void loseGame();
+
+    /**
+     * Gets the spaces changed by the last call to revealSpace, markMine,
+     * unMark or loseGame. The set is reused and cleared by the next call.
+     * @return the spaces whose mask changed
+     */
+    ChangeSet getChanges();
+
+    /**
+     * Gets the amount of mines remaining
+     * @return the amount of unmarked mines
+     */
+    int getMinesRemaining();
+
+    /**
+     * Returns a boolean that's true if the game has been won
+     * @return whether or not the game has been won
+     */
+    boolean getGameWin();
+
+    /**
+     * Function for getting whether or not it's the first click
+     * @return the boolean true if it's the first click
+     */
+    boolean getFirstClick();
+
+    /**
+     * Sets whether the first click should always open up an empty space
+     * @param opening true to keep the 3x3 around the first click clear
+     */
+    void setFirstClickOpening(boolean opening);
+
+    /**
+     * Function for getting the total number of mines
+     * @return the number of mines this board was created with
+     */
+    int getMines();
+}
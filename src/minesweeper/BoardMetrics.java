@@ -0,0 +1,107 @@
+package minesweeper;
+
+/**
+ * What a layout is like to play, for ranking games and players. The
+ * counts come from the opening index of the field, the guess estimate from
+ * playing the layout out with the logic solver, see GuessEstimate. A field
+ * keeps its metrics until its layout changes, see FieldGenerator.getMetrics.
+ */
+public final class BoardMetrics {
+    /** Time allowed for estimating the guesses of a layout, in nanoseconds */
+    public static final long GUESS_BUDGET = 250000000L;
+
+    private final int threeBV;
+    private final int openings;
+    private final int islands;
+    private final double guesses;
+    private final int trials;
+
+    /**
+     * Creates the metrics of a layout, without a guess estimate
+     * @param threeBV the 3BV, or -1 if unknown
+     * @param openings the number of openings, or -1 if unknown
+     * @param islands the number of numbers no opening reveals, or -1 if unknown
+     */
+    BoardMetrics(int threeBV, int openings, int islands) {
+        this(threeBV, openings, islands, Double.NaN, 0);
+    }
+
+    private BoardMetrics(int threeBV, int openings, int islands, double guesses, int trials) {
+        this.threeBV = threeBV;
+        this.openings = openings;
+        this.islands = islands;
+        this.guesses = guesses;
+        this.trials = trials;
+    }
+
+    /**
+     * Creates a copy of these metrics with a guess estimate
+     * @param guesses the average number of guesses over the trials
+     * @param trials the number of playthroughs the average is over
+     * @return the new metrics
+     */
+    BoardMetrics withGuesses(double guesses, int trials) {
+        return new BoardMetrics(threeBV, openings, islands, guesses, trials);
+    }
+
+    /**
+     * Gets the 3BV, the fewest clicks that reveal every safe space: one for
+     * each opening and one for each number no opening reveals
+     * @return the 3BV, or -1 if the field is too big to index
+     */
+    public int get3BV() {
+        return threeBV;
+    }
+
+    /**
+     * Gets the number of openings, the regions of connected empty spaces
+     * @return the number of openings, or -1 if the field is too big to index
+     */
+    public int getOpenings() {
+        return openings;
+    }
+
+    /**
+     * Gets the number of islands, the numbers that no opening reveals and
+     * so take a click each
+     * @return the number of islands, or -1 if the field is too big to index
+     */
+    public int getIslands() {
+        return islands;
+    }
+
+    /**
+     * Checks whether the guesses were estimated
+     * @return true if at least one playthrough finished
+     */
+    public boolean hasGuessEstimate() {
+        return trials > 0;
+    }
+
+    /**
+     * Gets the estimated number of guesses the layout needs, the average
+     * number of times the logic solver ran out of safe moves over a few
+     * playthroughs from different openings
+     * @return the estimate, or NaN if there isn't one
+     */
+    public double getGuesses() {
+        return guesses;
+    }
+
+    /**
+     * Gets the number of playthroughs the guess estimate is averaged over
+     * @return the number of playthroughs, 0 if there is no estimate
+     */
+    public int getGuessTrials() {
+        return trials;
+    }
+
+    /**
+     * Gets the rate a game on this layout was cleared at
+     * @param seconds the time the game took, in seconds
+     * @return the 3BV per second, or 0 if the 3BV is unknown or no time passed
+     */
+    public double get3BVPerSecond(double seconds) {
+        return threeBV < 0 || seconds <= 0 ? 0 : threeBV / seconds;
+    }
+}
@@ -0,0 +1,133 @@
+package minesweeper;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Flat, row-major storage for a mine field and its mask.
+ * Every cell is packed into a single byte: the low nibble holds the
+ * field value (-1 through 8) and bits 4-6 hold the mask state
+ * (-3 through 1), both as two's complement. A zeroed byte is an
+ * empty, hidden cell, so a freshly allocated store needs no filling.
+ */
+final class CellStore {
+    private static final int FIELD_BITS = 0x0F;
+    private static final int MASK_SHIFT = 4;
+    private static final int MASK_BITS = 0x70;
+
+    private final int width;
+    private final int height;
+    private final byte[] cells;
+
+    /**
+     * Creates an empty, fully hidden store
+     * @param width the x-size of the field
+     * @param height the y-size of the field
+     */
+    CellStore(int width, int height) {
+        if ((long) width * height > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Field of " + width + "x" + height + " is too large");
+        }
+        this.width = width;
+        this.height = height;
+        this.cells = new byte[width * height];
+    }
+
+    /**
+     * Empties the store, every cell back to empty and hidden
+     */
+    void clear() {
+        Arrays.fill(cells, (byte) 0);
+    }
+
+    /**
+     * Copies the layout of another store of the same size, every cell hidden
+     * @param source the store to copy the field values of
+     */
+    void copyLayout(CellStore source) {
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = (byte) (source.cells[i] & FIELD_BITS);
+        }
+    }
+
+    /**
+     * Wraps the packed cells in a buffer, so a channel can read them into
+     * the store or write them out without copying them first
+     * @return a buffer over all width * height packed cells
+     */
+    ByteBuffer buffer() {
+        return ByteBuffer.wrap(cells);
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the number of cells in the store
+     * @return width * height
+     */
+    int size() {
+        return cells.length;
+    }
+
+    /**
+     * Gets the packed index of the given coordinates
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return y * width + x
+     */
+    int index(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     * Gets the field value of a cell
+     * @param i the packed index of the cell
+     * @return the field value, FIELD_MINE or the number of touching mines
+     */
+    int getField(int i) {
+        return ((cells[i] + 1) & FIELD_BITS) - 1;
+    }
+
+    /**
+     * Sets the field value of a cell, keeping its mask
+     * @param i the packed index of the cell
+     * @param value the field value, -1 through 8
+     */
+    void setField(int i, int value) {
+        cells[i] = (byte) ((cells[i] & ~FIELD_BITS) | (value & FIELD_BITS));
+    }
+
+    /**
+     * Sets the field value of a cell that is still hidden, overwriting
+     * the whole byte. Only used while generating the field.
+     * @param i the packed index of the cell
+     * @param value the field value, -1 through 8
+     */
+    void initField(int i, int value) {
+        cells[i] = (byte) (value & FIELD_BITS);
+    }
+
+    /**
+     * Gets the mask state of a cell
+     * @param i the packed index of the cell
+     * @return the mask state, one of the FieldGenerator MASK_ constants
+     */
+    int getMask(int i) {
+        return (cells[i] << 25) >> 29;
+    }
+
+    /**
+     * Sets the mask state of a cell, keeping its field value
+     * @param i the packed index of the cell
+     * @param value the mask state, -3 through 1
+     */
+    void setMask(int i, int value) {
+        cells[i] = (byte) ((cells[i] & ~MASK_BITS) | ((value << MASK_SHIFT) & MASK_BITS));
+    }
+}
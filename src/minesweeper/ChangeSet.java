@@ -0,0 +1,143 @@
+package minesweeper;
+
+import minesweeper.util.Cells;
+
+import java.util.Arrays;
+
+/**
+ * The spaces whose mask changed during the last call that modified a board.
+ * Keeps every changed space as a packed cell, see Cells, together with their
+ * bounding box. Past MAX_TRACKED spaces only the bounding box is kept, which is all a
+ * repaint needs for big openings and lost games.
+ */
+public class ChangeSet {
+    private static final int MAX_TRACKED = 1 << 16;
+
+    private long[] cells = new long[16];
+    private int size;
+    private boolean overflowed;
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+
+    /**
+     * Empties the change set
+     */
+    void clear() {
+        size = 0;
+        overflowed = false;
+    }
+
+    /**
+     * Records a changed space
+     * @param x the x coordinate of the space
+     * @param y the y coordinate of the space
+     */
+    void add(int x, int y) {
+        if (size == 0 && !overflowed) {
+            minX = maxX = x;
+            minY = maxY = y;
+        } else {
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        if (overflowed) {
+            return;
+        }
+        if (size == MAX_TRACKED) {
+            overflowed = true;
+            size = 0;
+            return;
+        }
+        if (size == cells.length) {
+            cells = Arrays.copyOf(cells, size * 2);
+        }
+        cells[size++] = Cells.pack(x, y);
+    }
+
+    /**
+     * Checks whether anything changed
+     * @return true if no space changed
+     */
+    public boolean isEmpty() {
+        return size == 0 && !overflowed;
+    }
+
+    /**
+     * Checks whether too many spaces changed to list them all
+     * @return true if only the bounding box is known
+     */
+    public boolean isOverflowed() {
+        return overflowed;
+    }
+
+    /**
+     * Gets the number of listed spaces
+     * @return the number of spaces, 0 once overflowed
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the x coordinate of a listed space
+     * @param i the position in the list
+     * @return the x coordinate
+     */
+    public int getX(int i) {
+        return Cells.x(cells[i]);
+    }
+
+    /**
+     * Gets the y coordinate of a listed space
+     * @param i the position in the list
+     * @return the y coordinate
+     */
+    public int getY(int i) {
+        return Cells.y(cells[i]);
+    }
+
+    /**
+     * Gets a listed space as a packed cell
+     * @param i the position in the list
+     * @return the packed cell, see Cells
+     */
+    public long getCell(int i) {
+        return cells[i];
+    }
+
+    /**
+     * Gets the left edge of the bounding box, only valid if not empty
+     * @return the smallest changed x coordinate
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    /**
+     * Gets the top edge of the bounding box, only valid if not empty
+     * @return the smallest changed y coordinate
+     */
+    public int getMinY() {
+        return minY;
+    }
+
+    /**
+     * Gets the right edge of the bounding box, only valid if not empty
+     * @return the largest changed x coordinate
+     */
+    public int getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * Gets the bottom edge of the bounding box, only valid if not empty
+     * @return the largest changed y coordinate
+     */
+    public int getMaxY() {
+        return maxY;
+    }
+}
@@ -0,0 +1,558 @@
+package minesweeper;
+
+import minesweeper.util.Cells;
+import minesweeper.util.LongMap;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A board for fields far larger than memory. The plane is split into
+ * CHUNK x CHUNK chunks whose mines are derived from a hash of the seed and
+ * the chunk position, so any chunk can be rebuilt at any time. How many
+ * mines a chunk gets is drawn down a binary split of the chunks, so the
+ * layout is as uniform as one placed all at once. Mines and
+ * numbers are only worked out when a reveal or a paint reaches a chunk and
+ * are evicted again once they haven't been used for a while. Only the masks
+ * of chunks the player has touched are kept for the whole game.
+ */
+public class ChunkedField implements Board {
+    static final int CHUNK = 64;
+    private static final int CHUNK_CELLS = CHUNK * CHUNK;
+    private static final int MAX_CACHED_CHUNKS = 4096;
+    private static final int MAX_CACHED_SPLITS = 16384;
+    private static final int MAX_FIRST_CLICK_TRIES = 1024;
+
+    private final int width;
+    private final int height;
+    private final int mines;
+    // Chunks across, and in all, the last ones of a row or column may be cut short
+    private final int chunksX;
+    private final long chunks;
+    private long seed;
+    // Mines moved off the first click, packed from and to positions in pairs
+    private long[] moved = new long[0];
+    // Chunks are keyed by their packed position, the caches evict the least recently used
+    private final LongMap<long[]> mineCache = new LongMap<long[]>(MAX_CACHED_CHUNKS);
+    private final LongMap<byte[]> valueCache = new LongMap<byte[]>(MAX_CACHED_CHUNKS);
+    private final LongMap<byte[]> masks = new LongMap<byte[]>();
+    private int minesRemaining;
+    private long unrevealed;
+    private boolean firstClick = true;
+    private boolean firstClickOpening = false;
+    private long[] revealStack = new long[64];
+    // The mines drawn for the first half of each node of the split, keyed by node
+    private final LongMap<long[]> splitCache = new LongMap<long[]>(MAX_CACHED_SPLITS);
+    private final ChangeSet changes = new ChangeSet();
+
+    /**
+     * Constructor
+     * @param width the x-size of the field
+     * @param height the y-size of the field
+     * @param mines the number of mines the field should have
+     * @param seed the seed every chunk is derived from
+     * @throws IllegalArgumentException if the size is not positive or the
+     * mines don't leave at least one free space
+     */
+    public ChunkedField(int width, int height, int mines, long seed) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Field size must be positive, got " + width + "x" + height);
+        }
+        if (mines < 0 || mines >= (long) width * height) {
+            throw new IllegalArgumentException("Mines must be between 0 and " + ((long) width * height - 1) +
+                    " for a " + width + "x" + height + " field, got " + mines);
+        }
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.seed = seed;
+        chunksX = (int) (((long) width + CHUNK - 1) / CHUNK);
+        chunks = (long) chunksX * (((long) height + CHUNK - 1) / CHUNK);
+        minesRemaining = mines;
+        unrevealed = (long) width * height;
+    }
+
+    @Override
+    public boolean revealSpace(int x, int y) {
+        changes.clear();
+        if (!inBounds(x, y)) {
+            return false;
+        }
+        if (getMaskValue(x, y) == FieldGenerator.MASK_MARKED) {
+            return false;
+        }
+        if (firstClick) {
+            protectFirstClick(x, y);
+            firstClick = false;
+        }
+        if (getFieldValue(x, y) == FieldGenerator.FIELD_MINE) {
+            setMask(x, y, FieldGenerator.MASK_LOSE);
+            return true;
+        }
+        else if (getMaskValue(x, y) == FieldGenerator.MASK_REVEALED) {
+            return false;
+        } else {
+            revealHelper(x, y);
+            return false;
+        }
+    }
+
+    /**
+     * Makes the first click safe. Nothing but the masks has been kept yet,
+     * so rather than moving mines the whole field is reseeded until the
+     * clicked space, or the 3x3 around it for openings, is free of mines.
+     * Each try only builds the mines of the chunks around the click. Fields
+     * too dense to come up clear get the mines in the way moved instead.
+     * @param x the x coordinate of the first click
+     * @param y the y coordinate of the first click
+     */
+    private void protectFirstClick(int x, int y) {
+        int radius = 0;
+        if (firstClickOpening) {
+            long area = (long) (Math.min(x + 1, width - 1) - Math.max(x - 1, 0) + 1) *
+                    (Math.min(y + 1, height - 1) - Math.max(y - 1, 0) + 1);
+            // Settle for the space itself when the rest can't hold every mine
+            if ((long) width * height - area >= mines) {
+                radius = 1;
+            }
+        }
+        for (int tries = 0; tries < MAX_FIRST_CLICK_TRIES; tries++) {
+            if (areaIsClear(x, y, radius)) {
+                return;
+            }
+            seed = new SplittableRandom(seed).nextLong();
+            splitCache.clear();
+            mineCache.clear();
+            valueCache.clear();
+        }
+        moveMinesOut(x, y, radius);
+    }
+
+    /**
+     * Moves every mine out of the area around the first click, each to a
+     * free space of its own chunk, or of the chunks after it if its chunk
+     * is full. The moves are kept and made again whenever a chunk is built,
+     * so they outlive the caches.
+     * @param x the x coordinate of the first click
+     * @param y the y coordinate of the first click
+     * @param radius 0 for just the space, 1 for the 3x3 around it
+     */
+    private void moveMinesOut(int x, int y, int radius) {
+        for (int ny = Math.max(y - radius, 0); ny <= Math.min(y + radius, height - 1); ny++) {
+            for (int nx = Math.max(x - radius, 0); nx <= Math.min(x + radius, width - 1); nx++) {
+                if (isMine(nx, ny)) {
+                    long to = findFreeSpace(nx / CHUNK, ny / CHUNK, x, y, radius);
+                    moved = Arrays.copyOf(moved, moved.length + 2);
+                    moved[moved.length - 2] = Cells.pack(nx, ny);
+                    moved[moved.length - 1] = to;
+                    mineCache.clear();
+                    valueCache.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds a space without a mine outside the area around the first
+     * click, going through the chunks in row-major order from the given one
+     * @param chunkX the x position of the chunk to start in
+     * @param chunkY the y position of the chunk to start in
+     * @param x the x coordinate of the first click
+     * @param y the y coordinate of the first click
+     * @param radius 0 for just the space, 1 for the 3x3 around it
+     * @return the packed position of the space
+     */
+    private long findFreeSpace(int chunkX, int chunkY, int x, int y, int radius) {
+        long first = (long) chunkY * chunksX + chunkX;
+        for (long k = 0; k < chunks; k++) {
+            long chunk = (first + k) % chunks;
+            int left = (int) (chunk % chunksX) * CHUNK;
+            int top = (int) (chunk / chunksX) * CHUNK;
+            for (int sy = top; sy < Math.min(top + CHUNK, height); sy++) {
+                for (int sx = left; sx < Math.min(left + CHUNK, width); sx++) {
+                    boolean inArea = Math.abs(sx - x) <= radius && Math.abs(sy - y) <= radius;
+                    if (!inArea && !isMine(sx, sy)) {
+                        return Cells.pack(sx, sy);
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("No free space left for a mine");
+    }
+
+    /**
+     * Checks whether the area around x, y is free of mines
+     * @param x the x coordinate of the centre
+     * @param y the y coordinate of the centre
+     * @param radius 0 for just the space, 1 for the 3x3 around it
+     * @return true if there are no mines in the area
+     */
+    private boolean areaIsClear(int x, int y, int radius) {
+        for (int ny = Math.max(y - radius, 0); ny <= Math.min(y + radius, height - 1); ny++) {
+            for (int nx = Math.max(x - radius, 0); nx <= Math.min(x + radius, width - 1); nx++) {
+                if (isMine(nx, ny)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Function for revealing all spaces when the user reveals an empty
+     * space. Works like the FieldGenerator flood fill, with coordinates
+     * packed into a long as y &lt;&lt; 32 | x since the field may hold
+     * more spaces than an int can index.
+     * @param x the x coordinate to be revealed
+     * @param y the y coordinate to be revealed
+     */
+    private void revealHelper(int x, int y) {
+        if (!revealCell(x, y)) return;
+        int top = 0;
+        revealStack[top++] = Cells.pack(x, y);
+        while (top > 0) {
+            long cell = revealStack[--top];
+            int cx = Cells.x(cell);
+            int cy = Cells.y(cell);
+            for (int ny = Math.max(cy - 1, 0); ny <= Math.min(cy + 1, height - 1); ny++) {
+                for (int nx = Math.max(cx - 1, 0); nx <= Math.min(cx + 1, width - 1); nx++) {
+                    if (revealCell(nx, ny)) {
+                        if (top == revealStack.length) {
+                            revealStack = Arrays.copyOf(revealStack, top * 2);
+                        }
+                        revealStack[top++] = Cells.pack(nx, ny);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reveals a single hidden, non-mine space for the flood fill
+     * @param x the x coordinate to be revealed
+     * @param y the y coordinate to be revealed
+     * @return true if the space was revealed and is empty
+     */
+    private boolean revealCell(int x, int y) {
+        int value = getFieldValue(x, y);
+        if (getMaskValue(x, y) != FieldGenerator.MASK_HIDDEN || value == FieldGenerator.FIELD_MINE) return false;
+        setMask(x, y, FieldGenerator.MASK_REVEALED);
+        unrevealed--;
+        return value == FieldGenerator.FIELD_EMPTY;
+    }
+
+    @Override
+    public void markMine(int x, int y) {
+        changes.clear();
+        if (!inBounds(x, y)) {
+            return;
+        }
+        int state = getMaskValue(x, y);
+        if (state == FieldGenerator.MASK_REVEALED || state == FieldGenerator.MASK_MARKED) {
+            return;
+        }
+        minesRemaining--;
+        setMask(x, y, FieldGenerator.MASK_MARKED);
+    }
+
+    @Override
+    public void unMark(int x, int y) {
+        changes.clear();
+        if (!inBounds(x, y)) {
+            return;
+        }
+        if (getMaskValue(x, y) != FieldGenerator.MASK_MARKED) {
+            return;
+        }
+        minesRemaining++;
+        setMask(x, y, FieldGenerator.MASK_HIDDEN);
+    }
+
+    /**
+     * Reveals the mines and sets the incorrect flags in every chunk the
+     * player has touched. The rest of the field is never built.
+     */
+    @Override
+    public void loseGame() {
+        changes.clear();
+        for (int slot = masks.nextSlot(0); slot >= 0; slot = masks.nextSlot(slot + 1)) {
+            int chunkX = Cells.x(masks.keyAt(slot));
+            int chunkY = Cells.y(masks.keyAt(slot));
+            byte[] mask = masks.valueAt(slot);
+            byte[] values = values(chunkX, chunkY);
+            for (int i = 0; i < CHUNK_CELLS; i++) {
+                int x = chunkX * CHUNK + i % CHUNK;
+                int y = chunkY * CHUNK + i / CHUNK;
+                if (x >= width || y >= height) {
+                    continue;
+                }
+                if (values[i] == FieldGenerator.FIELD_MINE && mask[i] != FieldGenerator.MASK_LOSE &&
+                        mask[i] != FieldGenerator.MASK_MARKED) {
+                    mask[i] = FieldGenerator.MASK_REVEALED;
+                    changes.add(x, y);
+                } else if (mask[i] == FieldGenerator.MASK_MARKED && values[i] != FieldGenerator.FIELD_MINE) {
+                    mask[i] = FieldGenerator.MASK_INCORRECT;
+                    changes.add(x, y);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean inBounds(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getFieldValue(int x, int y) {
+        return values(x / CHUNK, y / CHUNK)[(y % CHUNK) * CHUNK + x % CHUNK];
+    }
+
+    @Override
+    public int getMaskValue(int x, int y) {
+        byte[] mask = masks.get(Cells.pack(x / CHUNK, y / CHUNK));
+        return mask == null ? FieldGenerator.MASK_HIDDEN : mask[(y % CHUNK) * CHUNK + x % CHUNK];
+    }
+
+    /**
+     * Sets the mask state at x, y, keeping the mask of the chunk from now on
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param state one of the MASK_ constants
+     */
+    private void setMask(int x, int y, int state) {
+        long key = Cells.pack(x / CHUNK, y / CHUNK);
+        byte[] mask = masks.get(key);
+        if (mask == null) {
+            mask = new byte[CHUNK_CELLS];
+            masks.put(key, mask);
+        }
+        mask[(y % CHUNK) * CHUNK + x % CHUNK] = (byte) state;
+        changes.add(x, y);
+    }
+
+    @Override
+    public ChangeSet getChanges() {
+        return changes;
+    }
+
+    @Override
+    public int getMinesRemaining() {
+        return minesRemaining;
+    }
+
+    @Override
+    public boolean getGameWin() {
+        return unrevealed <= mines;
+    }
+
+    @Override
+    public boolean getFirstClick() {
+        return firstClick;
+    }
+
+    @Override
+    public void setFirstClickOpening(boolean opening) {
+        firstClickOpening = opening;
+    }
+
+    @Override
+    public int getMines() {
+        return mines;
+    }
+
+    /**
+     * Gets the number of chunks that are currently built
+     * @return the number of chunks with their numbers in memory
+     */
+    public int getCachedChunks() {
+        return valueCache.size();
+    }
+
+    /**
+     * Gets the number of chunks the player has touched
+     * @return the number of chunks with a mask in memory
+     */
+    public int getTouchedChunks() {
+        return masks.size();
+    }
+
+    /**
+     * Checks whether the space at x, y holds a mine, only building mines
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return true if the space holds a mine
+     */
+    private boolean isMine(int x, int y) {
+        long[] rows = mines(x / CHUNK, y / CHUNK);
+        return (rows[y % CHUNK] & (1L << (x % CHUNK))) != 0;
+    }
+
+    /**
+     * Gets the numbers of a chunk, building them if needed. Spaces past
+     * the edge of the field read as empty.
+     * @param chunkX the x position of the chunk
+     * @param chunkY the y position of the chunk
+     * @return the field values of the chunk, indexed y * CHUNK + x
+     */
+    private byte[] values(int chunkX, int chunkY) {
+        long key = Cells.pack(chunkX, chunkY);
+        byte[] values = valueCache.get(key);
+        if (values == null) {
+            values = buildValues(chunkX, chunkY);
+            valueCache.put(key, values);
+        }
+        return values;
+    }
+
+    /**
+     * Numbers a chunk from the mines of it and its eight neighbours
+     * @param chunkX the x position of the chunk
+     * @param chunkY the y position of the chunk
+     * @return the field values of the chunk, indexed y * CHUNK + x
+     */
+    private byte[] buildValues(int chunkX, int chunkY) {
+        // Padded grid of mine bits, index (y + 1) * (CHUNK + 2) + x + 1 holds local space x, y
+        int stride = CHUNK + 2;
+        int[] padded = new int[stride * stride];
+        for (int py = 0; py < stride; py++) {
+            int y = chunkY * CHUNK + py - 1;
+            for (int px = 0; px < stride; px++) {
+                int x = chunkX * CHUNK + px - 1;
+                if (inBounds(x, y) && isMine(x, y)) {
+                    padded[py * stride + px] = 1;
+                }
+            }
+        }
+        byte[] values = new byte[CHUNK_CELLS];
+        for (int y = 0; y < CHUNK; y++) {
+            for (int x = 0; x < CHUNK; x++) {
+                int centre = (y + 1) * stride + x + 1;
+                int count = padded[centre - stride - 1] + padded[centre - stride] + padded[centre - stride + 1] +
+                        padded[centre - 1] + padded[centre + 1] +
+                        padded[centre + stride - 1] + padded[centre + stride] + padded[centre + stride + 1];
+                values[y * CHUNK + x] = (byte) (count | -padded[centre]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Gets the mines of a chunk, building them if needed
+     * @param chunkX the x position of the chunk
+     * @param chunkY the y position of the chunk
+     * @return one word per row of the chunk, bit x set for a mine at x
+     */
+    private long[] mines(int chunkX, int chunkY) {
+        long key = Cells.pack(chunkX, chunkY);
+        long[] rows = mineCache.get(key);
+        if (rows == null) {
+            rows = buildMines(chunkX, chunkY);
+            mineCache.put(key, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Places the mines of a chunk with Floyd's sampling, seeded by a hash
+     * of the field seed and the chunk position so that the chunk comes out
+     * the same every time it is built, along with any moves off the first click
+     * @param chunkX the x position of the chunk
+     * @param chunkY the y position of the chunk
+     * @return one word per row of the chunk, bit x set for a mine at x
+     */
+    private long[] buildMines(int chunkX, int chunkY) {
+        int chunkWidth = Math.min(CHUNK, width - chunkX * CHUNK);
+        int chunkHeight = Math.min(CHUNK, height - chunkY * CHUNK);
+        int size = chunkWidth * chunkHeight;
+        int count = (int) chunkMines((long) chunkY * chunksX + chunkX);
+        long hash = seed ^ (chunkX * 0x9E3779B97F4A7C15L) ^ (chunkY * 0xC2B2AE3D27D4EB4FL);
+        SplittableRandom rand = new SplittableRandom(hash);
+        long[] rows = new long[CHUNK];
+        for (int j = size - count; j < size; j++) {
+            int pick = rand.nextInt(j + 1);
+            if ((rows[pick / chunkWidth] & (1L << (pick % chunkWidth))) != 0) {
+                pick = j;
+            }
+            rows[pick / chunkWidth] |= 1L << (pick % chunkWidth);
+        }
+        for (int k = 0; k < moved.length; k++) {
+            int x = Cells.x(moved[k]);
+            int y = Cells.y(moved[k]);
+            if (x / CHUNK == chunkX && y / CHUNK == chunkY) {
+                // Even entries are where a mine was taken from, odd ones where it went
+                if (k % 2 == 0) {
+                    rows[y % CHUNK] &= ~(1L << (x % CHUNK));
+                } else {
+                    rows[y % CHUNK] |= 1L << (x % CHUNK);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Gets how many mines a chunk holds. The chunks in row-major order are
+     * split in half over and over, and at each split the mines of the node
+     * are shared between its halves by a hypergeometric draw seeded from a
+     * hash of the field seed and the node. That gives every chunk the count
+     * it would have if all the mines were placed at once, and the same count
+     * every time, from one draw per level of the split. The draws near the
+     * top take the most steps and are shared by the most chunks, so they're
+     * cached.
+     * @param chunk the row-major index of the chunk
+     * @return the mines in the chunk
+     */
+    private long chunkMines(long chunk) {
+        long lo = 0;
+        long hi = chunks;
+        long count = mines;
+        // Nodes are numbered from 1 at the top, the halves of node n are 2n and 2n + 1
+        long node = 1;
+        while (hi - lo > 1) {
+            long mid = (lo + hi) >>> 1;
+            long[] left = splitCache.get(node);
+            if (left == null) {
+                long start = spacesBefore(lo);
+                SplittableRandom rand = new SplittableRandom(seed ^ (node * 0xD6E8FEB86659FD93L));
+                left = new long[] {MineLayout.hypergeometric(spacesBefore(hi) - start, count,
+                        spacesBefore(mid) - start, rand)};
+                splitCache.put(node, left);
+            }
+            if (chunk < mid) {
+                hi = mid;
+                count = left[0];
+                node = 2 * node;
+            } else {
+                lo = mid;
+                count -= left[0];
+                node = 2 * node + 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets how many spaces lie in the chunks before one, in row-major order
+     * @param chunk the row-major index of the chunk, up to the number of chunks
+     * @return the spaces in the chunks before it
+     */
+    private long spacesBefore(long chunk) {
+        long chunkY = chunk / chunksX;
+        if (chunkY * CHUNK >= height) {
+            return (long) width * height;
+        }
+        int chunkHeight = (int) Math.min(CHUNK, height - chunkY * CHUNK);
+        return chunkY * CHUNK * width + chunk % chunksX * CHUNK * chunkHeight;
+    }
+}
@@ -0,0 +1,316 @@
+package minesweeper;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Non-interactive console mode that plays commands streamed from stdin or a
+ * file, one to a line:
+ * <pre>
+ * reveal x,y
+ * mark x,y
+ * unmark x,y
+ * new        starts the next game, its seed one more than the last
+ * digest     prints the state digest of the current game
+ * # comment
+ * </pre>
+ * Input is read and parsed a block at a time straight from the bytes, and
+ * only results are printed: games won or lost, bad lines, and a digest of
+ * the final state at the end. Two runs of the same commands on the same
+ * seed print the same digest.
+ */
+public final class CommandBatch {
+    private static final int BLOCK = 1 << 16;
+    private static final int NEW = 3;
+    private static final int DIGEST = 4;
+    private static final byte[][] COMMANDS = {
+            "reveal".getBytes(), "mark".getBytes(), "unmark".getBytes(), "new".getBytes(), "digest".getBytes()};
+
+    private final FieldGenerator field;
+    private final PrintStream out;
+    private long seed;
+    private long lineNumber;
+    private long moves;
+    private boolean lost;
+    private boolean over;
+    // Position in the line being parsed, set by the parse methods
+    private int position;
+
+    /**
+     * Creates a batch playing onto a field
+     * @param field the field to play, not clicked yet
+     * @param out where results are printed
+     */
+    public CommandBatch(FieldGenerator field, PrintStream out) {
+        this.field = field;
+        this.out = out;
+        seed = field.getSeed();
+    }
+
+    /**
+     * Plays every command in a stream, to its end
+     * @param in the commands
+     * @throws IOException if the stream can't be read
+     */
+    public void run(InputStream in) throws IOException {
+        byte[] buffer = new byte[BLOCK];
+        int length = 0;
+        int read;
+        while ((read = in.read(buffer, length, buffer.length - length)) >= 0) {
+            length += read;
+            // Play every whole line in the block, keeping the partial last one
+            int start = 0;
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] == '\n') {
+                    line(buffer, start, i);
+                    start = i + 1;
+                }
+            }
+            length -= start;
+            System.arraycopy(buffer, start, buffer, 0, length);
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        if (length > 0) {
+            line(buffer, 0, length);
+        }
+    }
+
+    /**
+     * Parses and plays one line
+     * @param line the bytes holding the line
+     * @param start the first byte of the line
+     * @param end the byte after the last one of the line
+     */
+    private void line(byte[] line, int start, int end) {
+        lineNumber++;
+        if (end > start && line[end - 1] == '\r') {
+            end--;
+        }
+        position = start;
+        skipSpaces(line, end);
+        if (position == end || line[position] == '#') {
+            return;
+        }
+        int command = command(line, end);
+        if (command < 0) {
+            out.println("line " + lineNumber + ": unknown command");
+            return;
+        }
+        if (command == NEW) {
+            newGame();
+            return;
+        }
+        if (command == DIGEST) {
+            out.println(digest());
+            return;
+        }
+        int x = number(line, end);
+        skipSpaces(line, end);
+        if (position < end && line[position] == ',') {
+            position++;
+        }
+        int y = number(line, end);
+        skipSpaces(line, end);
+        if (x < 0 || y < 0 || position != end) {
+            out.println("line " + lineNumber + ": expected x,y");
+            return;
+        }
+        if (!field.inBounds(x, y)) {
+            out.println("line " + lineNumber + ": " + x + "," + y + " is out of bounds");
+            return;
+        }
+        play(command, x, y);
+    }
+
+    /**
+     * Plays a move, unless the game is over
+     * @param command GameRecorder.REVEAL, MARK or UNMARK
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    private void play(int command, int x, int y) {
+        if (over) {
+            return;
+        }
+        moves++;
+        if (command == GameRecorder.REVEAL) {
+            if (field.revealSpace(x, y)) {
+                field.loseGame();
+                lost = true;
+                over = true;
+                out.println("lost at " + x + "," + y + " after " + moves + " moves");
+            } else if (field.getGameWin()) {
+                over = true;
+                out.println("won after " + moves + " moves");
+            }
+        } else if (command == GameRecorder.MARK) {
+            field.markMine(x, y);
+        } else {
+            field.unMark(x, y);
+        }
+    }
+
+    /**
+     * Starts the next game on the same field
+     */
+    private void newGame() {
+        field.reset(++seed);
+        moves = 0;
+        lost = false;
+        over = false;
+    }
+
+    /**
+     * Matches the command word at the current position
+     * @param line the bytes holding the line
+     * @param end the end of the line
+     * @return the index of the command in COMMANDS, or -1 if it isn't one
+     */
+    private int command(byte[] line, int end) {
+        int wordEnd = position;
+        while (wordEnd < end && line[wordEnd] != ' ' && line[wordEnd] != '\t') {
+            wordEnd++;
+        }
+        for (int c = 0; c < COMMANDS.length; c++) {
+            byte[] word = COMMANDS[c];
+            if (word.length != wordEnd - position) {
+                continue;
+            }
+            int k = 0;
+            while (k < word.length && word[k] == line[position + k]) {
+                k++;
+            }
+            if (k == word.length) {
+                position = wordEnd;
+                skipSpaces(line, end);
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a number that isn't negative at the current position, after any spaces
+     * @param line the bytes holding the line
+     * @param end the end of the line
+     * @return the number, or -1 if there isn't one or it's too big
+     */
+    private int number(byte[] line, int end) {
+        skipSpaces(line, end);
+        int start = position;
+        long value = 0;
+        while (position < end && line[position] >= '0' && line[position] <= '9') {
+            value = value * 10 + (line[position++] - '0');
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return position == start ? -1 : (int) value;
+    }
+
+    private void skipSpaces(byte[] line, int end) {
+        while (position < end && (line[position] == ' ' || line[position] == '\t')) {
+            position++;
+        }
+    }
+
+    /**
+     * Describes the current game in one line, ending with a hash of
+     * everything a player can see of the board
+     * @return the digest
+     */
+    public String digest() {
+        int width = field.getWidth();
+        int height = field.getHeight();
+        int revealed = 0;
+        int flags = 0;
+        // 64 bit FNV-1a over the mask of every space and the number of the revealed ones
+        long hash = 0xcbf29ce484222325L;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int mask = field.getMaskValue(x, y);
+                int value = mask == FieldGenerator.MASK_HIDDEN || mask == FieldGenerator.MASK_MARKED ?
+                        0 : field.getFieldValue(x, y);
+                if (mask == FieldGenerator.MASK_REVEALED) {
+                    revealed++;
+                } else if (mask == FieldGenerator.MASK_MARKED) {
+                    flags++;
+                }
+                hash = (hash ^ ((mask & 0xF) << 4 | (value & 0xF))) * 0x100000001b3L;
+            }
+        }
+        String state = lost ? "lost" : field.getGameWin() ? "won" : "playing";
+        return String.format("%dx%d mines %d seed %d moves %d %s revealed %d flags %d digest %016x",
+                width, height, field.getMines(), field.getSeed(), moves, state, revealed, flags, hash);
+    }
+
+    /**
+     * Runs a batch from the command line, reading commands from a file or stdin
+     * @param args --width=N --height=N --mines=N --seed=N --opening --file=PATH
+     */
+    public static void main(String[] args) {
+        int width = 9;
+        int height = 9;
+        int mines = 10;
+        long seed = new SplittableRandom().nextLong();
+        boolean opening = false;
+        String file = null;
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            String name = split < 0 ? arg : arg.substring(0, split);
+            String value = split < 0 ? "" : arg.substring(split + 1);
+            try {
+                if (name.equals("--width")) {
+                    width = Integer.parseInt(value);
+                } else if (name.equals("--height")) {
+                    height = Integer.parseInt(value);
+                } else if (name.equals("--mines")) {
+                    mines = Integer.parseInt(value);
+                } else if (name.equals("--seed")) {
+                    seed = Long.parseLong(value);
+                } else if (name.equals("--opening")) {
+                    opening = true;
+                } else if (name.equals("--file")) {
+                    file = value;
+                } else {
+                    usage("Unknown option " + arg);
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                usage("Not a number: " + arg);
+                return;
+            }
+        }
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, BLOCK), false);
+        try {
+            FieldGenerator field = new FieldGenerator(width, height, mines, seed);
+            field.setFirstClickOpening(opening);
+            CommandBatch batch = new CommandBatch(field, out);
+            InputStream in = file == null ? System.in : new FileInputStream(file);
+            try {
+                batch.run(in);
+            } finally {
+                in.close();
+            }
+            out.println(batch.digest());
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Can't read commands: " + e.getMessage());
+        } finally {
+            out.flush();
+        }
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Options: --width=N --height=N --mines=N --seed=N --opening --file=PATH");
+    }
+}
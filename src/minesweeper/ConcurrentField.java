@@ -0,0 +1,382 @@
+package minesweeper;
+
+import minesweeper.util.IntDeque;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A field any number of threads can play at once, for co-op games on one
+ * board and for solvers working in parallel. The layout is fixed once the
+ * first click has been protected, after that only the mask changes. Mask
+ * states are packed eight to an int in an AtomicIntegerArray and every
+ * change is a compare-and-set from the state it expects, so a space is
+ * revealed, flagged or unflagged by exactly one thread however many try.
+ * Each thread flood fills from its own stack, taking only the spaces it wins,
+ * so flood fills from different threads run side by side and never reveal
+ * a space twice. The counters are LongAdders, nothing takes a lock once
+ * the first click is done. Once any thread hits a mine the game is lost
+ * for all of them, and once the last safe space is revealed it's won for
+ * all of them. Either way nothing more is revealed or flagged.
+ * <p>
+ * getChanges returns the spaces changed by the calling thread's last move,
+ * moves made by other threads aren't in it.
+ */
+public class ConcurrentField implements Board {
+    // Bits a mask state takes, and how many states fit in an int
+    private static final int STATE_BITS = 4;
+    private static final int STATE_MASK = 0xF;
+    private static final int PER_WORD = 8;
+
+    private final CellStore cells;
+    private final AtomicIntegerArray masks;
+    private final int mines;
+    private final long seed;
+    private final LongAdder minesRemaining = new LongAdder();
+    private final LongAdder unrevealed = new LongAdder();
+    private volatile boolean firstClick = true;
+    private volatile boolean firstClickOpening = false;
+    private volatile boolean lost = false;
+    private volatile boolean won = false;
+    private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+        @Override
+        protected Worker initialValue() {
+            return new Worker();
+        }
+    };
+
+    /**
+     * Constructor for a random field
+     * @param x the x-size of the field
+     * @param y the y-size of the field
+     * @param mines the number of mines
+     * @throws IllegalArgumentException if the size is not positive or the
+     * mines don't leave at least one free space
+     */
+    public ConcurrentField(int x, int y, int mines) {
+        this(x, y, mines, new SplittableRandom().nextLong(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for a field generated from a seed, the same field a
+     * FieldGenerator makes from it
+     * @param x the x-size of the field
+     * @param y the y-size of the field
+     * @param mines the number of mines
+     * @param seed the master seed for the mine placement
+     * @param pool the pool to generate large fields on, or null for the calling thread
+     * @throws IllegalArgumentException if the size is not positive or the
+     * mines don't leave at least one free space
+     */
+    public ConcurrentField(int x, int y, int mines, long seed, ForkJoinPool pool) {
+        if (x < 1 || y < 1) {
+            throw new IllegalArgumentException("Field size must be positive, got " + x + "x" + y);
+        }
+        if (mines < 0 || mines >= (long) x * y) {
+            throw new IllegalArgumentException("Mines must be between 0 and " + ((long) x * y - 1) +
+                    " for a " + x + "x" + y + " field, got " + mines);
+        }
+        this.mines = mines;
+        this.seed = seed;
+        cells = new CellStore(x, y);
+        MineLayout.generate(cells, mines, seed, pool);
+        masks = new AtomicIntegerArray((cells.size() + PER_WORD - 1) / PER_WORD);
+        minesRemaining.add(mines);
+        unrevealed.add(cells.size());
+    }
+
+    /**
+     * Reveals a space, flood filling from it if it's empty. The first
+     * click makes the field safe to click on first, threads clicking at
+     * the same time wait for it. Once the game is over nothing is revealed.
+     * @param x the x-coordinate to be revealed
+     * @param y the y-coordinate to be revealed
+     * @return whether or not the game has been lost
+     */
+    @Override
+    public boolean revealSpace(int x, int y) {
+        Worker worker = workers.get();
+        worker.changes.clear();
+        if (lost) {
+            return true;
+        }
+        if (won || !inBounds(x, y)) {
+            return false;
+        }
+        if (firstClick) {
+            protectFirstClick(x, y);
+        }
+        int i = cells.index(x, y);
+        int value = cells.getField(i);
+        if (value == FieldGenerator.FIELD_MINE) {
+            // Only a hidden mine loses, flags protect it
+            if (claim(worker, i, FieldGenerator.MASK_HIDDEN, FieldGenerator.MASK_LOSE) && !end(false)) {
+                // The last safe space was revealed first, so the mine goes back
+                claim(worker, i, FieldGenerator.MASK_LOSE, FieldGenerator.MASK_HIDDEN);
+                worker.changes.clear();
+            }
+            return lost;
+        }
+        if (!reveal(worker, i)) {
+            return false;
+        }
+        if (value == FieldGenerator.FIELD_EMPTY) {
+            flood(worker, i);
+        }
+        if (unrevealed.sum() <= mines) {
+            end(true);
+        }
+        return false;
+    }
+
+    /**
+     * Ends the game, won or lost, unless it has already ended. Only the
+     * last move of a game gets here, so the lock is never contended.
+     * @param win true if the game was won, false if it was lost
+     * @return true if the game ended the way asked
+     */
+    private synchronized boolean end(boolean win) {
+        if (!won && !lost) {
+            if (win) {
+                won = true;
+            } else {
+                lost = true;
+            }
+        }
+        return win ? won : lost;
+    }
+
+    /**
+     * Protects the first click, once, while other threads wait
+     * @param x the x coordinate of the first click
+     * @param y the y coordinate of the first click
+     */
+    private synchronized void protectFirstClick(int x, int y) {
+        if (firstClick) {
+            MineLayout.protectFirstClick(cells, mines, x, y, firstClickOpening, seed);
+            // The volatile write publishes the final layout to every thread that reads it
+            firstClick = false;
+        }
+    }
+
+    /**
+     * Reveals the neighbours of an empty space this thread revealed, and
+     * theirs in turn. Spaces another thread takes first are skipped, that
+     * thread fills on from them.
+     * @param worker the calling thread's state
+     * @param start the packed index of the empty space
+     */
+    private void flood(Worker worker, int start) {
+        int width = cells.getWidth();
+        int height = cells.getHeight();
+        IntDeque stack = worker.stack;
+        stack.clear();
+        stack.addLast(start);
+        while (!stack.isEmpty()) {
+            int cell = stack.pollLast();
+            int cx = cell % width;
+            int cy = cell / width;
+            for (int ny = Math.max(cy - 1, 0); ny <= Math.min(cy + 1, height - 1); ny++) {
+                for (int nx = Math.max(cx - 1, 0); nx <= Math.min(cx + 1, width - 1); nx++) {
+                    int next = cells.index(nx, ny);
+                    if (cells.getField(next) != FieldGenerator.FIELD_MINE && reveal(worker, next) &&
+                            cells.getField(next) == FieldGenerator.FIELD_EMPTY) {
+                        stack.addLast(next);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reveals a hidden space, unless another thread gets to it first or
+     * the game has been lost, which stops every flood fill
+     * @param worker the calling thread's state
+     * @param i the packed index of the space
+     * @return true if this thread revealed it
+     */
+    private boolean reveal(Worker worker, int i) {
+        if (lost || !claim(worker, i, FieldGenerator.MASK_HIDDEN, FieldGenerator.MASK_REVEALED)) {
+            return false;
+        }
+        unrevealed.decrement();
+        return true;
+    }
+
+    /**
+     * Changes the mask state of a space if it's still in the expected state
+     * @param worker the calling thread's state, its changes get the space
+     * @param i the packed index of the space
+     * @param expect the state the space has to be in
+     * @param state the state to set
+     * @return true if this thread changed it
+     */
+    private boolean claim(Worker worker, int i, int expect, int state) {
+        int word = i / PER_WORD;
+        int shift = (i % PER_WORD) * STATE_BITS;
+        while (true) {
+            int current = masks.get(word);
+            if (decode(current >>> shift) != expect) {
+                return false;
+            }
+            int updated = (current & ~(STATE_MASK << shift)) | ((state & STATE_MASK) << shift);
+            if (masks.compareAndSet(word, current, updated)) {
+                worker.changes.add(i % cells.getWidth(), i / cells.getWidth());
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Turns packed bits back into a mask state
+     * @param bits the state in the low four bits, two's complement
+     * @return the mask state
+     */
+    private static int decode(int bits) {
+        return (bits << (32 - STATE_BITS)) >> (32 - STATE_BITS);
+    }
+
+    /**
+     * Mark the space at x, y as a mine
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    @Override
+    public void markMine(int x, int y) {
+        Worker worker = workers.get();
+        worker.changes.clear();
+        if (!lost && !won && inBounds(x, y) && claim(worker, cells.index(x, y), FieldGenerator.MASK_HIDDEN,
+                FieldGenerator.MASK_MARKED)) {
+            minesRemaining.decrement();
+        }
+    }
+
+    /**
+     * Unmark the space at x, y
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    @Override
+    public void unMark(int x, int y) {
+        Worker worker = workers.get();
+        worker.changes.clear();
+        if (!lost && !won && inBounds(x, y) && claim(worker, cells.index(x, y), FieldGenerator.MASK_MARKED,
+                FieldGenerator.MASK_HIDDEN)) {
+            minesRemaining.increment();
+        }
+    }
+
+    /**
+     * Reveals all the mines and shows the wrong flags, ending the game
+     * for every thread. A game that's already won stays won.
+     */
+    @Override
+    public void loseGame() {
+        Worker worker = workers.get();
+        worker.changes.clear();
+        if (!end(false)) {
+            return;
+        }
+        for (int i = 0; i < cells.size(); i++) {
+            if (cells.getField(i) == FieldGenerator.FIELD_MINE) {
+                claim(worker, i, FieldGenerator.MASK_HIDDEN, FieldGenerator.MASK_REVEALED);
+            } else {
+                claim(worker, i, FieldGenerator.MASK_MARKED, FieldGenerator.MASK_INCORRECT);
+            }
+        }
+    }
+
+    @Override
+    public ChangeSet getChanges() {
+        return workers.get().changes;
+    }
+
+    @Override
+    public boolean inBounds(int x, int y) {
+        return x >= 0 && y >= 0 && x < cells.getWidth() && y < cells.getHeight();
+    }
+
+    @Override
+    public int getWidth() {
+        return cells.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return cells.getHeight();
+    }
+
+    /**
+     * Gets the field value at x, y. Until the first click the layout may
+     * still change. The final layout is published with the mask, so a
+     * value read after seeing its space revealed, or getFirstClick return
+     * false, is the final one.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the field value, FIELD_MINE or the number of touching mines
+     */
+    @Override
+    public int getFieldValue(int x, int y) {
+        return cells.getField(cells.index(x, y));
+    }
+
+    @Override
+    public int getMaskValue(int x, int y) {
+        int i = cells.index(x, y);
+        return decode(masks.get(i / PER_WORD) >>> ((i % PER_WORD) * STATE_BITS));
+    }
+
+    /**
+     * Gets the number of mines not flagged yet. While other threads are
+     * flagging this is a recent count rather than an exact one.
+     * @return the mines left
+     */
+    @Override
+    public int getMinesRemaining() {
+        return (int) minesRemaining.sum();
+    }
+
+    /**
+     * Checks whether every safe space has been revealed without a mine
+     * being hit. Once it has, this stays true and the game is over.
+     * @return true if the game has been won
+     */
+    @Override
+    public boolean getGameWin() {
+        return won;
+    }
+
+    @Override
+    public boolean getFirstClick() {
+        return firstClick;
+    }
+
+    @Override
+    public void setFirstClickOpening(boolean opening) {
+        firstClickOpening = opening;
+    }
+
+    @Override
+    public int getMines() {
+        return mines;
+    }
+
+    /**
+     * Gets the master seed the field was generated from
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * What each thread playing keeps to itself: its flood fill stack and
+     * the spaces its last move changed
+     */
+    private static final class Worker {
+        private final IntDeque stack = new IntDeque();
+        private final ChangeSet changes = new ChangeSet();
+    }
+}
@@ -8,6 +8,7 @@ import java.util.Scanner;
 public class ConsoleDisplay {
     private FieldGenerator field;
     private Scanner input = new Scanner(System.in);
+    private ConsoleRenderer renderer;
 
     /**
      * Constructors
@@ -26,101 +27,65 @@ public class ConsoleDisplay {
      * Prints out the minefield with all tiles revealed
      */
     public static void printFieldRevealed(FieldGenerator aField) {
-        // Print out the number lines
-        System.out.print("      ");
-        for (int i = 0; i < aField.getField()[0].length; i++) {
-            if (i < 10)
-                System.out.print(" [" + (i) + "] ");
-            else if (i > 99)
-                System.out.print(" [" + (i) + "]");
-            else
-                System.out.print(" [" + (i) + "]");
-        }
-        System.out.println();
-        for (int y = 0; y < aField.getField().length; y++) {
-            if (y < 10)
-                System.out.print("  [" + (y) + "] ");
-            else if (y > 99)
-                System.out.print(" [" + (y) + "}");
-            else
-                System.out.print("  [" + (y) + "]");
-            for (int x = 0; x < aField.getField()[0].length; x++) {
-                int out = aField.getField()[y][x];
-                if (out == -1) System.out.print("  X  ");
-                else if (out == 0) System.out.print("  .  ");
-                else System.out.printf("  %d  ",out);
-            }
-            System.out.println();
-            System.out.println();
-        }
+        new ConsoleRenderer(aField, System.out, false).renderRevealed();
     }
 
+    /**
+     * Prints out the minefield as the player sees it. On an ANSI terminal
+     * only the spaces that changed since the last print are redrawn.
+     */
     public void printField() {
-        // Print the number of mines remaining
-        System.out.println("Mines remaining: " + field.getMinesRemaining());
-        // Print out the number lines
-        System.out.print("      ");
-        for (int i = 0; i < field.getField().length; i++) {
-            if (i < 10)
-                System.out.print(" [" + (i) + "] ");
-            else
-                System.out.print(" [" + (i) + "]");
-        }
-        System.out.println();
-        // Print out the field
-        for (int i = 0; i < field.getField().length; i++) {
-            if (i < 10)
-                System.out.print("  [" + (i) + "] ");
-            else
-                System.out.print("  [" + (i) + "]");
-            for (int j = 0; j < field.getField()[0].length; j++) {
-                int mask = field.getMask()[i][j];
-                if (mask == 1) {
-                    int out = field.getField()[i][j];
-                    if (out == 0) System.out.print("  .  ");
-                    else System.out.printf("  %d  ", out);
-                }
-                else if (mask == -1) {
-                    System.out.print("  X  ");
-                }
-                else System.out.print("  O  ");
-            }
-            System.out.println("\n");
+        if (renderer == null) {
+            renderer = new ConsoleRenderer(field, System.out, ConsoleRenderer.terminalSupportsAnsi());
         }
+        renderer.render();
     }
 
+    /**
+     * Asks for a position until one is entered as x, y
+     * @param command the command the position is for
+     * @return the position entered
+     */
     public Coordinate getCoord(String command) {
-        String strMove;
-        Coordinate coord;
-        System.out.println("What is the position you would like to " + command + "? (Enter as: " +
-                "vertical, horizontal)");
-        strMove = input.nextLine();
-        try {
-            int x = Integer.parseInt(strMove.substring(0, strMove.indexOf(",")));
-            int y = Integer.parseInt(strMove.substring(strMove.indexOf(",") + 2));
-            coord = new Coordinate(x,y);
-        } catch (NumberFormatException e) {
+        while (true) {
+            System.out.println("What is the position you would like to " + command + "? (Enter as: " +
+                    "horizontal, vertical)");
+            String strMove = input.nextLine();
+            int comma = strMove.indexOf(',');
+            if (comma >= 0) {
+                try {
+                    int x = Integer.parseInt(strMove.substring(0, comma).trim());
+                    int y = Integer.parseInt(strMove.substring(comma + 1).trim());
+                    return new Coordinate(x, y);
+                } catch (NumberFormatException e) {
+                    // Asked again below
+                }
+            }
             System.out.println("INVALID INPUT. TRY AGAIN.");
-            coord = this.getCoord(command);
         }
-        return coord;
     }
 
+    /**
+     * Asks for a command until a known one is entered
+     * @return reveal, mark or unmark
+     */
     public String getCommand() {
-        String command;
-        System.out.println("What would you like to do? (reveal, mark, unmark)");
-        command = input.nextLine();
-        if (!command.equals("unmark") && !command.equals("mark") && !command.equals("reveal")) {
+        while (true) {
+            System.out.println("What would you like to do? (reveal, mark, unmark)");
+            String command = input.nextLine().trim();
+            if (command.equals("unmark") || command.equals("mark") || command.equals("reveal")) {
+                return command;
+            }
             System.out.println("INVALID COMMAND. PLEASE TRY AGAIN.");
-            command = this.getCommand();
         }
-        return command;
     }
+
     public void printMessage(String message) {
         System.out.println(message);
     }
 
     public void setField(FieldGenerator field) {
         this.field = field;
+        renderer = null;
     }
 }
@@ -0,0 +1,332 @@
+package minesweeper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Draws a board on a text console. Each frame is built in one reusable
+ * buffer and written with a single write and flush. On an ANSI terminal the
+ * first frame clears the screen and later frames only move the cursor to the
+ * spaces that changed since the last one, so a move on a big board costs a
+ * few bytes instead of the whole board. Without ANSI every frame is the
+ * whole board, as plain text.
+ * <p>
+ * The layout is the one the console has always used: a mine count, a row of
+ * column numbers, then each row of the board followed by a blank line, five
+ * characters to a space. Diffing needs the whole board on screen, use plain
+ * frames on terminals smaller than the board.
+ */
+public class ConsoleRenderer {
+    // Width of a space and of the row numbers, in characters
+    private static final int CELL = 5;
+    private static final int LABEL = 6;
+    // Screen line of the mine count and of the first row of the board, counting from 1
+    private static final int MINES_LINE = 1;
+    private static final int FIRST_ROW = 3;
+    private static final byte[] CLEAR = {0x1b, '[', 'H', 0x1b, '[', '2', 'J'};
+    private static final byte[] CLEAR_BELOW = {0x1b, '[', 'J'};
+    private static final byte[] MINES = "Mines remaining: ".getBytes();
+
+    private final Board board;
+    private final OutputStream out;
+    private final boolean ansi;
+    private byte[] buffer = new byte[4096];
+    private int length;
+    // The glyph on screen for each space, 0 before the first frame
+    private byte[] shown;
+    private int shownMines;
+
+    /**
+     * Creates a renderer for a board
+     * @param board the board to draw
+     * @param out the stream to write frames to
+     * @param ansi true to redraw only the changes using ANSI cursor movement,
+     * false to write every frame in full as plain text
+     */
+    public ConsoleRenderer(Board board, OutputStream out, boolean ansi) {
+        this.board = board;
+        this.out = out;
+        this.ansi = ansi;
+        shown = new byte[board.getWidth() * board.getHeight()];
+    }
+
+    /**
+     * Checks whether the console this program is attached to is likely to
+     * understand ANSI cursor movement
+     * @return true if there is an interactive terminal that isn't dumb
+     */
+    public static boolean terminalSupportsAnsi() {
+        String term = System.getenv("TERM");
+        return System.console() != null && term != null && !term.equals("dumb");
+    }
+
+    /**
+     * Draws the board as the player sees it
+     */
+    public void render() {
+        draw(false);
+    }
+
+    /**
+     * Draws the board with every space shown, mines included
+     */
+    public void renderRevealed() {
+        draw(true);
+    }
+
+    /**
+     * Makes the next frame a full one, for when something else has written
+     * over the screen
+     */
+    public void invalidate() {
+        Arrays.fill(shown, (byte) 0);
+    }
+
+    /**
+     * Builds a frame and writes it out
+     * @param revealAll true to show every space, mines included
+     */
+    private void draw(boolean revealAll) {
+        length = 0;
+        if (!ansi || shown[0] == 0) {
+            fullFrame(revealAll);
+        } else {
+            diffFrame(revealAll);
+        }
+        try {
+            out.write(buffer, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Builds a frame of the whole board
+     * @param revealAll true to show every space, mines included
+     */
+    private void fullFrame(boolean revealAll) {
+        int width = board.getWidth();
+        int height = board.getHeight();
+        if (ansi) {
+            put(CLEAR);
+        }
+        put(MINES);
+        putInt(board.getMinesRemaining());
+        put('\n');
+        shownMines = board.getMinesRemaining();
+        // Column numbers, kept to the width of a space
+        pad(LABEL);
+        for (int x = 0; x < width; x++) {
+            if (x < 10) {
+                put(' ');
+                put('[');
+                putInt(x);
+                put(']');
+                put(' ');
+            } else if (x < 100) {
+                put(' ');
+                put('[');
+                putInt(x);
+                put(']');
+            } else if (x < 1000) {
+                put('[');
+                putInt(x);
+                put(']');
+            } else {
+                pad(CELL - digits(x));
+                putInt(x);
+            }
+        }
+        put('\n');
+        for (int y = 0; y < height; y++) {
+            // Row numbers, kept to the width of the label
+            if (y < 100) {
+                put(' ');
+                put(' ');
+                put('[');
+                putInt(y);
+                put(']');
+                if (y < 10) {
+                    put(' ');
+                }
+            } else {
+                pad(LABEL - 2 - digits(y));
+                put('[');
+                putInt(y);
+                put(']');
+            }
+            for (int x = 0; x < width; x++) {
+                byte glyph = glyph(x, y, revealAll);
+                shown[y * width + x] = glyph;
+                put(' ');
+                put(' ');
+                put(glyph);
+                put(' ');
+                put(' ');
+            }
+            put('\n');
+            put('\n');
+        }
+    }
+
+    /**
+     * Builds a frame of the spaces and mine count that changed since the
+     * last one, then leaves the cursor below the board
+     * @param revealAll true to show every space, mines included
+     */
+    private void diffFrame(boolean revealAll) {
+        int width = board.getWidth();
+        int height = board.getHeight();
+        if (board.getMinesRemaining() != shownMines) {
+            shownMines = board.getMinesRemaining();
+            moveTo(MINES_LINE, MINES.length + 1);
+            putInt(shownMines);
+            // Clear what's left of a longer count
+            put((byte) 0x1b);
+            put('[');
+            put('K');
+        }
+        for (int y = 0; y < height; y++) {
+            int lastX = -2;
+            for (int x = 0; x < width; x++) {
+                byte glyph = glyph(x, y, revealAll);
+                int i = y * width + x;
+                if (shown[i] == glyph) {
+                    continue;
+                }
+                shown[i] = glyph;
+                if (x == lastX + 1) {
+                    // Right after the last glyph, writing the gap is shorter than moving
+                    pad(CELL - 1);
+                } else {
+                    moveTo(FIRST_ROW + 2 * y, LABEL + CELL * x + 3);
+                }
+                put(glyph);
+                lastX = x;
+            }
+        }
+        moveTo(FIRST_ROW + 2 * height, 1);
+        put(CLEAR_BELOW);
+    }
+
+    /**
+     * Gets the character drawn for a space
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param revealAll true to show the space whatever its mask
+     * @return the character
+     */
+    private byte glyph(int x, int y, boolean revealAll) {
+        return glyph(board, x, y, revealAll);
+    }
+
+    /**
+     * Gets the character the console shows for a space of any board
+     * @param board the board
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param revealAll true to show the space whatever its mask
+     * @return the character
+     */
+    static byte glyph(Board board, int x, int y, boolean revealAll) {
+        int mask = board.getMaskValue(x, y);
+        if (revealAll || mask == FieldGenerator.MASK_REVEALED) {
+            int value = board.getFieldValue(x, y);
+            if (value == FieldGenerator.FIELD_MINE) {
+                return revealAll ? (byte) 'X' : (byte) '*';
+            }
+            return value == FieldGenerator.FIELD_EMPTY ? (byte) '.' : (byte) ('0' + value);
+        } else if (mask == FieldGenerator.MASK_MARKED) {
+            return 'X';
+        } else if (mask == FieldGenerator.MASK_LOSE) {
+            return '#';
+        } else if (mask == FieldGenerator.MASK_INCORRECT) {
+            return '!';
+        }
+        return 'O';
+    }
+
+    /**
+     * Adds an ANSI cursor move to the frame
+     * @param line the screen line, counting from 1
+     * @param column the screen column, counting from 1
+     */
+    private void moveTo(int line, int column) {
+        put((byte) 0x1b);
+        put('[');
+        putInt(line);
+        put(';');
+        putInt(column);
+        put('H');
+    }
+
+    /**
+     * Adds spaces to the frame
+     * @param count the number of spaces
+     */
+    private void pad(int count) {
+        for (int i = 0; i < count; i++) {
+            put(' ');
+        }
+    }
+
+    /**
+     * Adds a number to the frame without going through a String
+     * @param value the number
+     */
+    private void putInt(int value) {
+        if (value < 0) {
+            put('-');
+            value = -value;
+        }
+        int end = length + digits(value);
+        ensure(end - length);
+        for (int i = end - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length = end;
+    }
+
+    /**
+     * Counts the decimal digits of a number that isn't negative
+     * @param value the number
+     * @return the number of digits
+     */
+    private static int digits(int value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    private void put(char c) {
+        put((byte) c);
+    }
+
+    private void put(byte b) {
+        ensure(1);
+        buffer[length++] = b;
+    }
+
+    private void put(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * Grows the buffer to fit more bytes, it's kept for the next frame
+     * @param more the number of bytes about to be added
+     */
+    private void ensure(int more) {
+        if (length + more > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + more));
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package minesweeper;
 
+import minesweeper.util.Cells;
+
 /**
- * The class for holding the coordinate of a point on the field
+ * The class for holding the coordinate of a point on the field. Only used
+ * where a player enters a position, the engine passes spaces around as
+ * packed cells, see Cells.
  */
 public class Coordinate {
     private int x;
@@ -26,4 +30,21 @@ public class Coordinate {
     public int getY() {
         return y;
     }
+
+    /**
+     * Packs the coordinate into a cell for the engine
+     * @return the packed cell
+     */
+    public long toCell() {
+        return Cells.pack(x, y);
+    }
+
+    /**
+     * Unpacks a cell from the engine
+     * @param cell the packed cell
+     * @return the coordinate of the cell
+     */
+    public static Coordinate fromCell(long cell) {
+        return new Coordinate(Cells.x(cell), Cells.y(cell));
+    }
 }
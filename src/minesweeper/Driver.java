@@ -1,11 +1,79 @@
 package minesweeper;
 
+import minesweeper.sim.Simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
- * Driver class for the MineSweeper game
+ * Driver class for the MineSweeper game. Starting with --simulate runs a
+ * headless simulation instead, see Simulation.main for its options,
+ * --batch plays console commands from stdin or a file, see CommandBatch.main,
+ * --replay followed by a file plays a replay back headlessly, --server
+ * hosts games for clients on localhost, see GameServer.main, and --load
+ * measures a server under many sessions, see LoadGenerator.main.
  */
 public class Driver {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--simulate")) {
+            Simulation.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--batch")) {
+            CommandBatch.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--server")) {
+            GameServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--load")) {
+            LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--replay")) {
+            replay(new File(args[1]));
+            return;
+        }
         MineSweeper sweep = new MineSweeper();
         sweep.startGame();
     }
+
+    /**
+     * Plays a replay back at full speed and prints how the game ended,
+     * along with the metrics of its layout
+     * @param file the replay to play
+     */
+    private static void replay(File file) {
+        try {
+            GameReplay replay = GameReplay.load(file);
+            long start = System.nanoTime();
+            FieldGenerator field = replay.createField();
+            boolean lost = false;
+            for (int i = 0; i < replay.getCount() && !lost; i++) {
+                lost = replay.apply(field, i);
+            }
+            long nanos = System.nanoTime() - start;
+            String result = lost ? "lost" : field.getGameWin() ? "won" : "unfinished";
+            System.out.printf("%dx%d, %d mines, seed %d: %d moves over %.1f s, %s%n", field.getWidth(),
+                    field.getHeight(), field.getMines(), replay.getSeed(), replay.getCount(),
+                    replay.getCount() == 0 ? 0.0 : replay.getTime(replay.getCount() - 1) / 1000.0, result);
+            System.out.printf("Replayed in %.3f ms%n", nanos / 1e6);
+            BoardMetrics metrics = field.estimateGuesses(BoardMetrics.GUESS_BUDGET);
+            if (metrics.get3BV() >= 0) {
+                System.out.printf("3BV %d: %d openings, %d islands, %s guesses", metrics.get3BV(),
+                        metrics.getOpenings(), metrics.getIslands(), metrics.hasGuessEstimate() ?
+                                String.format("about %.1f", metrics.getGuesses()) : "unknown");
+                if (field.getGameWin() && replay.getCount() > 0) {
+                    System.out.printf(", %.2f 3BV/s", metrics.get3BVPerSecond(
+                            replay.getTime(replay.getCount() - 1) / 1000.0));
+                }
+                System.out.println();
+            }
+        } catch (IOException e) {
+            System.err.println("Can't replay " + file + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
 }
@@ -1,14 +1,16 @@
 package minesweeper;
 
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Class containing the code for generating new mine fields.
- * Mine fields are 2d arrays of integers containing the numbers -1 through 9.
+ * Mine fields hold the numbers -1 through 8 in a flat, row-major CellStore.
  * Squares without a mine are 0, squares with a mine are -1, and squares near mines
  * are numbered according to how many mines they are touching.
  */
-public class FieldGenerator {
+public class FieldGenerator implements Board {
     private static final int DEFAULT_X = 9;
     private static final int DEFAULT_Y = 9;
     private static final int DEFAULT_MINES = 10;
@@ -20,19 +22,26 @@ public class FieldGenerator {
     public static final int MASK_LOSE = -2;
     public static final int MASK_INCORRECT = -3;
 
-    private int[][] field;
-    private int[][] mask;
-    private Random rand = new Random();
+    private CellStore cells;
+    private long seed;
+    private ForkJoinPool pool;
     private int minesRemaining;
     private int unrevealed;
     private int mines;
     private boolean firstClick = true;
+    private boolean firstClickOpening = false;
+    private boolean noGuess = false;
+    private int[] revealStack = new int[64];
+    private final ChangeSet changes = new ChangeSet();
+    private final OpeningIndex openings = new OpeningIndex();
+    private BoardMetrics metrics;
+    private GameRecorder recorder;
 
     /**
      * Constructor
      */
     public FieldGenerator() {
-        generateField(DEFAULT_X, DEFAULT_Y, DEFAULT_MINES);
+        this(DEFAULT_X, DEFAULT_Y, DEFAULT_MINES);
     }
 
     /**
@@ -42,9 +51,68 @@ public class FieldGenerator {
      * @param mines the number of mines the field should have
      */
     public FieldGenerator(int x, int y, int mines) {
+        this(x, y, mines, new SplittableRandom().nextLong(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor with the option of a field that can be solved without guessing
+     * @param x the x-size of the field
+     * @param y the y-size of the field
+     * @param mines the number of mines the field should have
+     * @param noGuess true to lay the mines out, on the first click, so that
+     * the rest of the field can be worked out without guessing
+     */
+    public FieldGenerator(int x, int y, int mines, boolean noGuess) {
+        this(x, y, mines);
+        this.noGuess = noGuess;
+    }
+
+    /**
+     * Constructor for a reproducible field, the same seed always gives the
+     * same field
+     * @param x the x-size of the field
+     * @param y the y-size of the field
+     * @param mines the number of mines the field should have
+     * @param seed the master seed for the mine placement
+     */
+    public FieldGenerator(int x, int y, int mines, long seed) {
+        this(x, y, mines, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for a reproducible field, generated in parallel row bands.
+     * The field only depends on the seed, not on the size of the pool.
+     * @param x the x-size of the field
+     * @param y the y-size of the field
+     * @param mines the number of mines the field should have
+     * @param seed the master seed for the mine placement
+     * @param pool the pool to generate large fields on, or null for this thread only
+     */
+    public FieldGenerator(int x, int y, int mines, long seed, ForkJoinPool pool) {
+        this.seed = seed;
+        this.pool = pool;
         generateField(x, y, mines);
     }
 
+    /**
+     * Constructor for a field restored from a save
+     * @param cells the packed field and mask
+     * @param mines the number of mines on the field
+     * @param minesRemaining the number of unmarked mines
+     * @param unrevealed the number of spaces still hidden
+     * @param firstClick whether the field hasn't been clicked yet
+     * @param seed the master seed the field was generated from
+     */
+    FieldGenerator(CellStore cells, int mines, int minesRemaining, int unrevealed, boolean firstClick, long seed) {
+        this.cells = cells;
+        this.mines = mines;
+        this.minesRemaining = minesRemaining;
+        this.unrevealed = unrevealed;
+        this.firstClick = firstClick;
+        this.seed = seed;
+        this.pool = ForkJoinPool.commonPool();
+    }
+
     /**
      * The field creator for this class, creates a field
      * of given size and places the given amount of mines
@@ -52,118 +120,51 @@ public class FieldGenerator {
      * @param x desired x size of the field
      * @param y desired y size of the field
      * @param mines desired number of mines for the field
+     * @throws IllegalArgumentException if the size is not positive or the
+     * mines don't leave at least one free space
      */
     private void generateField(int x, int y, int mines) {
+        checkSize(x, y, mines);
         // Initialize the variables
         minesRemaining = mines;
         unrevealed = x * y;
-        if (mines == unrevealed) {
-            System.exit(-1);
-        }
         this.mines = mines;
-        // First create the field and fill it with 0's (non-mines)
-        field = new int[y][x];
-        for (int i = 0; i < y; i++) {
-            for (int j = 0; j < x; j++) {
-                field[i][j] = FIELD_EMPTY;
-            }
-        }
-        // Also create the reveal field and initialize it with false
-        mask = new int[y][x];
-        for (int i = 0; i < y; i++) {
-            for (int j = 0; j < x; j++) {
-                mask[i][j] = MASK_HIDDEN;
-            }
-        }
+        // Create the field, a new store starts out empty and hidden
+        cells = new CellStore(x, y);
         // Now randomize the mines and set the values around the mines
-        for (int i = 0; i < mines; i++) {
-            // Randomize the location of the mine
-            int xMine = rand.nextInt(x);
-            int yMine = rand.nextInt(y);
-            // If the mine doesn't already exist, create it
-            if (field[yMine][xMine] != -1)
-                placeMine(xMine, yMine);
-            else // If the mine does already exist, make sure to decrement i
-                i--;
-        }
+        MineLayout.generate(cells, mines, seed, pool);
     }
 
     /**
-     * Places a mine at the given coordinates
-     * @param x the desired x coordinate of the mine
-     * @param y the desired y coordinate of the mine
+     * Starts the field over with a new layout, reusing its storage.
+     * Settings like first click openings are kept.
+     * @param seed the master seed for the new mine placement
      */
-    private void placeMine(int x, int y) {
-        // Create the mine
-        field[y][x] = FIELD_MINE;
+    public void reset(long seed) {
+        this.seed = seed;
+        minesRemaining = mines;
+        unrevealed = cells.size();
+        firstClick = true;
+        changes.clear();
+        cells.clear();
+        layoutChanged();
+        MineLayout.generate(cells, mines, seed, pool);
+    }
 
-        // Modify the numbers around the mine HOORAY IF STATEMENTS
-        // Top left
-        if (x == 0 && y == 0) {
-            if (field[y][x+1] != -1) field[y][x+1] = field[y][x+1] + 1; // Right
-            if (field[y+1][x+1] != -1) field[y+1][x+1] = field[y+1][x+1] + 1; // Below right
-            if (field[y+1][x] != -1) field[y+1][x] = field[y+1][x] + 1; // Below middle
-        }
-        // Top right
-        else if (x == field[0].length -1 && y == 0) {
-            if (field[y][x-1] != -1) field[y][x-1] = field[y][x-1] + 1; // Left
-            if (field[y+1][x-1] != -1) field[y+1][x-1] = field[y+1][x-1] + 1; // Below left
-            if (field[y+1][x] != -1) field[y+1][x] = field[y+1][x] + 1; // Below middle
-        }
-        // Bottom left
-        else if (x == 0 && y == field.length - 1) {
-            if (field[y][x+1] != -1) field[y][x+1] = field[y][x+1] + 1; // Right
-            if (field[y-1][x+1] != -1) field[y-1][x+1] = field[y-1][x+1] + 1; // Above right
-            if (field[y-1][x] != -1) field[y-1][x] = field[y-1][x] + 1; // Above middle
-        }
-        // Bottom right
-        else if (x == field[0].length - 1 && y == field.length - 1) {
-            if (field[y][x-1] != -1) field[y][x-1] = field[y][x-1] + 1; // Left
-            if (field[y-1][x] != -1) field[y-1][x] = field[y-1][x] + 1; // Above middle
-            if (field[y-1][x-1] != -1) field[y-1][x-1] = field[y-1][x-1] + 1; // Above left
-        }
-        // Far left column
-        else if (x == 0) {
-            if (field[y-1][x+1] != -1) field[y-1][x+1] = field[y-1][x+1] + 1; // Above right
-            if (field[y-1][x] != -1) field[y-1][x] = field[y-1][x] + 1; // Above middle
-            if (field[y][x+1] != -1) field[y][x+1] = field[y][x+1] + 1; // Right
-            if (field[y+1][x] != -1) field[y+1][x] = field[y+1][x] + 1; // Below middle
-            if (field[y+1][x+1] != -1) field[y+1][x+1] = field[y+1][x+1] + 1; // Below right
-        }
-        // Far right column
-        else if (x == field[0].length - 1) {
-            if (field[y+1][x] != -1) field[y+1][x] = field[y+1][x] + 1; // Below middle
-            if (field[y+1][x-1] != -1) field[y+1][x-1] = field[y+1][x-1] + 1; // Below left
-            if (field[y][x-1] != -1) field[y][x-1] = field[y][x-1] + 1; // Left
-            if (field[y-1][x] != -1) field[y-1][x] = field[y-1][x] + 1; // Above middle
-            if (field[y-1][x-1] != -1) field[y-1][x-1] = field[y-1][x-1] + 1; // Above left
-        }
-        // Top row
-        else if (y == 0) {
-            if (field[y+1][x+1] != -1) field[y+1][x+1] = field[y+1][x+1] + 1; // Below right
-            if (field[y+1][x] != -1) field[y+1][x] = field[y+1][x] + 1; // Below middle
-            if (field[y+1][x-1] != -1) field[y+1][x-1] = field[y+1][x-1] + 1; // Below left
-            if (field[y][x+1] != -1) field[y][x+1] = field[y][x+1] + 1; // Right
-            if (field[y][x-1] != -1) field[y][x-1] = field[y][x-1] + 1; // Left
-        }
-        // Bottom row
-        else if (y == field.length - 1) {
-            if (field[y][x+1] != -1) field[y][x+1] = field[y][x+1] + 1; // Right
-            if (field[y][x-1] != -1) field[y][x-1] = field[y][x-1] + 1; // Left
-            if (field[y-1][x+1] != -1) field[y-1][x+1] = field[y-1][x+1] + 1; // Above right
-            if (field[y-1][x] != -1) field[y-1][x] = field[y-1][x] + 1; // Above middle
-            if (field[y-1][x-1] != -1) field[y-1][x-1] = field[y-1][x-1] + 1; // Above left
+    /**
+     * Checks that a field of the given size can be generated
+     * @param x desired x size of the field
+     * @param y desired y size of the field
+     * @param mines desired number of mines for the field
+     * @throws IllegalArgumentException if the field can't be generated
+     */
+    private static void checkSize(int x, int y, int mines) {
+        if (x < 1 || y < 1) {
+            throw new IllegalArgumentException("Field size must be positive, got " + x + "x" + y);
         }
-        // Everything else
-        else {
-            if (field[y+1][x+1] != -1) field[y+1][x+1] = field[y+1][x+1] + 1; // Below right
-            if (field[y+1][x] != -1) field[y+1][x] = field[y+1][x] + 1; // Below middle
-            if (field[y+1][x-1] != -1) field[y+1][x-1] = field[y+1][x-1] + 1; // Below left
-            if (field[y][x+1] != -1) field[y][x+1] = field[y][x+1] + 1; // Right
-            if (field[y][x-1] != -1) field[y][x-1] = field[y][x-1] + 1; // Left
-            if (field[y-1][x+1] != -1) field[y-1][x+1] = field[y-1][x+1] + 1; // Above right
-            if (field[y-1][x] != -1) field[y-1][x] = field[y-1][x] + 1; // Above middle
-            if (field[y-1][x-1] != -1) field[y-1][x-1] = field[y-1][x-1] + 1; // Above left
+        if (mines < 0 || mines >= (long) x * y) {
+            throw new IllegalArgumentException("Mines must be between 0 and " + ((long) x * y - 1) +
+                    " for a " + x + "x" + y + " field, got " + mines);
         }
     }
 
@@ -173,117 +174,165 @@ public class FieldGenerator {
      * @param y the y-coordinate to be revealed
      * @return whether or not the game has been lost
      */
+    @Override
     public boolean revealSpace(int x, int y) {
-        if (x > mask[0].length || y > mask.length) {
+        changes.clear();
+        if (!inBounds(x, y)) {
             return false;
         }
-        else if (mask[y][x] == MASK_MARKED) {
+        int i = cells.index(x, y);
+        if (cells.getMask(i) == MASK_MARKED) {
             return false;
         }
-        else if (field[y][x] == FIELD_MINE) {
-            if (firstClick) {
-                generateField(field[0].length, field.length, mines);
-                revealSpace(x, y);
-            } else {
-                mask[y][x] = MASK_LOSE;
-                return true;
+        if (firstClick) {
+            if (noGuess) {
+                findNoGuessLayout(x, y);
+            }
+            if (MineLayout.protectFirstClick(cells, mines, x, y, firstClickOpening || noGuess, seed)) {
+                layoutChanged();
+            }
+            firstClick = false;
+            if (recorder != null) {
+                recorder.setLayout(seed, firstClickOpening || noGuess);
             }
         }
-        else if (mask[y][x] == MASK_REVEALED) {
+        if (recorder != null && cells.getMask(i) == MASK_HIDDEN) {
+            recorder.record(GameRecorder.REVEAL, i);
+        }
+        if (cells.getField(i) == FIELD_MINE) {
+            setMask(i, MASK_LOSE);
+            return true;
+        }
+        else if (cells.getMask(i) == MASK_REVEALED) {
             return false;
-        } else {
-            firstClick = false;
+        } else if (!revealOpening(i)) {
             revealHelper(x, y);
-            return false;
         }
         return false;
     }
 
     /**
-     * Recursive function for revealing all spaces when
-     * user reveals an empty space
+     * Swaps the layout for the first one in this field's sequence of
+     * candidates that can be solved without guessing from the first click.
+     * The layout stays as it is if none is found within the time limit.
+     * @param x the x coordinate of the first click
+     * @param y the y coordinate of the first click
+     */
+    private void findNoGuessLayout(int x, int y) {
+        long found = NoGuessSearch.find(cells.getWidth(), cells.getHeight(), mines, x, y, seed, pool,
+                NoGuessSearch.TIME_LIMIT);
+        if (found != seed) {
+            reset(found);
+        }
+    }
+
+    /**
+     * Drops what was worked out from the old layout
+     */
+    private void layoutChanged() {
+        openings.invalidate();
+        metrics = null;
+    }
+
+    /**
+     * Reveals the whole opening of a hidden empty space from the opening
+     * index, a walk over its precomputed list instead of a flood fill.
+     * A reveal doesn't build the index itself: building reads the whole
+     * field, which costs about as much as flooding all of it, and a game
+     * reveals each space only once. Once 3BV or the openings were asked
+     * for, the reveals that follow use the index.
+     * @param i the packed index of the space
+     * @return true if the opening was revealed, false if there's no index,
+     * the space isn't empty or the opening was split by flags or earlier
+     * reveals, and the flood fill has to do it
+     */
+    private boolean revealOpening(int i) {
+        if (!openings.isValid()) {
+            return false;
+        }
+        int opening = openings.getOpening(i);
+        if (opening < 0 || !openings.canOpen(opening)) {
+            return false;
+        }
+        openings.setOpened(opening);
+        for (int k = openings.start(opening); k < openings.end(opening); k++) {
+            int cell = openings.member(k);
+            if (cells.getMask(cell) == MASK_HIDDEN) {
+                setMask(cell, MASK_REVEALED);
+                unrevealed--;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the opening index of the current layout, building it the first
+     * time it's needed after the layout changed
+     * @return the index, or null if the field is too big to index
+     */
+    private OpeningIndex getOpenings() {
+        if (cells.size() > OpeningIndex.MAX_CELLS) {
+            return null;
+        }
+        if (!openings.isValid()) {
+            openings.build(cells);
+        }
+        return openings;
+    }
+
+    /**
+     * Function for revealing all spaces when the user reveals
+     * an empty space. Uses an explicit work stack of packed
+     * y * width + x indices instead of recursion so large openings
+     * can't overflow the thread stack. A cell is revealed as soon as
+     * it is pushed, so every cell is pushed at most once.
      * @param x the x coordinate to be revealed
      * @param y the y coordinate to be revealed
      */
     private void revealHelper(int x, int y) {
-        if (mask[y][x] == MASK_REVEALED) return;
-        if (mask[y][x] == MASK_MARKED) return;
-        else if (field[y][x] == 0) {
-            mask[y][x] = MASK_REVEALED;
-            unrevealed--;
-            // Top left
-            if (x == 0 && y == 0) {
-                revealHelper(x+1,y); // Right
-                revealHelper(x+1,y+1); // Below right
-                revealHelper(x,y+1); // Below
-            }
-            // Top right
-            else if (x == field[0].length - 1 && y == 0) {
-                revealHelper(x-1,y); // Left
-                revealHelper(x-1,y+1); // Below left
-                revealHelper(x,y+1); // Below
-            }
-            // Bottom left
-            else if (x == 0 && y == field.length - 1) {
-                revealHelper(x+1,y); // Right
-                revealHelper(x+1,y-1); // Above right
-                revealHelper(x,y-1); // Above middle
-            }
-            // Bottom right
-            else if (x == field[0].length - 1 && y == field.length - 1) {
-                revealHelper(x-1,y); // Left
-                revealHelper(x,y-1); // Above middle
-                revealHelper(x-1,y-1); // Above left
-            }
-            // Far left column
-            else if (x == 0) {
-                revealHelper(x+1,y-1); // Above right
-                revealHelper(x,y-1); // Above middle
-                revealHelper(x+1,y); // Right
-                revealHelper(x,y+1); // Below middle
-                revealHelper(x+1,y+1); // Below right
-            }
-            // Far right column
-            else if (x == field[0].length - 1) {
-                revealHelper(x,y+1); // Below middle
-                revealHelper(x-1,y+1); // Below left
-                revealHelper(x-1,y); // Left
-                revealHelper(x,y-1); // Above middle
-                revealHelper(x-1,y-1); // Above left
-            }
-            // Top row
-            else if (y == 0) {
-                revealHelper(x+1,y+1); // Below right
-                revealHelper(x,y+1); // Below middle
-                revealHelper(x-1,y+1); // Below left
-                revealHelper(x+1,y); // Right
-                revealHelper(x-1,y); // Left
-            }
-            // Bottom row
-            else if (y == field.length - 1) {
-                revealHelper(x+1,y); // Right
-                revealHelper(x-1,y); // Left
-                revealHelper(x+1,y-1); // Above right
-                revealHelper(x,y-1); // Above middle
-                revealHelper(x-1,y-1); // Above left
-            }
-            // Everything else
-            else {
-                revealHelper(x+1,y+1); // Below right
-                revealHelper(x,y+1); // Below middle
-                revealHelper(x-1,y+1); // Below left
-                revealHelper(x+1,y); // Right
-                revealHelper(x-1,y); // Left
-                revealHelper(x+1,y-1); // Above right
-                revealHelper(x,y-1); // Above middle
-                revealHelper(x-1,y-1); // Above left
+        int width = cells.getWidth();
+        int height = cells.getHeight();
+        int start = cells.index(x, y);
+        if (!revealCell(start)) return;
+        int top = 0;
+        revealStack[top++] = start;
+        while (top > 0) {
+            int cell = revealStack[--top];
+            int cx = cell % width;
+            int cy = cell / width;
+            int minX = Math.max(cx - 1, 0);
+            int maxX = Math.min(cx + 1, width - 1);
+            int minY = Math.max(cy - 1, 0);
+            int maxY = Math.min(cy + 1, height - 1);
+            for (int ny = minY; ny <= maxY; ny++) {
+                for (int nx = minX; nx <= maxX; nx++) {
+                    int next = cells.index(nx, ny);
+                    if (revealCell(next)) {
+                        if (top == revealStack.length) {
+                            revealStack = Arrays.copyOf(revealStack, top * 2);
+                        }
+                        revealStack[top++] = next;
+                    }
+                }
             }
         }
-        else if (field[y][x] == FIELD_MINE) return;
-        else {
-            mask[y][x] = MASK_REVEALED;
-            unrevealed--;
+    }
+
+    /**
+     * Reveals a single hidden, non-mine space for the flood fill
+     * @param i the packed index of the space to be revealed
+     * @return true if the space was revealed and is empty, meaning
+     * its neighbours need to be revealed as well
+     */
+    private boolean revealCell(int i) {
+        int value = cells.getField(i);
+        if (cells.getMask(i) != MASK_HIDDEN || value == FIELD_MINE) return false;
+        setMask(i, MASK_REVEALED);
+        unrevealed--;
+        if (value == FIELD_EMPTY && openings.isValid()) {
+            openings.setOpened(openings.getOpening(i));
         }
+        return value == FIELD_EMPTY;
     }
 
     /**
@@ -291,18 +340,27 @@ public class FieldGenerator {
      * @param x the x coordinate
      * @param y the y coordinate
      */
+    @Override
     public void markMine(int x, int y) {
-        if (x > mask[0].length || y > mask.length) {
+        changes.clear();
+        if (!inBounds(x, y)) {
             return;
         }
-        else if (mask[y][x] == MASK_REVEALED) {
+        int i = cells.index(x, y);
+        if (cells.getMask(i) == MASK_REVEALED) {
             return;
         }
-        else if (mask[y][x] == MASK_MARKED) {
+        else if (cells.getMask(i) == MASK_MARKED) {
             return;
         }
         minesRemaining--;
-        mask[y][x] = MASK_MARKED;
+        setMask(i, MASK_MARKED);
+        if (openings.isValid()) {
+            openings.flagChanged(i, 1);
+        }
+        if (recorder != null) {
+            recorder.record(GameRecorder.MARK, i);
+        }
     }
 
     /**
@@ -310,37 +368,129 @@ public class FieldGenerator {
      * @param x the x coordinate
      * @param y the y coordinate
      */
+    @Override
     public void unMark (int x, int y) {
-        if (x > mask[0].length || y > mask.length) {
+        changes.clear();
+        if (!inBounds(x, y)) {
             return;
         }
-        if (mask[y][x] != MASK_MARKED) {
+        int i = cells.index(x, y);
+        if (cells.getMask(i) != MASK_MARKED) {
             return;
         }
         minesRemaining++;
-        mask[y][x] = MASK_HIDDEN;
+        setMask(i, MASK_HIDDEN);
+        if (openings.isValid()) {
+            openings.flagChanged(i, -1);
+        }
+        if (recorder != null) {
+            recorder.record(GameRecorder.UNMARK, i);
+        }
+    }
+
+    /**
+     * Sets the mask state of a space and records the change
+     * @param i the packed index of the space
+     * @param state one of the MASK_ constants
+     */
+    private void setMask(int i, int state) {
+        cells.setMask(i, state);
+        changes.add(i % cells.getWidth(), i / cells.getWidth());
+    }
+
+    @Override
+    public ChangeSet getChanges() {
+        return changes;
+    }
+
+    /**
+     * Checks whether the given coordinates are on the field
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return true if the coordinates are on the field
+     */
+    @Override
+    public boolean inBounds(int x, int y) {
+        return x >= 0 && y >= 0 && x < cells.getWidth() && y < cells.getHeight();
+    }
+
+    /**
+     * Gets the width of the field
+     * @return the x-size of the field
+     */
+    @Override
+    public int getWidth() {
+        return cells.getWidth();
+    }
+
+    /**
+     * Gets the height of the field
+     * @return the y-size of the field
+     */
+    @Override
+    public int getHeight() {
+        return cells.getHeight();
     }
 
     /**
-     * Gets the field
-     * @return this field
+     * Gets the field value at x, y
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return FIELD_MINE, or the number of mines touching the space
+     */
+    @Override
+    public int getFieldValue(int x, int y) {
+        return cells.getField(cells.index(x, y));
+    }
+
+    /**
+     * Gets the mask state at x, y
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return one of the MASK_ constants
+     */
+    @Override
+    public int getMaskValue(int x, int y) {
+        return cells.getMask(cells.index(x, y));
+    }
+
+    /**
+     * Gets a copy of the field as a 2d array indexed [y][x]
+     * @return a copy of this field
+     * @deprecated allocates the whole board, use getFieldValue instead
      */
+    @Deprecated
     public int[][] getField() {
-        return field;
+        int[][] copy = new int[cells.getHeight()][cells.getWidth()];
+        for (int y = 0; y < copy.length; y++) {
+            for (int x = 0; x < copy[y].length; x++) {
+                copy[y][x] = cells.getField(cells.index(x, y));
+            }
+        }
+        return copy;
     }
 
     /**
-     * Gets the reveal array
-     * @return the reveal array
+     * Gets a copy of the reveal array indexed [y][x]
+     * @return a copy of the reveal array
+     * @deprecated allocates the whole board, use getMaskValue instead
      */
+    @Deprecated
     public int[][] getMask() {
-        return mask;
+        int[][] copy = new int[cells.getHeight()][cells.getWidth()];
+        for (int y = 0; y < copy.length; y++) {
+            for (int x = 0; x < copy[y].length; x++) {
+                copy[y][x] = cells.getMask(cells.index(x, y));
+            }
+        }
+        return copy;
     }
 
     /**
      * Gets the amount of mines remaining
      * @return the amount of unmarked mines
      */
+    @Override
     public int getMinesRemaining() {
         return minesRemaining;
     }
@@ -349,6 +499,7 @@ public class FieldGenerator {
      * Returns a boolean that's true if the game has been won
      * @return whether or not the game has been won
      */
+    @Override
     public boolean getGameWin() {
         return (unrevealed <= mines);
     }
@@ -357,14 +508,16 @@ public class FieldGenerator {
      * Reveals all the mines in the game and sets the
      * incorrect flags
      */
+    @Override
     public void loseGame() {
-        for(int i = 0; i < field.length; i++) {
-            for (int j = 0; j < field[0].length; j++) {
-                if (field[i][j] == FIELD_MINE && mask[i][j] != MASK_LOSE && mask[i][j] != MASK_MARKED) {
-                    mask[i][j] = MASK_REVEALED;
-                } else if (mask[i][j] == MASK_MARKED && field[i][j] != FIELD_MINE) {
-                    mask[i][j] = MASK_INCORRECT;
-                }
+        changes.clear();
+        for (int i = 0; i < cells.size(); i++) {
+            int value = cells.getField(i);
+            int state = cells.getMask(i);
+            if (value == FIELD_MINE && state != MASK_LOSE && state != MASK_MARKED) {
+                setMask(i, MASK_REVEALED);
+            } else if (state == MASK_MARKED && value != FIELD_MINE) {
+                setMask(i, MASK_INCORRECT);
             }
         }
     }
@@ -373,14 +526,142 @@ public class FieldGenerator {
      * Function for getting whether or not it's the first click
      * @return the boolean true if it's the first click
      */
+    @Override
     public boolean getFirstClick() {
         return firstClick;
     }
 
+    /**
+     * Sets whether the first click should always open up an empty space.
+     * When on, the 3x3 around the first click is kept free of mines
+     * whenever the field has room for it.
+     * @param opening true to keep the 3x3 around the first click clear
+     */
+    @Override
+    public void setFirstClickOpening(boolean opening) {
+        firstClickOpening = opening;
+    }
+
+    /**
+     * Function for getting whether the first click always opens an empty space
+     * @return true if the 3x3 around the first click is kept clear
+     */
+    public boolean getFirstClickOpening() {
+        return firstClickOpening;
+    }
+
+    /**
+     * Sets whether the field is laid out on the first click so it can be
+     * solved without guessing. Has no effect after the first click.
+     * @param noGuess true for a field without guessing
+     */
+    public void setNoGuess(boolean noGuess) {
+        this.noGuess = noGuess;
+    }
+
+    /**
+     * Function for getting whether the field is laid out to need no guessing
+     * @return true if the first click lays out a field without guessing
+     */
+    public boolean getNoGuess() {
+        return noGuess;
+    }
+
+    /**
+     * Gets the packed field and mask, for saving
+     * @return the store backing this field
+     */
+    CellStore getCells() {
+        return cells;
+    }
+
+    /**
+     * Gets the number of spaces still hidden, for saving
+     * @return the number of unrevealed spaces
+     */
+    int getUnrevealed() {
+        return unrevealed;
+    }
+
+    /**
+     * Gets the master seed the field was generated from. After the first
+     * click of a game without guessing, this is the seed of the layout
+     * that was picked.
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Starts recording the moves made on this field. Only a field that
+     * hasn't been clicked yet can be recorded.
+     * @return the recorder the moves are written to
+     * @throws IllegalStateException if the field has already been clicked
+     */
+    public GameRecorder startRecording() {
+        if (!firstClick) {
+            throw new IllegalStateException("Only a field that hasn't been clicked yet can be recorded");
+        }
+        recorder = new GameRecorder(cells.getWidth(), cells.getHeight(), mines, seed, firstClickOpening || noGuess);
+        return recorder;
+    }
+
+    /**
+     * Gets the 3BV of the current layout, the fewest clicks that reveal
+     * every safe space: one for each opening and one for each number no
+     * opening reveals. Before the first click this is the layout as
+     * generated, which the first click may still change.
+     * @return the 3BV, or -1 if the field is too big to index
+     */
+    public int get3BV() {
+        return getMetrics().get3BV();
+    }
+
+    /**
+     * Gets the number of openings of the current layout, the regions of
+     * connected empty spaces a single click reveals
+     * @return the number of openings, or -1 if the field is too big to index
+     */
+    public int getOpeningCount() {
+        return getMetrics().getOpenings();
+    }
+
+    /**
+     * Gets the metrics of the current layout, without a guess estimate
+     * unless one was already made. They're worked out once and kept until
+     * the layout changes, which before the first click it still may.
+     * @return the metrics
+     */
+    public BoardMetrics getMetrics() {
+        if (metrics == null) {
+            OpeningIndex index = getOpenings();
+            metrics = index == null ? new BoardMetrics(-1, -1, -1) :
+                    new BoardMetrics(index.get3BV(), index.getCount(), index.get3BV() - index.getCount());
+        }
+        return metrics;
+    }
+
+    /**
+     * Gets the metrics of the current layout with an estimate of how many
+     * guesses it needs, playing it out on this field's pool if it wasn't
+     * estimated yet. Fields too big to index aren't estimated.
+     * @param budget the time allowed for the estimate, in nanoseconds
+     * @return the metrics, without an estimate if none finished in time
+     */
+    public BoardMetrics estimateGuesses(long budget) {
+        BoardMetrics current = getMetrics();
+        if (!current.hasGuessEstimate() && cells.size() <= OpeningIndex.MAX_CELLS) {
+            metrics = GuessEstimate.estimate(current, cells, mines, seed, pool, budget);
+        }
+        return metrics;
+    }
+
     /**
      * Function for getting the total number of mines
      * @return the number of mines this field was created with
      */
+    @Override
     public int getMines() {
         return mines;
     }
@@ -8,8 +8,13 @@ import javax.swing.plaf.basic.BasicScrollBarUI;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
 
 /**
  * Class for displaying the MineCraft game in a GUI.
@@ -23,23 +28,36 @@ public class GUIDisplay {
     public static final Color BASE2 = new Color(0xeee8d5);
     public static final Color BASE3 = new Color(0xfdf6e3);
     public static final Color SOLAR_RED = new Color(0xdc322f);
+    // Boards bigger than this in pixels scroll virtually, Java2D can't take much larger components
+    private static final int VIRTUAL_LIMIT = Short.MAX_VALUE;
 
 
     private JFrame frame;
     private MineCanvas canvas;
     private JLabel mineLabel;
     private JLabel timerLabel;
-    private FieldGenerator field;
+    private Board field;
     private Timer timer;
     private int time;
     private MineSweeper game;
     private JMenuBar menu;
     private JPanel masterPanel;
+    private JComponent canvasPane;
+    private JScrollPane scrollPane;
+    private JPanel virtualPane;
+    private JScrollBar horizontal;
+    private JScrollBar vertical;
+    private GridBagConstraints canvasConstraints;
+    // A request is pending until its field reaches newGame, then timed until painted
+    private long pendingRequest = -1;
+    private long newGameRequest = -1;
+    private NewGameListener newGameListener;
+    private Timer replayTimer;
 
     /**
      * Default constructor. Creates a new GUIDisplay
      */
-    public GUIDisplay(FieldGenerator aField, MineSweeper aGame) throws InterruptedException {
+    public GUIDisplay(Board aField, MineSweeper aGame) throws InterruptedException {
         // Set the field
         field = aField;
         game = aGame;
@@ -108,39 +126,11 @@ public class GUIDisplay {
         UIManager.put("ScrollBar.track", BASE01);
         UIManager.put("ScrollPane.background", BASE02);
 
-        // Add the canvas to a panel and the panel to a scroll pane
-        JPanel canvasPanel = new JPanel(new GridLayout(1, 1, 0 , 0));
-        canvasPanel.add(canvas);
-        JScrollPane canvasPane = new JScrollPane(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
-                JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
-        canvasPane.setViewportView(canvasPanel);
-        canvasPane.getHorizontalScrollBar().setUI(new BasicScrollBarUI());
-        canvasPane.getVerticalScrollBar().setUI(new BasicScrollBarUI());
-        canvasPane.setBorder(GUIDisplay.getSolarizedBorder());
-        Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
-        if (field.getField()[0].length * 32 > screenSize.getWidth() - 200 &&
-                field.getField().length * 32 > screenSize.getHeight() - 200) {
-            canvasPane.getViewport().setPreferredSize(
-                    new Dimension((int)screenSize.getWidth() - 200,  (int)screenSize.getHeight() - 200)
-            );
-        } else if (field.getField()[0].length * 32 > screenSize.getWidth() - 200) {
-            canvasPane.getViewport().setPreferredSize(
-                    new Dimension((int)screenSize.getWidth() - 200, field.getField().length * 32)
-            );
-        } else if (field.getField().length * 32 > screenSize.getHeight() - 200) {
-            canvasPane.getViewport().setPreferredSize(
-                    new Dimension(field.getField()[0].length * 32, (int)screenSize.getHeight() - 200)
-            );
-        } else {
-            canvasPane.getViewport().setPreferredSize(
-                    new Dimension(field.getField()[0].length * 32, field.getField().length * 32)
-            );
-        }
-        GridBagConstraints c = new GridBagConstraints();
-        c.gridx = 0;
-        c.gridy = 2;
-        c.weightx = 1;
-        c.gridwidth = GridBagConstraints.REMAINDER;
+        canvasConstraints = new GridBagConstraints();
+        canvasConstraints.gridx = 0;
+        canvasConstraints.gridy = 2;
+        canvasConstraints.weightx = 1;
+        canvasConstraints.gridwidth = GridBagConstraints.REMAINDER;
 
         // Add the timer Label
         timer = new Timer(1000, new ActionListener() {
@@ -179,7 +169,103 @@ public class GUIDisplay {
         masterPanel.add(menu, b);
         masterPanel.add(timerLabel, t);
         masterPanel.add(mineLabel, m);
-        masterPanel.add(canvasPane, c);
+        fitCanvas();
+    }
+
+    /**
+     * Sizes the canvas for the current board. Boards up to VIRTUAL_LIMIT
+     * pixels sit in a scroll pane, bigger ones in the virtual pane. Both
+     * panes are only built the first time they are needed and are kept for
+     * later games.
+     */
+    private void fitCanvas() {
+        // Size the view to the board, up to the screen size
+        Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+        Dimension view = new Dimension(
+                (int) Math.min((long) field.getWidth() * 32, (long) screenSize.getWidth() - 200),
+                (int) Math.min((long) field.getHeight() * 32, (long) screenSize.getHeight() - 200));
+        JComponent pane;
+        if ((long) field.getWidth() * 32 > VIRTUAL_LIMIT || (long) field.getHeight() * 32 > VIRTUAL_LIMIT) {
+            if (virtualPane == null) {
+                virtualPane = virtualCanvasPane();
+            }
+            if (canvas.getParent() != virtualPane) {
+                virtualPane.add(canvas, BorderLayout.CENTER);
+            }
+            canvas.setPreferredSize(view);
+            int columns = view.width / 32;
+            int rows = view.height / 32;
+            horizontal.setValues(0, columns, 0, field.getWidth());
+            vertical.setValues(0, rows, 0, field.getHeight());
+            horizontal.setBlockIncrement(Math.max(columns - 1, 1));
+            vertical.setBlockIncrement(Math.max(rows - 1, 1));
+            pane = virtualPane;
+        } else {
+            if (scrollPane == null) {
+                // Add the canvas to a panel and the panel to a scroll pane
+                JPanel canvasPanel = new JPanel(new GridLayout(1, 1, 0 , 0));
+                scrollPane = new JScrollPane(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
+                        JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+                scrollPane.setViewportView(canvasPanel);
+                scrollPane.getHorizontalScrollBar().setUI(new BasicScrollBarUI());
+                scrollPane.getVerticalScrollBar().setUI(new BasicScrollBarUI());
+                scrollPane.setBorder(GUIDisplay.getSolarizedBorder());
+            }
+            JPanel canvasPanel = (JPanel) scrollPane.getViewport().getView();
+            if (canvas.getParent() != canvasPanel) {
+                canvasPanel.add(canvas);
+            }
+            // Back to the size of the whole board
+            canvas.setPreferredSize(null);
+            canvasPanel.revalidate();
+            scrollPane.getViewport().setPreferredSize(view);
+            scrollPane.getViewport().setViewPosition(new Point(0, 0));
+            pane = scrollPane;
+        }
+        if (canvasPane != pane) {
+            if (canvasPane != null) {
+                masterPanel.remove(canvasPane);
+            }
+            masterPanel.add(pane, canvasConstraints);
+            canvasPane = pane;
+        }
+        canvas.revalidate();
+        canvas.repaint();
+    }
+
+    /**
+     * Creates the virtual scrolling pane for boards too big to be a single
+     * component. The canvas stays the size of the view and the scroll bars,
+     * counting in tiles, move the tile it starts drawing from.
+     * @return the pane for the canvas and its scroll bars
+     */
+    private JPanel virtualCanvasPane() {
+        horizontal = new JScrollBar(JScrollBar.HORIZONTAL);
+        vertical = new JScrollBar(JScrollBar.VERTICAL);
+        horizontal.setUI(new BasicScrollBarUI());
+        vertical.setUI(new BasicScrollBarUI());
+        AdjustmentListener scroll = new AdjustmentListener() {
+            @Override
+            public void adjustmentValueChanged(AdjustmentEvent e) {
+                canvas.setOrigin(horizontal.getValue(), vertical.getValue());
+            }
+        };
+        horizontal.addAdjustmentListener(scroll);
+        vertical.addAdjustmentListener(scroll);
+
+        JPanel pane = new JPanel(new BorderLayout());
+        // On the pane rather than the canvas, so the canvas still passes wheel events up a scroll pane
+        pane.addMouseWheelListener(new MouseWheelListener() {
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                JScrollBar bar = e.isShiftDown() ? horizontal : vertical;
+                bar.setValue(bar.getValue() + e.getWheelRotation() * 3);
+            }
+        });
+        pane.add(vertical, BorderLayout.EAST);
+        pane.add(horizontal, BorderLayout.SOUTH);
+        pane.setBorder(GUIDisplay.getSolarizedBorder());
+        return pane;
     }
 
     /**
@@ -251,6 +337,8 @@ public class GUIDisplay {
         // UI Manager stuff for the menu
         UIManager.put("MenuItem.selectionBackground", BASE0);
         UIManager.put("MenuItem.selectionForeground", BASE02);
+        UIManager.put("CheckBoxMenuItem.selectionBackground", BASE0);
+        UIManager.put("CheckBoxMenuItem.selectionForeground", BASE02);
         UIManager.put("MenuBar.selectionBackground", BASE0);
         UIManager.put("MenuBar.selectionForeground", BASE02);
         UIManager.put("Menu.selectionBackground", BASE0);
@@ -286,6 +374,52 @@ public class GUIDisplay {
                 menuNewGame();
             }
         });
+        JMenuItem save = new JMenuItem("Save Game", KeyEvent.VK_S);
+        save.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, ActionEvent.ALT_MASK));
+        save.setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
+        save.setForeground(BASE1);
+        save.setBackground(BASE02);
+        save.setBorderPainted(false);
+        save.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                menuSave();
+            }
+        });
+        JMenuItem load = new JMenuItem("Load Game", KeyEvent.VK_L);
+        load.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_L, ActionEvent.ALT_MASK));
+        load.setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
+        load.setForeground(BASE1);
+        load.setBackground(BASE02);
+        load.setBorderPainted(false);
+        load.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                menuLoad();
+            }
+        });
+        JMenuItem saveReplay = new JMenuItem("Save Replay", KeyEvent.VK_R);
+        saveReplay.setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
+        saveReplay.setForeground(BASE1);
+        saveReplay.setBackground(BASE02);
+        saveReplay.setBorderPainted(false);
+        saveReplay.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                menuSaveReplay();
+            }
+        });
+        JMenuItem watchReplay = new JMenuItem("Watch Replay", KeyEvent.VK_W);
+        watchReplay.setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
+        watchReplay.setForeground(BASE1);
+        watchReplay.setBackground(BASE02);
+        watchReplay.setBorderPainted(false);
+        watchReplay.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                menuWatchReplay();
+            }
+        });
         JMenuItem exit = new JMenuItem("Exit", KeyEvent.VK_E);
         exit.setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
         exit.setForeground(BASE1);
@@ -332,6 +466,17 @@ public class GUIDisplay {
                 menuAdvanced();
             }
         });
+        JMenuItem endless = new JMenuItem("Endless", KeyEvent.VK_D);
+        endless.setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
+        endless.setBorderPainted(false);
+        endless.setForeground(BASE1);
+        endless.setBackground(BASE02);
+        endless.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                menuEndless();
+            }
+        });
         JMenuItem custom = new JMenuItem("Custom", KeyEvent.VK_C);
         custom.setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
         custom.setBorderPainted(false);
@@ -344,14 +489,50 @@ public class GUIDisplay {
             }
         });
 
+        // Create the option for always starting on an empty space
+        final JCheckBoxMenuItem opening = new JCheckBoxMenuItem("Safe Opening", game.getFirstClickOpening());
+        opening.setMnemonic(KeyEvent.VK_O);
+        opening.setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
+        opening.setBorderPainted(false);
+        opening.setForeground(BASE1);
+        opening.setBackground(BASE02);
+        opening.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                game.setFirstClickOpening(opening.isSelected());
+            }
+        });
+
+        // Create the option for fields that never need a guess
+        final JCheckBoxMenuItem noGuess = new JCheckBoxMenuItem("No Guessing", game.getNoGuess());
+        noGuess.setMnemonic(KeyEvent.VK_G);
+        noGuess.setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
+        noGuess.setBorderPainted(false);
+        noGuess.setForeground(BASE1);
+        noGuess.setBackground(BASE02);
+        noGuess.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                game.setNoGuess(noGuess.isSelected());
+            }
+        });
+
         // Add components to the menu
         gameMenu.add(newGame);
+        gameMenu.add(save);
+        gameMenu.add(load);
+        gameMenu.add(saveReplay);
+        gameMenu.add(watchReplay);
         gameMenu.add(mineSeparator());
         gameMenu.add(beginner);
         gameMenu.add(intermediate);
         gameMenu.add(advanced);
+        gameMenu.add(endless);
         gameMenu.add(custom);
         gameMenu.add(mineSeparator());
+        gameMenu.add(opening);
+        gameMenu.add(noGuess);
+        gameMenu.add(mineSeparator());
         gameMenu.add(exit);
 
         mineBar.add(gameMenu);
@@ -381,6 +562,54 @@ public class GUIDisplay {
         game.newGame();
     }
 
+    private void menuSave() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
+            try {
+                game.saveGame(chooser.getSelectedFile());
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(frame, "ERROR: " + e.getMessage(), "SAVE FAILED",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    private void menuLoad() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+            try {
+                game.loadGame(chooser.getSelectedFile());
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(frame, "ERROR: " + e.getMessage(), "LOAD FAILED",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    private void menuSaveReplay() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
+            try {
+                game.saveReplay(chooser.getSelectedFile());
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(frame, "ERROR: " + e.getMessage(), "SAVE FAILED",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    private void menuWatchReplay() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+            try {
+                game.watchReplay(chooser.getSelectedFile());
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(frame, "ERROR: " + e.getMessage(), "LOAD FAILED",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
     private void menuBeginner() {
         game.newGame(9, 9, 10);
     }
@@ -393,40 +622,149 @@ public class GUIDisplay {
         game.newGame(40, 20, 99);
     }
 
+    private void menuEndless() {
+        game.newEndlessGame();
+    }
+
     private void menuCustom() {
         getCustom();
     }
 
-    public void newGame(FieldGenerator aField) {
-        // Stop the timer
+    /**
+     * Switches to a new board, keeping every component and only resizing
+     * the window when the board needs a different size
+     * @param aField the new field
+     */
+    public void newGame(Board aField) {
+        newGameRequest = pendingRequest;
+        pendingRequest = -1;
+        // Stop and reset the timer, and any replay playing into the old game
         stopTimer();
-        // Set the new field
-        field = aField;
-        // Create the new timer and set it up
-        timer = new Timer(1000, new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                timerUpdate();
-            }
-        });
+        stopReplay();
         time = 0;
         timerLabel.setText(String.format("%03d", time));
+        // Set the new field
+        field = aField;
 
         // Updating the mine counter
         updateMines();
 
-        // Create the new canvas
+        // Swap the board under the canvas
         canvas.newGame(aField);
+        fitCanvas();
 
-        frame.getContentPane().removeAll();
+        frame.setTitle("Minesweeper");
+        masterPanel.revalidate();
+        if (!frame.getPreferredSize().equals(frame.getSize())) {
+            frame.pack();
+        }
+    }
 
-        setupMasterPanel();
+    /**
+     * Listener for how long new games take to show up, for measuring
+     * restart latency
+     */
+    public interface NewGameListener {
+        /**
+         * Called when the first frame of a new game has been painted
+         * @param nanos the time from the new game request to the painted frame
+         */
+        void newGamePainted(long nanos);
+    }
 
-        frame.setTitle("Minesweeper");
-        frame.getContentPane().add(masterPanel);
-        frame.revalidate();
-        frame.repaint();
-        frame.pack();
+    /**
+     * Sets the listener told when a new game has been painted
+     * @param listener the listener, or null for none
+     */
+    public void setNewGameListener(NewGameListener listener) {
+        newGameListener = listener;
+    }
+
+    /**
+     * Marks the start of a new game request, call before the new field is
+     * generated. The request is only timed once its field is passed to
+     * newGame, so a request that fails is never reported.
+     */
+    public void newGameRequested() {
+        pendingRequest = System.nanoTime();
+    }
+
+    /**
+     * Called by the canvas after every paint, reports the first paint
+     * after a new game request
+     */
+    public void framePainted() {
+        if (newGameRequest >= 0) {
+            long nanos = System.nanoTime() - newGameRequest;
+            newGameRequest = -1;
+            if (newGameListener != null) {
+                newGameListener.newGamePainted(nanos);
+            }
+        }
+    }
+
+    /**
+     * Switches to a game restored from a save, picking the timer up
+     * where it was left. A game saved after it ended stays over.
+     * @param aField the restored field
+     * @param savedTime the game time when it was saved
+     * @param lost true if the saved game was lost
+     */
+    public void resumeGame(Board aField, int savedTime, boolean lost) {
+        newGame(aField);
+        time = savedTime;
+        timerLabel.setText(String.format("%03d", time));
+        if (lost) {
+            canvas.endGame(true);
+            frame.setTitle("Minesweeper - GAME OVER");
+        } else if (aField.getGameWin()) {
+            canvas.endGame(false);
+            frame.setTitle("Minesweeper - GAME WIN");
+        } else if (!aField.getFirstClick()) {
+            startTimer();
+        }
+    }
+
+    /**
+     * Plays a replay's moves onto the current game at the times they were
+     * made. The game has to be on the replay's field, see GameReplay.createField.
+     * @param replay the replay to play
+     */
+    public void playReplay(final GameReplay replay) {
+        stopReplay();
+        if (replay.getCount() == 0) {
+            return;
+        }
+        final long start = System.nanoTime();
+        replayTimer = new Timer(0, new ActionListener() {
+            private int next;
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                canvas.playMove(replay.getAction(next), replay.getX(next), replay.getY(next));
+                next++;
+                if (next < replay.getCount()) {
+                    // Timed from the start, so the delays of the event queue don't add up
+                    long wait = replay.getTime(next) - (System.nanoTime() - start) / 1000000L;
+                    replayTimer.setInitialDelay((int) Math.max(Math.min(wait, Integer.MAX_VALUE), 0));
+                    replayTimer.restart();
+                } else {
+                    stopReplay();
+                }
+            }
+        });
+        replayTimer.setRepeats(false);
+        replayTimer.start();
+    }
+
+    /**
+     * Stops the replay playing, if there is one
+     */
+    private void stopReplay() {
+        if (replayTimer != null) {
+            replayTimer.stop();
+            replayTimer = null;
+        }
     }
 
     private void getCustom() {
@@ -472,13 +810,13 @@ public class GUIDisplay {
         inputPanel.add(mines, d);
 
         GridBagConstraints b = new GridBagConstraints();
-        final JTextField widthField = new JTextField(String.valueOf(field.getField()[0].length), 4);
+        final JTextField widthField = new JTextField(String.valueOf(field.getWidth()), 4);
         b.gridx = 1;
         b.gridy = 1;
         b.insets = new Insets(2, 0, 0, 0);
         inputPanel.add(widthField, b);
 
-        final JTextField heightField = new JTextField(String.valueOf(field.getField().length), 4);
+        final JTextField heightField = new JTextField(String.valueOf(field.getHeight()), 4);
         GridBagConstraints f = new GridBagConstraints();
         f.gridx = 1;
         f.gridy = 2;
@@ -497,11 +835,17 @@ public class GUIDisplay {
         ok.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                int width = Integer.parseInt(widthField.getText());
-                int height = Integer.parseInt(heightField.getText());
-                int mines = Integer.parseInt(mineField.getText());
-                game.newGame(width, height, mines);
-                input.dispose();
+                try {
+                    int width = Integer.parseInt(widthField.getText());
+                    int height = Integer.parseInt(heightField.getText());
+                    int mines = Integer.parseInt(mineField.getText());
+                    game.newGame(width, height, mines);
+                    input.dispose();
+                } catch (IllegalArgumentException ex) {
+                    // Covers both unparseable numbers and impossible fields
+                    JOptionPane.showMessageDialog(input, "ERROR: " + ex.getMessage(), "INVALID FIELD",
+                            JOptionPane.ERROR_MESSAGE);
+                }
             }
         });
         frame.getRootPane().setDefaultButton(ok);
@@ -549,6 +893,15 @@ public class GUIDisplay {
         JPanel winPanel = new JPanel(new GridBagLayout());
         JLabel winLabel = new JLabel("You win! Congratulations!");
         JLabel scoreLabel = new JLabel("Your time is: " + getTime());
+        // The metrics are kept by the field, so this doesn't work them out again
+        JLabel rateLabel = new JLabel();
+        if (field instanceof FieldGenerator) {
+            BoardMetrics metrics = ((FieldGenerator) field).getMetrics();
+            if (metrics.get3BV() >= 0) {
+                rateLabel.setText(String.format("3BV: %d (%.2f/s)", metrics.get3BV(),
+                        metrics.get3BVPerSecond(Math.max(getTime(), 1))));
+            }
+        }
         JButton okButton = new JButton("Ok");
         okButton.addActionListener(new ActionListener() {
             @Override
@@ -571,16 +924,23 @@ public class GUIDisplay {
         b.anchor = GridBagConstraints.CENTER;
         winPanel.add(scoreLabel, b);
 
+        GridBagConstraints r = new GridBagConstraints();
+        r.gridx = 0;
+        r.gridy = 2;
+        r.insets = new Insets(0, 0, 2, 0);
+        r.anchor = GridBagConstraints.CENTER;
+        winPanel.add(rateLabel, r);
+
         GridBagConstraints c = new GridBagConstraints();
         c.gridx = 0;
-        c.gridy = 2;
+        c.gridy = 3;
         c.insets = new Insets(15, 0, 0, 0);
         c.anchor = GridBagConstraints.CENTER;
         winPanel.add(okButton, c);
         win.getContentPane().add(winPanel);
 
         win.setUndecorated(true);
-        win.setSize(new Dimension(200, 175));
+        win.setSize(new Dimension(200, 195));
         win.setVisible(true);
         win.setLocationRelativeTo(frame);
         win.setLocation((int)frame.getLocationOnScreen().getX() + frame.getWidth()/2 - win.getWidth()/2,
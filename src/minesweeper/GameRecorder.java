@@ -0,0 +1,189 @@
+package minesweeper;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Records the moves of a game so it can be replayed. The field is fully
+ * determined by its size, seed and first click setting, so a log is only
+ * those and the moves. Each move is stored as two varints: the change in
+ * space index from the last move, zigzag encoded and shifted left to make
+ * room for the action, then the milliseconds since the last move. A move
+ * is usually four bytes, an Expert game a few hundred.
+ * <pre>
+ * int    magic "MSRL"
+ * byte   version
+ * byte   options, 1 for a first click opening
+ * varint width, height, mines
+ * long   seed of the layout
+ * varint (zigzag(index - last index) &lt;&lt; 2 | action), varint milliseconds since the last move
+ * ...    moves until the end of the log
+ * </pre>
+ */
+public final class GameRecorder {
+    /** A space was revealed */
+    public static final int REVEAL = 0;
+    /** A space was flagged */
+    public static final int MARK = 1;
+    /** A flag was removed */
+    public static final int UNMARK = 2;
+
+    static final int MAGIC = 0x4D53524C;
+    static final int VERSION = 1;
+    static final int OPTION_OPENING = 1;
+
+    private final int width;
+    private final int height;
+    private final int mines;
+    private long seed;
+    private boolean opening;
+    private byte[] moves = new byte[256];
+    private int length;
+    private int count;
+    private int lastIndex;
+    private long lastMillis;
+    private long start;
+
+    /**
+     * Creates a recorder for a field that hasn't been clicked yet
+     * @param width the x-size of the field
+     * @param height the y-size of the field
+     * @param mines the number of mines
+     * @param seed the seed of the field
+     * @param opening whether the first click opens up an empty space
+     */
+    GameRecorder(int width, int height, int mines, long seed, boolean opening) {
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.seed = seed;
+        this.opening = opening;
+    }
+
+    /**
+     * Sets the layout the first click settled on, which may differ from
+     * the seed the field was created with when no guessing is on
+     * @param seed the seed of the layout
+     * @param opening whether the first click opened up an empty space
+     */
+    void setLayout(long seed, boolean opening) {
+        this.seed = seed;
+        this.opening = opening;
+    }
+
+    /**
+     * Records a move, timed from the first one
+     * @param action REVEAL, MARK or UNMARK
+     * @param index the packed index of the space
+     */
+    void record(int action, int index) {
+        long now = System.nanoTime();
+        if (count == 0) {
+            start = now;
+        }
+        long millis = (now - start) / 1000000L;
+        if (moves.length - length < 20) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        length = putVarint(moves, length, zigzag(index - lastIndex) << 2 | action);
+        length = putVarint(moves, length, millis - lastMillis);
+        lastIndex = index;
+        lastMillis = millis;
+        count++;
+    }
+
+    /**
+     * Gets the number of moves recorded
+     * @return the number of moves
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the size the log takes when written
+     * @return the number of bytes
+     */
+    public int getSize() {
+        return 4 + 1 + 1 + varintSize(width) + varintSize(height) + varintSize(mines) + 8 + length;
+    }
+
+    /**
+     * Writes the log, replacing the file if it exists
+     * @param file the file to write to
+     * @throws IOException if the file can't be written
+     */
+    public void save(File file) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the log to a stream
+     * @param out the stream to write to, left open
+     * @throws IOException if the stream can't be written
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(opening ? OPTION_OPENING : 0);
+        byte[] header = new byte[15];
+        int size = putVarint(header, 0, width);
+        size = putVarint(header, size, height);
+        size = putVarint(header, size, mines);
+        data.write(header, 0, size);
+        data.writeLong(seed);
+        data.write(moves, 0, length);
+        data.flush();
+    }
+
+    /**
+     * Zigzag encodes a signed value, so small negative numbers stay small
+     * @param value the value
+     * @return the encoded value
+     */
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Writes an unsigned varint, seven bits a byte with the high bit set
+     * on every byte but the last
+     * @param buffer the buffer to write to
+     * @param position where to write
+     * @param value the value
+     * @return the position after the varint
+     */
+    private static int putVarint(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Gets the number of bytes a value takes as a varint
+     * @param value the value
+     * @return the size in bytes
+     */
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,226 @@
+package minesweeper;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A game log written by GameRecorder, read back for replaying. The moves
+ * can be applied to a fresh field one after another at full speed, or at
+ * the times they were made by the GUI.
+ */
+public final class GameReplay {
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final long seed;
+    private final boolean opening;
+    private byte[] actions = new byte[64];
+    private int[] indices = new int[64];
+    private long[] times = new long[64];
+    private int count;
+
+    private GameReplay(int width, int height, int mines, long seed, boolean opening) {
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.seed = seed;
+        this.opening = opening;
+    }
+
+    /**
+     * Reads a game log from a file
+     * @param file the file to read
+     * @return the replay
+     * @throws IOException if the file can't be read or isn't a valid log
+     */
+    public static GameReplay load(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a game log from a stream, up to its end
+     * @param in the stream to read
+     * @return the replay
+     * @throws IOException if the stream can't be read or isn't a valid log
+     */
+    public static GameReplay read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != GameRecorder.MAGIC) {
+            throw new IOException("Not a MineSweeper replay");
+        }
+        int version = data.readUnsignedByte();
+        if (version != GameRecorder.VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        boolean opening = (data.readUnsignedByte() & GameRecorder.OPTION_OPENING) != 0;
+        int width = (int) readVarint(data);
+        int height = (int) readVarint(data);
+        int mines = (int) readVarint(data);
+        if (width < 1 || height < 1 || (long) width * height > Integer.MAX_VALUE || mines < 0 ||
+                mines >= (long) width * height) {
+            throw new IOException("Corrupt replay, bad field " + width + "x" + height + " with " + mines + " mines");
+        }
+        GameReplay replay = new GameReplay(width, height, mines, data.readLong(), opening);
+        int index = 0;
+        long millis = 0;
+        int first;
+        while ((first = data.read()) >= 0) {
+            long move = readVarint(data, first);
+            long delta = move >>> 2;
+            index += (int) ((delta >>> 1) ^ -(delta & 1));
+            millis += readVarint(data);
+            int action = (int) (move & 3);
+            if (index < 0 || index >= width * height || action > GameRecorder.UNMARK) {
+                throw new IOException("Corrupt replay, bad move " + replay.count);
+            }
+            replay.add(action, index, millis);
+        }
+        return replay;
+    }
+
+    /**
+     * Adds a move read from the log
+     * @param action REVEAL, MARK or UNMARK
+     * @param index the packed index of the space
+     * @param millis the time of the move from the first one
+     */
+    private void add(int action, int index, long millis) {
+        if (count == actions.length) {
+            actions = Arrays.copyOf(actions, count * 2);
+            indices = Arrays.copyOf(indices, count * 2);
+            times = Arrays.copyOf(times, count * 2);
+        }
+        actions[count] = (byte) action;
+        indices[count] = index;
+        times[count] = millis;
+        count++;
+    }
+
+    /**
+     * Reads an unsigned varint
+     * @param in the stream
+     * @return the value
+     * @throws IOException if the stream ends in the middle of it
+     */
+    private static long readVarint(DataInputStream in) throws IOException {
+        return readVarint(in, in.readUnsignedByte());
+    }
+
+    /**
+     * Reads the rest of an unsigned varint
+     * @param in the stream
+     * @param first the first byte, already read
+     * @return the value
+     * @throws IOException if the stream ends in the middle of it or the value is too long
+     */
+    private static long readVarint(DataInputStream in, int first) throws IOException {
+        long value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            if (shift > 63) {
+                throw new IOException("Corrupt replay, varint too long");
+            }
+            b = in.read();
+            if (b < 0) {
+                throw new EOFException("Replay ends in the middle of a move");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    /**
+     * Creates the field the game was played on, before its first click
+     * @return a new field
+     */
+    public FieldGenerator createField() {
+        FieldGenerator field = new FieldGenerator(width, height, mines, seed, ForkJoinPool.commonPool());
+        field.setFirstClickOpening(opening);
+        return field;
+    }
+
+    /**
+     * Plays one move onto a field
+     * @param board the field the game is being replayed on
+     * @param i the move
+     * @return true if the move lost the game
+     */
+    public boolean apply(Board board, int i) {
+        int x = getX(i);
+        int y = getY(i);
+        if (actions[i] == GameRecorder.REVEAL) {
+            return board.revealSpace(x, y);
+        } else if (actions[i] == GameRecorder.MARK) {
+            board.markMine(x, y);
+        } else {
+            board.unMark(x, y);
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of moves in the log
+     * @return the number of moves
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the action of a move
+     * @param i the move
+     * @return REVEAL, MARK or UNMARK
+     */
+    public int getAction(int i) {
+        return actions[i];
+    }
+
+    /**
+     * Gets the x coordinate of a move
+     * @param i the move
+     * @return the x coordinate
+     */
+    public int getX(int i) {
+        return indices[i] % width;
+    }
+
+    /**
+     * Gets the y coordinate of a move
+     * @param i the move
+     * @return the y coordinate
+     */
+    public int getY(int i) {
+        return indices[i] / width;
+    }
+
+    /**
+     * Gets the time of a move
+     * @param i the move
+     * @return the milliseconds since the first move
+     */
+    public long getTime(int i) {
+        return times[i];
+    }
+
+    /**
+     * Gets the seed of the layout the game was played on
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -0,0 +1,509 @@
+package minesweeper;
+
+import minesweeper.util.LongMap;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Headless server hosting many independent games on localhost. Clients
+ * talk to it one line at a time, every command getting a one line reply:
+ * <pre>
+ * new width height mines [seed]   ok session
+ * reveal session x y              ok playing|won|lost minesRemaining
+ * mark session x y                ok playing|won|lost minesRemaining
+ * unmark session x y              ok playing|won|lost minesRemaining
+ * state session                   ok playing|won|lost minesRemaining width height rows
+ * close session                   ok
+ * quit                            closes the connection
+ * </pre>
+ * The rows of a state are separated by slashes, a space drawn as on the
+ * console. Anything wrong gets "error" and a message. Sessions don't belong
+ * to a connection, any connection can play any session. Each connection
+ * runs on its own thread, a virtual one on Java 21 and later, and only
+ * ReentrantLocks are used so a waiting virtual thread never pins its
+ * carrier. Sessions idle for longer than the time to live are dropped. The
+ * server holds at most a number of sessions and a number of spaces over
+ * all their boards, once either is reached the least recently used
+ * sessions make room for a new one.
+ */
+public final class GameServer {
+    /** Port the server listens on unless told otherwise */
+    public static final int DEFAULT_PORT = 7878;
+    /** Most sessions kept unless told otherwise */
+    public static final int DEFAULT_MAX_SESSIONS = 20000;
+    /** Most spaces over all boards unless told otherwise, about 128 MB of cells */
+    public static final long DEFAULT_MAX_SPACES = 1L << 27;
+    /** Seconds a session can sit idle unless told otherwise */
+    public static final long DEFAULT_TTL = 600;
+    /** Largest board a session can have, in spaces */
+    static final int MAX_SPACES = 1 << 20;
+
+    private final ServerSocket socket;
+    private final ExecutorService connections;
+    // Kept in order of use, the server evicts from the old end itself so
+    // it can give back the spaces. Guarded by lock, as is spaces.
+    private final LongMap<Session> sessions;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int maxSessions;
+    private final long maxSpaces;
+    private final long ttl;
+    private final AtomicLong nextId = new AtomicLong(1);
+    // Spaces of the boards held, and of those being generated
+    private long spaces;
+
+    /**
+     * Opens a server on the loopback address, call serve to start taking connections
+     * @param port the port to listen on, 0 for any free one
+     * @param maxSessions the most sessions kept at once
+     * @param maxSpaces the most spaces kept over all boards
+     * @param ttlSeconds how long a session can sit idle before it's dropped
+     * @throws IOException if the port can't be opened
+     */
+    public GameServer(int port, int maxSessions, long maxSpaces, long ttlSeconds) throws IOException {
+        if (maxSessions < 1 || maxSpaces < 1 || ttlSeconds < 1) {
+            throw new IllegalArgumentException("Sessions, spaces and time to live must be positive");
+        }
+        socket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        connections = newThreadPerTaskExecutor("minesweeper-connection");
+        sessions = new LongMap<Session>(maxSessions);
+        this.maxSessions = maxSessions;
+        this.maxSpaces = maxSpaces;
+        ttl = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * Creates an executor running every task on a new thread: a virtual
+     * one when the runtime has them, a pooled daemon platform thread
+     * otherwise. The game is built for Java 8, so virtual threads are
+     * looked up by reflection.
+     * @param name the name of the platform threads
+     * @return the executor
+     */
+    static ExecutorService newThreadPerTaskExecutor(final String name) {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, name);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Checks whether connections get virtual threads
+     * @return true on Java 21 and later
+     */
+    static boolean hasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the port the server listens on
+     * @return the port
+     */
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Gets the number of sessions held, expired ones included until they're dropped
+     * @return the number of sessions
+     */
+    public int getSessionCount() {
+        lock.lock();
+        try {
+            return sessions.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes connections until the server is closed, handing each to its own thread
+     */
+    public void serve() {
+        while (!socket.isClosed()) {
+            final Socket client;
+            try {
+                client = socket.accept();
+            } catch (SocketException e) {
+                // Closed
+                return;
+            } catch (IOException e) {
+                System.err.println("Can't accept a connection: " + e.getMessage());
+                continue;
+            }
+            connections.execute(new Runnable() {
+                @Override
+                public void run() {
+                    handle(client);
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops taking connections and drops the open ones
+     */
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        connections.shutdownNow();
+    }
+
+    /**
+     * Answers the commands of one connection until it quits or goes away.
+     * Its sessions stay for other connections to pick up.
+     * @param client the connection
+     */
+    private void handle(Socket client) {
+        try {
+            client.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(),
+                    StandardCharsets.US_ASCII));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String reply = execute(line);
+                if (reply == null) {
+                    break;
+                }
+                out.write(reply);
+                out.write('\n');
+                // Commands sent together are answered with one flush
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // The client went away
+        } finally {
+            try {
+                client.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+    }
+
+    /**
+     * Runs one command
+     * @param line the command
+     * @return the reply, or null if the connection should close
+     */
+    String execute(String line) {
+        String[] words = line.trim().split("\\s+");
+        String command = words[0];
+        try {
+            if (command.equals("quit")) {
+                return null;
+            }
+            if (command.equals("new")) {
+                return newSession(words);
+            }
+            if (words.length < 2) {
+                return "error expected a session";
+            }
+            long id = Long.parseLong(words[1]);
+            Session session = find(id);
+            if (session == null) {
+                return "error unknown session " + id;
+            }
+            if (command.equals("close")) {
+                lock.lock();
+                try {
+                    drop(sessions.remove(id));
+                } finally {
+                    lock.unlock();
+                }
+                return "ok";
+            }
+            if (command.equals("state")) {
+                return session.describe();
+            }
+            int action = command.equals("reveal") ? GameRecorder.REVEAL : command.equals("mark") ?
+                    GameRecorder.MARK : command.equals("unmark") ? GameRecorder.UNMARK : -1;
+            if (action < 0) {
+                return "error unknown command " + command;
+            }
+            if (words.length != 4) {
+                return "error expected " + command + " session x y";
+            }
+            return session.play(action, Integer.parseInt(words[2]), Integer.parseInt(words[3]));
+        } catch (NumberFormatException e) {
+            return "error not a number in " + line.trim();
+        }
+    }
+
+    /**
+     * Starts a session
+     * @param words new, the width, height and mines, and maybe a seed
+     * @return the reply
+     */
+    private String newSession(String[] words) {
+        if (words.length != 4 && words.length != 5) {
+            return "error expected new width height mines [seed]";
+        }
+        int width = Integer.parseInt(words[1]);
+        int height = Integer.parseInt(words[2]);
+        int mines = Integer.parseInt(words[3]);
+        long size = (long) width * height;
+        if (size > MAX_SPACES || size > maxSpaces) {
+            return "error boards are limited to " + Math.min(MAX_SPACES, maxSpaces) + " spaces";
+        }
+        // Make room first, the board is generated without holding the lock
+        lock.lock();
+        try {
+            expire(System.nanoTime());
+            while (spaces + size > maxSpaces || sessions.size() >= maxSessions) {
+                Session oldest = sessions.removeOldest();
+                if (oldest == null) {
+                    // The rest are boards still being generated
+                    return "error server full";
+                }
+                drop(oldest);
+            }
+            spaces += size;
+        } finally {
+            lock.unlock();
+        }
+        FieldGenerator field = null;
+        try {
+            field = words.length == 5 ? new FieldGenerator(width, height, mines, Long.parseLong(words[4]), null) :
+                    new FieldGenerator(width, height, mines, nextId.get() * 0x9E3779B97F4A7C15L ^ System.nanoTime(),
+                            null);
+        } catch (IllegalArgumentException e) {
+            return "error " + e.getMessage();
+        } finally {
+            if (field == null) {
+                lock.lock();
+                try {
+                    spaces -= size;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        long id = nextId.getAndIncrement();
+        Session session = new Session(field, System.nanoTime());
+        lock.lock();
+        try {
+            // Another connection may have taken the last place meanwhile
+            if (sessions.size() >= maxSessions) {
+                drop(sessions.removeOldest());
+            }
+            sessions.put(id, session);
+        } finally {
+            lock.unlock();
+        }
+        return "ok " + id;
+    }
+
+    /**
+     * Looks a session up, dropping it if it has been idle too long
+     * @param id the session
+     * @return the session, or null if there isn't one
+     */
+    private Session find(long id) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Session session = sessions.get(id);
+            if (session != null && now - session.lastUsed > ttl) {
+                drop(sessions.remove(id));
+                return null;
+            }
+            return session;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the sessions idle for longer than the time to live. They're
+     * the least recently used, so they're taken from the old end until one
+     * is still live. Called holding the lock.
+     * @param now the current time
+     */
+    private void expire(long now) {
+        Session oldest;
+        while ((oldest = sessions.peekOldest()) != null && now - oldest.lastUsed > ttl) {
+            drop(sessions.removeOldest());
+        }
+    }
+
+    /**
+     * Gives back the spaces of a session taken out of the map. Called
+     * holding the lock.
+     * @param session the session, or null for none
+     */
+    private void drop(Session session) {
+        if (session != null) {
+            spaces -= session.size;
+        }
+    }
+
+    /**
+     * One game. Moves on it are made one at a time, whatever connection sends them.
+     */
+    private static final class Session {
+        private final FieldGenerator field;
+        private final long size;
+        private final ReentrantLock lock = new ReentrantLock();
+        private boolean lost;
+        private volatile long lastUsed;
+
+        private Session(FieldGenerator field, long now) {
+            this.field = field;
+            size = (long) field.getWidth() * field.getHeight();
+            lastUsed = now;
+        }
+
+        /**
+         * Makes a move, unless the game is over
+         * @param action GameRecorder.REVEAL, MARK or UNMARK
+         * @param x the x coordinate
+         * @param y the y coordinate
+         * @return the reply
+         */
+        String play(int action, int x, int y) {
+            lastUsed = System.nanoTime();
+            if (!field.inBounds(x, y)) {
+                return "error " + x + "," + y + " is out of bounds";
+            }
+            lock.lock();
+            try {
+                if (!lost && !field.getGameWin()) {
+                    if (action == GameRecorder.REVEAL) {
+                        if (field.revealSpace(x, y)) {
+                            field.loseGame();
+                            lost = true;
+                        }
+                    } else if (action == GameRecorder.MARK) {
+                        field.markMine(x, y);
+                    } else {
+                        field.unMark(x, y);
+                    }
+                }
+                return "ok " + status() + " " + field.getMinesRemaining();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Describes the whole board
+         * @return the reply
+         */
+        String describe() {
+            lastUsed = System.nanoTime();
+            int width = field.getWidth();
+            int height = field.getHeight();
+            StringBuilder reply = new StringBuilder(32 + (width + 1) * height);
+            lock.lock();
+            try {
+                reply.append("ok ").append(status()).append(' ').append(field.getMinesRemaining())
+                        .append(' ').append(width).append(' ').append(height).append(' ');
+                for (int y = 0; y < height; y++) {
+                    if (y > 0) {
+                        reply.append('/');
+                    }
+                    for (int x = 0; x < width; x++) {
+                        reply.append((char) ConsoleRenderer.glyph(field, x, y, false));
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            return reply.toString();
+        }
+
+        private String status() {
+            return lost ? "lost" : field.getGameWin() ? "won" : "playing";
+        }
+    }
+
+    /**
+     * Runs a server until the process is stopped
+     * @param args --port=N --max-sessions=N --max-spaces=N --ttl=SECONDS
+     */
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        int maxSessions = DEFAULT_MAX_SESSIONS;
+        long maxSpaces = DEFAULT_MAX_SPACES;
+        long ttl = DEFAULT_TTL;
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            String name = split < 0 ? arg : arg.substring(0, split);
+            String value = split < 0 ? "" : arg.substring(split + 1);
+            try {
+                if (name.equals("--port")) {
+                    port = Integer.parseInt(value);
+                } else if (name.equals("--max-sessions")) {
+                    maxSessions = Integer.parseInt(value);
+                } else if (name.equals("--max-spaces")) {
+                    maxSpaces = Long.parseLong(value);
+                } else if (name.equals("--ttl")) {
+                    ttl = Long.parseLong(value);
+                } else {
+                    usage("Unknown option " + arg);
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                usage("Not a number: " + arg);
+                return;
+            }
+        }
+        try {
+            GameServer server = new GameServer(port, maxSessions, maxSpaces, ttl);
+            System.out.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" +
+                    server.getPort() + " with " + (hasVirtualThreads() ? "virtual" : "platform") + " threads");
+            server.serve();
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Can't listen on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Options: --port=N --max-sessions=N --max-spaces=N --ttl=SECONDS");
+    }
+}
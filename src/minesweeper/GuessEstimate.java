@@ -0,0 +1,175 @@
+package minesweeper;
+
+import minesweeper.solver.Solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estimates how many guesses a layout needs by playing it out with the
+ * logic solver. Each playthrough starts on a random empty space and reveals
+ * what the solver proves safe. When the solver runs out, that counts as a
+ * guess and a safe space next to the revealed ones is opened for it, so the
+ * count doesn't depend on luck. Playthroughs differ in where they start and
+ * guess, workers on the pool take them in order until all are done or the
+ * time budget runs out, and the estimate is the average of those finished.
+ */
+final class GuessEstimate {
+    /** Most playthroughs averaged for an estimate */
+    static final int TRIALS = 16;
+
+    private final CellStore layout;
+    private final int mines;
+    private final long seed;
+    private final long deadline;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+    private final AtomicLong total = new AtomicLong();
+
+    private GuessEstimate(CellStore layout, int mines, long seed, long deadline) {
+        this.layout = layout;
+        this.mines = mines;
+        this.seed = seed;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Estimates the guesses of a layout
+     * @param metrics the metrics of the layout so far
+     * @param cells the field, only its layout is read
+     * @param mines the number of mines
+     * @param seed the seed of the layout, for picking starts and guesses
+     * @param pool the pool to play on, or null for this thread only
+     * @param budget the time allowed in nanoseconds
+     * @return the metrics with the estimate, or unchanged if no playthrough finished in time
+     */
+    static BoardMetrics estimate(BoardMetrics metrics, CellStore cells, int mines, long seed, ForkJoinPool pool,
+                                 long budget) {
+        CellStore layout = new CellStore(cells.getWidth(), cells.getHeight());
+        layout.copyLayout(cells);
+        final GuessEstimate estimate = new GuessEstimate(layout, mines, seed, System.nanoTime() + budget);
+        if (pool == null || pool.getParallelism() == 1) {
+            estimate.work();
+        } else {
+            List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+            for (int i = 0; i < Math.min(pool.getParallelism(), TRIALS); i++) {
+                workers.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        estimate.work();
+                        return null;
+                    }
+                });
+            }
+            pool.invokeAll(workers);
+        }
+        int trials = estimate.finished.get();
+        return trials == 0 ? metrics : metrics.withGuesses((double) estimate.total.get() / trials, trials);
+    }
+
+    /**
+     * Plays playthroughs until none are left or time runs out. Each worker
+     * plays on its own copy of the layout.
+     */
+    private void work() {
+        CellStore cells = new CellStore(layout.getWidth(), layout.getHeight());
+        Solver solver = new Solver();
+        while (System.nanoTime() < deadline) {
+            int trial = next.getAndIncrement();
+            if (trial >= TRIALS) {
+                return;
+            }
+            cells.copyLayout(layout);
+            FieldGenerator field = new FieldGenerator(cells, mines, mines, cells.size(), false, seed);
+            int guesses = play(field, cells, solver, new SplittableRandom(seed + trial * 0x9E3779B97F4A7C15L));
+            if (guesses >= 0) {
+                total.addAndGet(guesses);
+                finished.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Plays one playthrough to the end
+     * @param field the field to play, fully hidden
+     * @param cells the store backing the field
+     * @param solver the solver to use
+     * @param rand picks the start and the guesses
+     * @return the number of guesses, or -1 if time ran out first
+     */
+    private int play(FieldGenerator field, CellStore cells, Solver solver, SplittableRandom rand) {
+        int guesses = 0;
+        int start = findSpace(cells, rand, true);
+        field.revealSpace(start % cells.getWidth(), start / cells.getWidth());
+        while (!field.getGameWin()) {
+            if (System.nanoTime() >= deadline) {
+                return -1;
+            }
+            solver.solve(field);
+            int safe = solver.getSafeCount();
+            if (safe == 0) {
+                guesses++;
+                int guess = findSpace(cells, rand, false);
+                field.revealSpace(guess % cells.getWidth(), guess / cells.getWidth());
+            }
+            for (int k = 0; k < safe; k++) {
+                field.revealSpace(solver.getSafeX(k), solver.getSafeY(k));
+            }
+        }
+        return guesses;
+    }
+
+    /**
+     * Finds a hidden safe space, scanning from a random one
+     * @param cells the field being played
+     * @param rand the source of randomness
+     * @param start true for an empty space to start on, false for one next
+     * to a revealed space to guess at
+     * @return the packed index of a matching space, or of any hidden safe
+     * space if none match
+     */
+    private static int findSpace(CellStore cells, SplittableRandom rand, boolean start) {
+        int size = cells.size();
+        int first = rand.nextInt(size);
+        int fallback = -1;
+        for (int k = 0; k < size; k++) {
+            int i = first + k < size ? first + k : first + k - size;
+            int value = cells.getField(i);
+            if (value == FieldGenerator.FIELD_MINE || cells.getMask(i) != FieldGenerator.MASK_HIDDEN) {
+                continue;
+            }
+            if (start ? value == FieldGenerator.FIELD_EMPTY : touchesRevealed(cells, i)) {
+                return i;
+            }
+            if (fallback < 0) {
+                fallback = i;
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Checks whether a space is next to a revealed one
+     * @param cells the field being played
+     * @param i the packed index of the space
+     * @return true if any of its neighbours is revealed
+     */
+    private static boolean touchesRevealed(CellStore cells, int i) {
+        int width = cells.getWidth();
+        int x = i % width;
+        int y = i / width;
+        for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, cells.getHeight() - 1); ny++) {
+            for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, width - 1); nx++) {
+                if (cells.getMask(cells.index(nx, ny)) == FieldGenerator.MASK_REVEALED) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,297 @@
+package minesweeper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+
+/**
+ * Plays many sessions on a GameServer at once and reports how long moves
+ * take. The sessions are shared out between the connections, every
+ * connection creates its sessions, waits for the others to do the same,
+ * then makes random reveals on each of its sessions in turn. A game that
+ * ends is replaced by a new one, so the number of live sessions holds.
+ * Only the reveals are timed, from sending the line to reading the reply.
+ * A connection that fails before its sessions are created stops the
+ * others from waiting for it, so the load ends with its error.
+ */
+public final class LoadGenerator {
+    private static final int MAX_CONNECTIONS = 65535;
+
+    private final int port;
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final Phaser started;
+    // When the last connection finished creating its sessions
+    private volatile long movesBegin;
+
+    private LoadGenerator(int port, int width, int height, int mines, int connections) {
+        this.port = port;
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        started = new Phaser(connections) {
+            @Override
+            protected boolean onAdvance(int phase, int parties) {
+                movesBegin = System.nanoTime();
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Plays the sessions of one connection
+     * @param sessions the number of sessions to keep
+     * @param moves the reveals to make on each session
+     * @param rand picks the seeds and the moves
+     * @return the time each reveal took in nanoseconds, or null if another
+     * connection failed before the moves began
+     * @throws IOException if the connection fails or the server answers with an error
+     */
+    private long[] play(int sessions, int moves, SplittableRandom rand) throws IOException {
+        Socket socket = null;
+        BufferedReader in;
+        Writer out;
+        long[] ids = new long[sessions];
+        boolean ready = false;
+        try {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+            for (int k = 0; k < sessions; k++) {
+                ids[k] = create(in, out, rand);
+            }
+            ready = true;
+        } finally {
+            if (!ready) {
+                // Release the connections waiting for this one, they'd wait forever
+                started.forceTermination();
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+        try {
+            if (started.arriveAndAwaitAdvance() < 0) {
+                return null;
+            }
+            long[] latencies = new long[sessions * moves];
+            int n = 0;
+            for (int move = 0; move < moves; move++) {
+                for (int k = 0; k < sessions; k++) {
+                    long begin = System.nanoTime();
+                    String reply = send(in, out, "reveal " + ids[k] + " " + rand.nextInt(width) + " " +
+                            rand.nextInt(height));
+                    latencies[n++] = System.nanoTime() - begin;
+                    if (!reply.startsWith("ok playing")) {
+                        send(in, out, "close " + ids[k]);
+                        ids[k] = create(in, out, rand);
+                    }
+                }
+            }
+            out.write("quit\n");
+            out.flush();
+            return latencies;
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Starts a session
+     * @param in the replies
+     * @param out the commands
+     * @param rand picks the seed of the session
+     * @return the session
+     * @throws IOException if the connection fails or the server answers with an error
+     */
+    private long create(BufferedReader in, Writer out, SplittableRandom rand) throws IOException {
+        String reply = send(in, out, "new " + width + " " + height + " " + mines + " " + rand.nextLong());
+        return Long.parseLong(reply.substring(3));
+    }
+
+    /**
+     * Sends a command and waits for the reply
+     * @param in the replies
+     * @param out the commands
+     * @param command the command
+     * @return the reply
+     * @throws IOException if the connection fails or the reply is an error
+     */
+    private static String send(BufferedReader in, Writer out, String command) throws IOException {
+        out.write(command);
+        out.write('\n');
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null || !reply.startsWith("ok")) {
+            throw new IOException(command + ": " + (reply == null ? "connection closed" : reply));
+        }
+        return reply;
+    }
+
+    /**
+     * Runs the load and prints the move latencies
+     * @param args --port=N to use a running server instead of starting one,
+     * --sessions=N --connections=N --moves=N --board=WxH/MINES --seed=N
+     */
+    public static void main(String[] args) {
+        int port = -1;
+        int sessions = 10000;
+        int connections = 500;
+        int moves = 20;
+        int[] board = {30, 16, 99};
+        long seed = System.nanoTime();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            String name = split < 0 ? arg : arg.substring(0, split);
+            String value = split < 0 ? "" : arg.substring(split + 1);
+            try {
+                if (name.equals("--port")) {
+                    port = Integer.parseInt(value);
+                } else if (name.equals("--sessions")) {
+                    sessions = Integer.parseInt(value);
+                } else if (name.equals("--connections")) {
+                    connections = Integer.parseInt(value);
+                } else if (name.equals("--moves")) {
+                    moves = Integer.parseInt(value);
+                } else if (name.equals("--board")) {
+                    String[] parts = value.split("[x/]");
+                    if (parts.length != 3) {
+                        usage("Expected --board=WxH/MINES, got " + arg);
+                        return;
+                    }
+                    for (int i = 0; i < 3; i++) {
+                        board[i] = Integer.parseInt(parts[i]);
+                    }
+                } else if (name.equals("--seed")) {
+                    seed = Long.parseLong(value);
+                } else {
+                    usage("Unknown option " + arg);
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                usage("Not a number: " + arg);
+                return;
+            }
+        }
+        if (sessions < 1 || connections < 1 || moves < 1) {
+            usage("Sessions, connections and moves must be positive");
+            return;
+        }
+        // The connections meet on a Phaser, which takes at most 65535 of them,
+        // more than the loopback interface has ports for anyway
+        if (connections > MAX_CONNECTIONS) {
+            usage("Connections must be at most " + MAX_CONNECTIONS + ", got " + connections);
+            return;
+        }
+        // Every move's latency is kept in one array to sort
+        if ((long) sessions * moves > Integer.MAX_VALUE - 8) {
+            usage("Sessions times moves must be at most " + (Integer.MAX_VALUE - 8) + ", got " +
+                    (long) sessions * moves);
+            return;
+        }
+        connections = Math.min(connections, sessions);
+        GameServer server = null;
+        try {
+            if (port < 0) {
+                server = new GameServer(0, Math.max(sessions, GameServer.DEFAULT_MAX_SESSIONS),
+                        Math.max((long) sessions * board[0] * board[1], GameServer.DEFAULT_MAX_SPACES),
+                        GameServer.DEFAULT_TTL);
+                port = server.getPort();
+                final GameServer serving = server;
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serving.serve();
+                    }
+                }, "minesweeper-server");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            run(new LoadGenerator(port, board[0], board[1], board[2], connections), sessions,
+                    connections, moves, new SplittableRandom(seed));
+        } catch (IOException e) {
+            System.err.println("Can't start the server: " + e.getMessage());
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static void run(final LoadGenerator load, int sessions, int connections, final int moves,
+                            SplittableRandom rand) {
+        ExecutorService clients = GameServer.newThreadPerTaskExecutor("minesweeper-client");
+        List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+        for (int c = 0; c < connections; c++) {
+            // Share the sessions out as evenly as they go
+            final int share = sessions / connections + (c < sessions % connections ? 1 : 0);
+            final SplittableRandom own = rand.split();
+            results.add(clients.submit(new Callable<long[]>() {
+                @Override
+                public long[] call() throws IOException {
+                    return load.play(share, moves, own);
+                }
+            }));
+        }
+        long[] all = new long[sessions * moves];
+        int n = 0;
+        try {
+            for (Future<long[]> result : results) {
+                long[] latencies = result.get();
+                if (latencies == null) {
+                    // Stopped by another connection failing, its error is the one to report
+                    continue;
+                }
+                System.arraycopy(latencies, 0, all, n, latencies.length);
+                n += latencies.length;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            System.err.println("Load failed: " + e.getCause());
+            return;
+        } finally {
+            clients.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - load.movesBegin) / 1e9;
+        Arrays.sort(all);
+        System.out.printf("%d sessions on %d connections, %s threads%n", sessions, connections,
+                GameServer.hasVirtualThreads() ? "virtual" : "platform");
+        System.out.printf("%d moves in %.2f s, %.0f moves/s%n", n, seconds, n / seconds);
+        System.out.printf("move latency p50 %.3f ms, p99 %.3f ms, max %.3f ms%n", percentile(all, 0.50) / 1e6,
+                percentile(all, 0.99) / 1e6, all[n - 1] / 1e6);
+    }
+
+    /**
+     * Gets a percentile of sorted values
+     * @param sorted the values in ascending order
+     * @param p the fraction below, between 0 and 1
+     * @return the smallest value at least that fraction of the values are at or below
+     */
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.max((int) Math.ceil(p * sorted.length) - 1, 0)];
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Options: --port=N --sessions=N --connections=N --moves=N --board=WxH/MINES --seed=N");
+    }
+}
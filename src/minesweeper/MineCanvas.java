@@ -1,13 +1,9 @@
 package minesweeper;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
 
 /**
  * The GUI for the Minesweeper application
@@ -15,108 +11,121 @@ import java.io.IOException;
 public class MineCanvas extends JPanel implements MouseListener {
     private boolean gameLose = false;
     private boolean gameWin = false;
-    private FieldGenerator field;
-    private static final int NUMBER_OF_IMAGES = 14;
-    private static final int BOMB = 9;
-    private static final int FLAG = 10;
-    private static final int HIDDEN = 11;
-    private static final int LOSE = 12;
-    private static final int INCORRECT = 13;
-    private String[] imagePaths = new String[NUMBER_OF_IMAGES];
-    private BufferedImage[] images = new BufferedImage[NUMBER_OF_IMAGES];
+    private Board field;
+    private static final int BOMB = TileCache.BOMB;
+    private static final int FLAG = TileCache.FLAG;
+    private static final int HIDDEN = TileCache.HIDDEN;
+    private static final int LOSE = TileCache.LOSE;
+    private static final int INCORRECT = TileCache.INCORRECT;
+    private Image[] images;
     private GUIDisplay gui;
     private int tempX;
     private int tempY;
+    private int originX;
+    private int originY;
 
-    public MineCanvas(FieldGenerator aField, GUIDisplay aGui) {
+    /**
+     * Creates the canvas for a board
+     * @param aField the board to draw
+     * @param aGui the window the canvas is in, or null to only paint offscreen
+     */
+    public MineCanvas(Board aField, GUIDisplay aGui) {
         // Initialize the field and gui
         field = aField;
         gui = aGui;
-        // Initialize the image paths
-        imagePaths[0] = "tileclear.png";
-        imagePaths[1] = "tile1.png";
-        imagePaths[2] = "tile2.png";
-        imagePaths[3] = "tile3.png";
-        imagePaths[4] = "tile4.png";
-        imagePaths[5] = "tile5.png";
-        imagePaths[6] = "tile6.png";
-        imagePaths[7] = "tile7.png";
-        imagePaths[8] = "tile8.png";
-        imagePaths[9] = "tilebomb.png";
-        imagePaths[10] = "tileflag.png";
-        imagePaths[11] = "tilehidden.png";
-        imagePaths[12] = "tilelose.png";
-        imagePaths[13] = "tileincorrect.png";
-
         // Add the mouse listener
         this.addMouseListener(this);
 
         // JPanel Stuff
-        //this.setPreferredSize(new Dimension(field.getField()[0].length * 32, field.getField().length * 32));
-        // Load the images
-        loadImages();
+        //this.setPreferredSize(new Dimension(field.getWidth() * 32, field.getHeight() * 32));
+        // Share the images, they are only read from disk once
+        images = TileCache.getTiles();
     }
 
     @Override
     public Dimension getPreferredSize() {
-        return new Dimension(field.getField()[0].length * 32, field.getField().length * 32);
+        // A virtual canvas is given the size of its view, otherwise it is the whole board
+        if (isPreferredSizeSet()) {
+            return super.getPreferredSize();
+        }
+        return new Dimension(field.getWidth() * 32, field.getHeight() * 32);
+    }
+
+    /**
+     * Sets the tile drawn in the top left corner of the canvas. Used by the
+     * virtual scrolling mode, where the canvas is only the size of the view
+     * and scrolling moves the origin instead of the component.
+     * @param x the x coordinate of the top left tile
+     * @param y the y coordinate of the top left tile
+     */
+    public void setOrigin(int x, int y) {
+        if (x != originX || y != originY) {
+            originX = x;
+            originY = y;
+            this.repaint();
+        }
+    }
+
+    /**
+     * Gets the x coordinate of the tile under a pixel of the canvas
+     * @param pixelX the x pixel
+     * @return the x coordinate on the board
+     */
+    private int tileX(int pixelX) {
+        return originX + pixelX / 32;
+    }
+
+    /**
+     * Gets the y coordinate of the tile under a pixel of the canvas
+     * @param pixelY the y pixel
+     * @return the y coordinate on the board
+     */
+    private int tileY(int pixelY) {
+        return originY + pixelY / 32;
     }
 
     @Override
     public void paint(Graphics g) {
         super.paintComponent(g);
-        gui.updateMines();
-        for(int x = 0; x < field.getField()[0].length; x++) {
-            for (int y = 0; y < field.getField().length; y++) {
-                if (field.getMask()[y][x] == FieldGenerator.MASK_HIDDEN) {
-                    g.drawImage(images[HIDDEN], x * 32, y * 32, 32, 32, null);
-                } else if (field.getMask()[y][x] == FieldGenerator.MASK_MARKED) {
-                    g.drawImage(images[FLAG], x * 32, y * 32, 32, 32, null);
-                }else if (field.getMask()[y][x] == FieldGenerator.MASK_LOSE) {
-                    g.drawImage(images[LOSE], x * 32, y * 32, 32, 32, null);
-                } else if (field.getMask()[y][x] == FieldGenerator.MASK_INCORRECT) {
-                    g.drawImage(images[INCORRECT], x * 32, y * 32, 32, 32, null);
+        // A canvas without a window, painted offscreen, has no gui to update
+        if (gui != null) {
+            gui.updateMines();
+        }
+        // Only draw the tiles inside the clip, a change set repaint is usually a few tiles
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        int minX = Math.max(tileX(clip.x), 0);
+        int minY = Math.max(tileY(clip.y), 0);
+        int maxX = Math.min(tileX(clip.x + clip.width - 1), field.getWidth() - 1);
+        int maxY = Math.min(tileY(clip.y + clip.height - 1), field.getHeight() - 1);
+        for(int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                int mask = field.getMaskValue(x, y);
+                if (mask == FieldGenerator.MASK_HIDDEN) {
+                    g.drawImage(images[HIDDEN], (x - originX) * 32, (y - originY) * 32, null);
+                } else if (mask == FieldGenerator.MASK_MARKED) {
+                    g.drawImage(images[FLAG], (x - originX) * 32, (y - originY) * 32, null);
+                }else if (mask == FieldGenerator.MASK_LOSE) {
+                    g.drawImage(images[LOSE], (x - originX) * 32, (y - originY) * 32, null);
+                } else if (mask == FieldGenerator.MASK_INCORRECT) {
+                    g.drawImage(images[INCORRECT], (x - originX) * 32, (y - originY) * 32, null);
                 } else {
-                    if (field.getField()[y][x] == FieldGenerator.FIELD_MINE) {
-                        g.drawImage(images[BOMB], x * 32, y * 32, 32, 32, null);
+                    int value = field.getFieldValue(x, y);
+                    if (value == FieldGenerator.FIELD_MINE) {
+                        g.drawImage(images[BOMB], (x - originX) * 32, (y - originY) * 32, null);
                     } else {
-                        g.drawImage(images[field.getField()[y][x]], x * 32, y * 32, 32, 32, null);
+                        g.drawImage(images[value], (x - originX) * 32, (y - originY) * 32, null);
                     }
                 }
             }
         }
-    }
-
-    /**
-     * Load the images from imagePaths into the BufferedImage array
-     * images.
-     */
-    private void loadImages() {
-        for (int i = 0; i < NUMBER_OF_IMAGES; i++) {
-            try {
-                images[i] = ImageIO.read(new File("minesweeper/img/" + imagePaths[i]));
-            } catch(IOException e) {
-                e.printStackTrace();
-            }
+        if (gui != null) {
+            gui.framePainted();
         }
     }
 
-    /*
-    /**
-     * Load the images from imagePaths into the BufferedImage array
-     * images.
-     * FOR JAR FILE
-     *
-    private void loadImages() {
-        for (int i = 0; i < NUMBER_OF_IMAGES; i++) {
-            try {
-                images[i] = ImageIO.read(this.getClass().getClassLoader().getResourceAsStream("minesweeper/img/" + imagePaths[i]));
-            } catch(IOException e) {
-                e.printStackTrace();
-            }
-        }
-    }*/
-
     @Override
     public void mouseExited(MouseEvent e) {
         // Do nothing
@@ -129,8 +138,9 @@ public class MineCanvas extends JPanel implements MouseListener {
                 if ((e.getX() / 32) == (tempX / 32) && (e.getY() / 32 == tempY / 32)) {
                     this.mouseClicked(e);
                 } else {
-                    if (field.getMask()[tempY / 32][tempX / 32] == 0) {
-                        this.getGraphics().drawImage(images[HIDDEN], ((tempX / 32) * 32), ((tempY / 32) * 32), 32, 32, null);
+                    if (field.inBounds(tileX(tempX), tileY(tempY)) &&
+                            field.getMaskValue(tileX(tempX), tileY(tempY)) == 0) {
+                        this.getGraphics().drawImage(images[HIDDEN], ((tempX / 32) * 32), ((tempY / 32) * 32), null);
                     }
                 }
             }
@@ -147,50 +157,96 @@ public class MineCanvas extends JPanel implements MouseListener {
     @Override
     public void mouseClicked(MouseEvent e) {
         if (!gameLose && !gameWin) {
-            if (field.getFirstClick())
-                gui.startTimer(); // Start timer
-            int x = (e.getX() / 32);
-            int y = (e.getY() / 32);
-            if (x < field.getField()[0].length && y < field.getField().length) {
+            int x = tileX(e.getX());
+            int y = tileY(e.getY());
+            if (field.inBounds(x, y)) {
                 if (e.getButton() == MouseEvent.BUTTON1) {
-                    this.gameLose = field.revealSpace(x, y);
-                    this.repaint();
+                    playMove(GameRecorder.REVEAL, x, y);
                 } else if (e.getButton() == MouseEvent.BUTTON3) {
-                    if (field.getMask()[y][x] == -1) {
-                        field.unMark(x, y);
-                        this.repaint();
-                    } else if (field.getMask()[y][x] == 0) {
-                        field.markMine(x, y);
-                        this.repaint();
+                    if (field.getMaskValue(x, y) == -1) {
+                        playMove(GameRecorder.UNMARK, x, y);
+                    } else if (field.getMaskValue(x, y) == 0) {
+                        playMove(GameRecorder.MARK, x, y);
                     }
                 }
-                if (gameWin = field.getGameWin()) {
-                    gui.gameWin();
-                } else if (this.gameLose) {
-                    field.loseGame();
-                    this.repaint();
-                    gui.gameLose();
-                }
             } else {
                 JOptionPane.showMessageDialog(null, "ERROR: CLICK OUT OF BOUNDS", "CLICK OUT OF BOUNDS", JOptionPane.ERROR_MESSAGE);
             }
         }
     }
 
+    /**
+     * Plays a move as if it had been clicked, for the mouse and for replays
+     * @param action GameRecorder.REVEAL, MARK or UNMARK
+     * @param x the x coordinate of the space
+     * @param y the y coordinate of the space
+     */
+    public void playMove(int action, int x, int y) {
+        if (gameLose || gameWin) {
+            return;
+        }
+        if (field.getFirstClick())
+            gui.startTimer(); // Start timer
+        if (action == GameRecorder.REVEAL) {
+            this.gameLose = field.revealSpace(x, y);
+        } else if (action == GameRecorder.MARK) {
+            field.markMine(x, y);
+        } else {
+            field.unMark(x, y);
+        }
+        repaintChanges();
+        if (gameWin = field.getGameWin()) {
+            gui.gameWin();
+        } else if (this.gameLose) {
+            field.loseGame();
+            repaintChanges();
+            gui.gameLose();
+        }
+    }
+
+    /**
+     * Repaints the bounding box of the spaces the last board call changed
+     */
+    private void repaintChanges() {
+        ChangeSet changes = field.getChanges();
+        if (!changes.isEmpty()) {
+            // Clamp to the canvas, the changes may reach far outside a virtual view
+            long left = Math.max((long) (changes.getMinX() - originX) * 32, 0);
+            long top = Math.max((long) (changes.getMinY() - originY) * 32, 0);
+            long right = Math.min((long) (changes.getMaxX() - originX + 1) * 32, getWidth());
+            long bottom = Math.min((long) (changes.getMaxY() - originY + 1) * 32, getHeight());
+            if (left < right && top < bottom) {
+                this.repaint((int) left, (int) top, (int) (right - left), (int) (bottom - top));
+            }
+        }
+    }
+
     @Override
     public void mousePressed(MouseEvent e) {
         if (!gameLose && !gameWin) {
             tempX = e.getX();
             tempY = e.getY();
-            if ((e.getButton() == MouseEvent.BUTTON1) && field.getMask()[e.getY() / 32][e.getX() / 32] == 0)
-                this.getGraphics().drawImage(images[0], (e.getX() / 32) * 32, (e.getY() / 32) * 32, 32, 32, null);
+            if ((e.getButton() == MouseEvent.BUTTON1) && field.inBounds(tileX(e.getX()), tileY(e.getY())) &&
+                    field.getMaskValue(tileX(e.getX()), tileY(e.getY())) == 0)
+                this.getGraphics().drawImage(images[0], (e.getX() / 32) * 32, (e.getY() / 32) * 32, null);
         }
     }
 
-    public void newGame(FieldGenerator aField) {
+    public void newGame(Board aField) {
         gameLose = false;
         gameWin = false;
         field = aField;
-        //this.setPreferredSize(new Dimension(field.getField()[0].length * 32, field.getField().length * 32));
+        originX = 0;
+        originY = 0;
+        //this.setPreferredSize(new Dimension(field.getWidth() * 32, field.getHeight() * 32));
+    }
+
+    /**
+     * Ends the game without a move, for a saved game that was already over
+     * @param lost true if it was lost, false if it was won
+     */
+    public void endGame(boolean lost) {
+        gameLose = lost;
+        gameWin = !lost;
     }
 }
@@ -0,0 +1,458 @@
+package minesweeper;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Helpers for generating a mine field in two passes.
+ * Mines are first placed into a bitmap with one bit per space, then the
+ * numbers for every space are computed in one sequential, branch-free
+ * sweep over three zero-padded rows of that bitmap.
+ * <p>
+ * The field is split into bands of BAND_ROWS rows. Each band gets as many
+ * mines as a uniformly random layout would put there, and its own
+ * SplittableRandom stream split off the master seed in band order, so the
+ * finished field only depends on the seed and never on how many threads
+ * generated it. A band always covers a multiple of 64
+ * spaces, so no two bands ever write to the same bitmap word.
+ */
+final class MineLayout {
+    static final int BAND_ROWS = 64;
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    /**
+     * Creates an empty mine bitmap for the given number of spaces
+     * @param size the number of spaces on the field
+     * @return a bitmap with one bit per space, all clear
+     */
+    static long[] newBitmap(int size) {
+        return new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * Checks whether the given space holds a mine
+     * @param bitmap the mine bitmap
+     * @param i the packed index of the space
+     * @return true if the space holds a mine
+     */
+    static boolean isMine(long[] bitmap, int i) {
+        return (bitmap[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Generates a complete field into a fresh store
+     * @param cells the fully hidden store to write the field into
+     * @param mines the number of mines to place
+     * @param seed the master seed for the field
+     * @param pool the pool to generate large fields on, or null to stay on this thread
+     */
+    static void generate(CellStore cells, int mines, long seed, ForkJoinPool pool) {
+        int bands = (cells.getHeight() + BAND_ROWS - 1) / BAND_ROWS;
+        long[] mineBits = newBitmap(cells.size());
+        int[] bandMines = new int[bands];
+        SplittableRandom[] bandRandoms = new SplittableRandom[bands];
+        SplittableRandom master = new SplittableRandom(seed);
+        shareMines(cells, mines, bandMines, master);
+        for (int b = 0; b < bands; b++) {
+            bandRandoms[b] = master.split();
+        }
+        // Every band needs its mines before any band is numbered, since the
+        // rows on either side of a band border read the mines of both bands
+        if (pool == null || cells.size() < PARALLEL_THRESHOLD) {
+            for (int b = 0; b < bands; b++) {
+                placeBand(mineBits, cells, b, bandMines[b], bandRandoms[b]);
+            }
+            countNeighbors(mineBits, cells, 0, cells.getHeight());
+        } else {
+            pool.invoke(new BandTask(mineBits, cells, bandMines, bandRandoms, 0, bands));
+            pool.invoke(new BandTask(mineBits, cells, null, null, 0, bands));
+        }
+    }
+
+    /**
+     * Places the mines for one band
+     * @param mineBits the mine bitmap for the whole field
+     * @param cells the store being generated
+     * @param band the band
+     * @param count the number of mines in the band
+     * @param rand the random stream for the band
+     */
+    private static void placeBand(long[] mineBits, CellStore cells, int band, int count, SplittableRandom rand) {
+        int first = band * BAND_ROWS * cells.getWidth();
+        placeMines(mineBits, first, first + bandSize(cells, band), count, rand);
+    }
+
+    /**
+     * Splits the mines between the bands the way a uniformly random layout
+     * would. Going through the bands in order, each band draws its count
+     * from the hypergeometric distribution of the mines and spaces not yet
+     * given out, on the master stream, so the last band takes what's left.
+     * @param cells the store being generated
+     * @param mines the total number of mines
+     * @param bandMines the array to write the mines per band into
+     * @param master the master random stream
+     */
+    private static void shareMines(CellStore cells, int mines, int[] bandMines, SplittableRandom master) {
+        long spaces = cells.size();
+        long left = mines;
+        for (int b = 0; b < bandMines.length; b++) {
+            int size = bandSize(cells, b);
+            bandMines[b] = (int) hypergeometric(spaces, left, size, master);
+            left -= bandMines[b];
+            spaces -= size;
+        }
+    }
+
+    /**
+     * Draws how many mines land in a sample of spaces taken without
+     * replacement. The distribution is walked outward from its mode, one
+     * step each way in turn, so a draw takes a few standard deviations of
+     * steps however large the field is.
+     * @param total the spaces to sample from
+     * @param good the mines among them
+     * @param draws the spaces in the sample
+     * @param rand the source of randomness
+     * @return the mines in the sample
+     */
+    static long hypergeometric(long total, long good, long draws, SplittableRandom rand) {
+        long bad = total - good;
+        long lo = Math.max(0, draws - bad);
+        long hi = Math.min(good, draws);
+        if (lo == hi) {
+            return lo;
+        }
+        long mode = Math.min(Math.max((long) ((draws + 1.0) * (good + 1.0) / (total + 2.0)), lo), hi);
+        // Taken apart so no two huge logs are subtracted, chunked fields draw from 2^62 spaces
+        double pMode = Math.exp(logChoose(good, mode) + logFalling(draws, mode) +
+                logFalling(total - draws, good - mode) - logFalling(total, good));
+        double u = rand.nextDouble() - pMode;
+        long down = mode;
+        long up = mode;
+        double pDown = pMode;
+        double pUp = pMode;
+        while (u >= 0 && (pDown > 0 || pUp > 0)) {
+            if (up < hi) {
+                // P(k + 1) / P(k) = (good - k)(draws - k) / ((k + 1)(bad - draws + k + 1))
+                pUp *= (double) (good - up) * (draws - up) / ((up + 1.0) * (bad - draws + up + 1));
+                up++;
+                u -= pUp;
+                if (u < 0) {
+                    return up;
+                }
+            } else {
+                pUp = 0;
+            }
+            if (down > lo) {
+                pDown *= (double) down * (bad - draws + down) / ((good - down + 1.0) * (draws - down + 1));
+                down--;
+                u -= pDown;
+                if (u < 0) {
+                    return down;
+                }
+            } else {
+                pDown = 0;
+            }
+        }
+        // Only rounding is left past the tails
+        return mode;
+    }
+
+    /**
+     * Gets the natural log of a binomial coefficient
+     * @param n the number of things
+     * @param k the number chosen
+     * @return ln(n choose k)
+     */
+    private static double logChoose(long n, long k) {
+        return logFactorial(n) - logFactorial(k) - logFactorial(n - k);
+    }
+
+    /**
+     * Gets the natural log of a falling factorial, the product of the k
+     * numbers from n down. The difference of the two Stirling series is
+     * worked out in one go, so it stays accurate when n is huge and k isn't.
+     * @param n the number to start from
+     * @param k how many numbers to multiply, at most n
+     * @return ln(n! / (n - k)!)
+     */
+    private static double logFalling(long n, long k) {
+        if (n - k < 16) {
+            return logFactorial(n) - logFactorial(n - k);
+        }
+        double a = n;
+        double b = n - k;
+        return -(b + 0.5) * Math.log1p(-k / a) + k * Math.log(a) - k + 1 / (12 * a) - 1 / (12 * b) -
+                1 / (360 * a * a * a) + 1 / (360 * b * b * b);
+    }
+
+    /**
+     * Gets the natural log of a factorial, exactly for small numbers and
+     * from Stirling's series otherwise
+     * @param n the number
+     * @return ln(n!)
+     */
+    private static double logFactorial(long n) {
+        if (n < 16) {
+            double product = 1;
+            for (long k = 2; k <= n; k++) {
+                product *= k;
+            }
+            return Math.log(product);
+        }
+        double x = n;
+        return x * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI * x) + 1 / (12 * x) - 1 / (360 * x * x * x);
+    }
+
+    /**
+     * Gets the number of spaces in a band
+     * @param cells the store being generated
+     * @param band the band
+     * @return the number of spaces the band covers
+     */
+    private static int bandSize(CellStore cells, int band) {
+        int rows = Math.min(BAND_ROWS, cells.getHeight() - band * BAND_ROWS);
+        return rows * cells.getWidth();
+    }
+
+    /**
+     * Places the given number of mines on distinct random spaces in
+     * [from, to) using Floyd's sampling without replacement. Every step
+     * sets exactly one new bit, so dense fields never retry.
+     * @param bitmap the mine bitmap to place the mines into
+     * @param from the first space that may hold a mine
+     * @param to one past the last space that may hold a mine
+     * @param count the number of mines to place
+     * @param rand the source of randomness
+     */
+    static void placeMines(long[] bitmap, int from, int to, int count, SplittableRandom rand) {
+        for (int j = to - from - count; j < to - from; j++) {
+            int pick = from + rand.nextInt(j + 1);
+            // If the pick is taken then from + j can't be yet, and taking it
+            // keeps every subset equally likely
+            if (isMine(bitmap, pick)) {
+                pick = from + j;
+            }
+            bitmap[pick >>> 6] |= 1L << pick;
+        }
+    }
+
+    /**
+     * Writes the field values for rows [fromRow, toRow) into the store.
+     * Each value is the sum of the 3x3 block of mine bits around the space,
+     * or FIELD_MINE when the space itself is a mine. The store must still
+     * be fully hidden.
+     * @param bitmap the mine bitmap for the whole field
+     * @param cells the store to write the field values into
+     * @param fromRow the first row to compute
+     * @param toRow one past the last row to compute
+     */
+    static void countNeighbors(long[] bitmap, CellStore cells, int fromRow, int toRow) {
+        int width = cells.getWidth();
+        int height = cells.getHeight();
+        // Padded rows, index x + 1 holds space x so the edges need no special cases
+        int[] above = new int[width + 2];
+        int[] row = new int[width + 2];
+        int[] below = new int[width + 2];
+        int[] columns = new int[width + 2];
+        loadRow(bitmap, width, height, fromRow - 1, above);
+        loadRow(bitmap, width, height, fromRow, row);
+        for (int y = fromRow; y < toRow; y++) {
+            loadRow(bitmap, width, height, y + 1, below);
+            // Vertical sums of the three rows
+            for (int x = 0; x < width + 2; x++) {
+                columns[x] = above[x] + row[x] + below[x];
+            }
+            // Horizontal sums of three columns, forced to all ones for a mine
+            int base = y * width;
+            for (int x = 0; x < width; x++) {
+                int count = columns[x] + columns[x + 1] + columns[x + 2];
+                cells.initField(base + x, count | -row[x + 1]);
+            }
+            int[] spare = above;
+            above = row;
+            row = below;
+            below = spare;
+        }
+    }
+
+    /**
+     * Unpacks one row of the bitmap into a padded row of 0s and 1s.
+     * Rows outside the field load as all 0s.
+     * @param bitmap the mine bitmap
+     * @param width the x-size of the field
+     * @param height the y-size of the field
+     * @param y the row to load
+     * @param padded the padded row to fill, of length width + 2
+     */
+    private static void loadRow(long[] bitmap, int width, int height, int y, int[] padded) {
+        if (y < 0 || y >= height) {
+            Arrays.fill(padded, 0);
+            return;
+        }
+        int base = y * width;
+        for (int x = 0; x < width; x++) {
+            int i = base + x;
+            padded[x + 1] = (int) (bitmap[i >>> 6] >>> i) & 1;
+        }
+    }
+
+    /**
+     * Makes sure the first click is safe by moving any mines off the
+     * clicked space, or off the 3x3 around it when the first click should
+     * open up and the field has room for it. Only the numbers next to the
+     * moved mines are updated, so the cost doesn't depend on the field size.
+     * @param cells the field
+     * @param mines the number of mines on the field
+     * @param x the x coordinate of the first click
+     * @param y the y coordinate of the first click
+     * @param opening true to clear the 3x3 around the click
+     * @param seed the seed of the field, the moves are derived from it
+     * @return true if any mine was moved
+     */
+    static boolean protectFirstClick(CellStore cells, int mines, int x, int y, boolean opening, long seed) {
+        int radius = 0;
+        if (opening) {
+            int area = (Math.min(x + 1, cells.getWidth() - 1) - Math.max(x - 1, 0) + 1) *
+                    (Math.min(y + 1, cells.getHeight() - 1) - Math.max(y - 1, 0) + 1);
+            if (cells.size() - area >= mines) {
+                radius = 1;
+            }
+        }
+        int minX = Math.max(x - radius, 0);
+        int maxX = Math.min(x + radius, cells.getWidth() - 1);
+        int minY = Math.max(y - radius, 0);
+        int maxY = Math.min(y + radius, cells.getHeight() - 1);
+        SplittableRandom rand = new SplittableRandom(~seed);
+        boolean moved = false;
+        for (int ny = minY; ny <= maxY; ny++) {
+            for (int nx = minX; nx <= maxX; nx++) {
+                if (cells.getField(cells.index(nx, ny)) == FieldGenerator.FIELD_MINE) {
+                    int target = findMineSpace(cells, rand, minX, maxX, minY, maxY);
+                    moveMine(cells, nx, ny, target % cells.getWidth(), target / cells.getWidth());
+                    moved = true;
+                }
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Finds a random space without a mine outside the given area. A few
+     * random probes find one on any reasonable field, a scan from a random
+     * start finishes the search on very dense ones.
+     * @param cells the field
+     * @param rand the source of randomness
+     * @param minX the left edge of the area to avoid
+     * @param maxX the right edge of the area to avoid
+     * @param minY the top edge of the area to avoid
+     * @param maxY the bottom edge of the area to avoid
+     * @return the packed index of the space
+     */
+    private static int findMineSpace(CellStore cells, SplittableRandom rand, int minX, int maxX, int minY, int maxY) {
+        int size = cells.size();
+        int start = rand.nextInt(size);
+        for (int probe = 0; probe < 16 + size; probe++) {
+            int i = probe < 16 ? rand.nextInt(size) : (start + probe - 16) % size;
+            int x = i % cells.getWidth();
+            int y = i / cells.getWidth();
+            boolean inArea = x >= minX && x <= maxX && y >= minY && y <= maxY;
+            if (!inArea && cells.getField(i) != FieldGenerator.FIELD_MINE) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("No free space left for a mine");
+    }
+
+    /**
+     * Moves a mine and renumbers the spaces around both ends of the move
+     * @param cells the field
+     * @param fromX the x coordinate of the mine
+     * @param fromY the y coordinate of the mine
+     * @param toX the x coordinate of the free space to move it to
+     * @param toY the y coordinate of the free space to move it to
+     */
+    private static void moveMine(CellStore cells, int fromX, int fromY, int toX, int toY) {
+        cells.setField(cells.index(fromX, fromY), FieldGenerator.FIELD_EMPTY);
+        cells.setField(cells.index(toX, toY), FieldGenerator.FIELD_MINE);
+        renumberAround(cells, fromX, fromY);
+        renumberAround(cells, toX, toY);
+    }
+
+    /**
+     * Recounts the number of every non-mine space in the 3x3 around x, y
+     * @param cells the field
+     * @param x the x coordinate of the centre
+     * @param y the y coordinate of the centre
+     */
+    private static void renumberAround(CellStore cells, int x, int y) {
+        for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, cells.getHeight() - 1); ny++) {
+            for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, cells.getWidth() - 1); nx++) {
+                int i = cells.index(nx, ny);
+                if (cells.getField(i) != FieldGenerator.FIELD_MINE) {
+                    cells.setField(i, countMines(cells, nx, ny));
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the mines touching the space at x, y
+     * @param cells the field
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the number of mines in the 3x3 around the space
+     */
+    private static int countMines(CellStore cells, int x, int y) {
+        int count = 0;
+        for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, cells.getHeight() - 1); ny++) {
+            for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, cells.getWidth() - 1); nx++) {
+                if (cells.getField(cells.index(nx, ny)) == FieldGenerator.FIELD_MINE) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Fork/join task running one pass over a range of bands. It places the
+     * mines when it has the per band mines and random streams, and numbers
+     * the spaces otherwise.
+     */
+    private static final class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] mineBits;
+        private final CellStore cells;
+        private final int[] bandMines;
+        private final SplittableRandom[] bandRandoms;
+        private final int from;
+        private final int to;
+
+        BandTask(long[] mineBits, CellStore cells, int[] bandMines, SplittableRandom[] bandRandoms,
+                 int from, int to) {
+            this.mineBits = mineBits;
+            this.cells = cells;
+            this.bandMines = bandMines;
+            this.bandRandoms = bandRandoms;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BandTask(mineBits, cells, bandMines, bandRandoms, from, middle),
+                        new BandTask(mineBits, cells, bandMines, bandRandoms, middle, to));
+            } else if (bandMines != null) {
+                placeBand(mineBits, cells, from, bandMines[from], bandRandoms[from]);
+            } else {
+                int firstRow = from * BAND_ROWS;
+                countNeighbors(mineBits, cells, firstRow, Math.min(firstRow + BAND_ROWS, cells.getHeight()));
+            }
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package minesweeper;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
 /**
  * The connecting class for connecting the GUI and Logic
  */
@@ -7,15 +11,23 @@ public class MineSweeper {
     private static final int DEFAULT_X = 9;
     private static final int DEFAULT_Y = 9;
     private static final int DEFAULT_MINES = 10;
+    private static final int ENDLESS_SIZE = 100000;
+    private static final int ENDLESS_MINES = 2000000000;
 
-    private FieldGenerator field;
+    private Board field;
     private GUIDisplay gui;
+    private boolean firstClickOpening;
+    private boolean noGuess;
+    private GameRecorder recorder;
 
     /**
      * Starts the game
      */
     public void startGame(int x, int y, int mines) {
-        field = new FieldGenerator(x, y, mines);
+        FieldGenerator generator = new FieldGenerator(x, y, mines, noGuess);
+        generator.setFirstClickOpening(firstClickOpening);
+        recorder = generator.startRecording();
+        field = generator;
         try {
             gui = new GUIDisplay(field, this);
         } catch (Exception e) {
@@ -31,7 +43,23 @@ public class MineSweeper {
     }
 
     public void newGame(int x, int y, int mines) {
-        field = new FieldGenerator(x, y, mines);
+        gui.newGameRequested();
+        FieldGenerator generator = new FieldGenerator(x, y, mines, noGuess);
+        generator.setFirstClickOpening(firstClickOpening);
+        recorder = generator.startRecording();
+        field = generator;
+        gui.newGame(field);
+    }
+
+    /**
+     * Create a new game on a lazily generated board of ten billion
+     * spaces, scrolled virtually
+     */
+    public void newEndlessGame() {
+        gui.newGameRequested();
+        field = new ChunkedField(ENDLESS_SIZE, ENDLESS_SIZE, ENDLESS_MINES, new SplittableRandom().nextLong());
+        field.setFirstClickOpening(firstClickOpening);
+        recorder = null;
         gui.newGame(field);
     }
 
@@ -39,6 +67,110 @@ public class MineSweeper {
      * Create a new game with previous size/mine settings
      */
     public void newGame() {
-        newGame(field.getField()[0].length, field.getField().length, field.getMines());
+        if (field instanceof ChunkedField) {
+            newEndlessGame();
+        } else {
+            newGame(field.getWidth(), field.getHeight(), field.getMines());
+        }
+    }
+
+    /**
+     * Saves the current game and its time
+     * @param file the file to save to
+     * @throws IOException if the game can't be saved
+     */
+    public void saveGame(File file) throws IOException {
+        if (!(field instanceof FieldGenerator)) {
+            throw new IOException("Only standard fields can be saved");
+        }
+        SaveFile.save((FieldGenerator) field, gui.getTime(), file);
+    }
+
+    /**
+     * Replaces the current game with a saved one
+     * @param file the file to load from
+     * @throws IOException if the save can't be loaded
+     */
+    public void loadGame(File file) throws IOException {
+        gui.newGameRequested();
+        SaveFile save = SaveFile.load(file);
+        field = save.getField();
+        recorder = null;
+        gui.resumeGame(field, save.getTime(), save.isLost());
+    }
+
+    /**
+     * Saves the moves of the current game so it can be replayed
+     * @param file the file to save to
+     * @throws IOException if the replay can't be saved
+     */
+    public void saveReplay(File file) throws IOException {
+        if (recorder == null) {
+            throw new IOException("Only new standard games can be replayed");
+        }
+        recorder.save(file);
+    }
+
+    /**
+     * Replaces the current game with a replay, played at the speed it was recorded
+     * @param file the replay to load
+     * @throws IOException if the replay can't be loaded
+     */
+    public void watchReplay(File file) throws IOException {
+        GameReplay replay = GameReplay.load(file);
+        gui.newGameRequested();
+        field = replay.createField();
+        recorder = null;
+        gui.newGame(field);
+        gui.playReplay(replay);
+    }
+
+    /**
+     * Sets the listener told how long each new game took to be painted
+     * @param listener the listener, or null for none
+     */
+    public void setNewGameListener(GUIDisplay.NewGameListener listener) {
+        gui.setNewGameListener(listener);
+    }
+
+    /**
+     * Sets whether the first click of every game opens up an empty space.
+     * Also applies to the current game if it hasn't been clicked yet.
+     * @param opening true to keep the 3x3 around the first click clear
+     */
+    public void setFirstClickOpening(boolean opening) {
+        firstClickOpening = opening;
+        if (field != null) {
+            field.setFirstClickOpening(opening);
+        }
+    }
+
+    /**
+     * Gets whether the first click of every game opens up an empty space
+     * @return true if the 3x3 around the first click is kept clear
+     */
+    public boolean getFirstClickOpening() {
+        return firstClickOpening;
+    }
+
+    /**
+     * Sets whether games are laid out so they can be solved without
+     * guessing. Endless games always allow guessing. Also applies to the
+     * current game if it hasn't been clicked yet.
+     * @param noGuess true for games without guessing
+     */
+    public void setNoGuess(boolean noGuess) {
+        this.noGuess = noGuess;
+        if (field instanceof FieldGenerator) {
+            ((FieldGenerator) field).setNoGuess(noGuess);
+        }
+    }
+
+    /**
+     * Gets whether games are laid out so they can be solved without guessing
+     * @return true for games without guessing
+     */
+    public boolean getNoGuess() {
+        return noGuess;
     }
 }
@@ -0,0 +1,140 @@
+package minesweeper;
+
+import minesweeper.solver.Solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches for a layout that can be solved without guessing from a given
+ * first click. Candidates are numbered, candidate 0 being the field's own
+ * seed, and checked by playing them out with the logic solver. Workers on
+ * the pool take candidates in order and stop as soon as every candidate
+ * before the best one found has been checked, so the result is always the
+ * first solvable candidate, however many threads ran.
+ */
+final class NoGuessSearch {
+    /** Time allowed for a search before settling for a normal field, in nanoseconds */
+    static final long TIME_LIMIT = 1000000000L;
+
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final int x;
+    private final int y;
+    private final long seed;
+    private final long deadline;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger best = new AtomicInteger(Integer.MAX_VALUE);
+
+    private NoGuessSearch(int width, int height, int mines, int x, int y, long seed, long deadline) {
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.x = x;
+        this.y = y;
+        this.seed = seed;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Finds the seed of the first candidate layout that needs no guessing
+     * @param width the x-size of the field
+     * @param height the y-size of the field
+     * @param mines the number of mines
+     * @param x the x coordinate of the first click
+     * @param y the y coordinate of the first click
+     * @param seed the field's seed, the first candidate
+     * @param pool the pool to search on, or null for this thread only
+     * @param limit the time allowed in nanoseconds
+     * @return the seed of the layout found, or seed if none was found in time
+     */
+    static long find(int width, int height, int mines, int x, int y, long seed, ForkJoinPool pool, long limit) {
+        final NoGuessSearch search = new NoGuessSearch(width, height, mines, x, y, seed, System.nanoTime() + limit);
+        if (pool == null || pool.getParallelism() == 1) {
+            search.work();
+        } else {
+            List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+            for (int i = 0; i < pool.getParallelism(); i++) {
+                workers.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        search.work();
+                        return null;
+                    }
+                });
+            }
+            pool.invokeAll(workers);
+        }
+        int found = search.best.get();
+        return found == Integer.MAX_VALUE ? seed : candidateSeed(seed, found);
+    }
+
+    /**
+     * Gets the seed of a numbered candidate
+     * @param seed the field's seed
+     * @param candidate the candidate number
+     * @return the seed of the candidate's layout
+     */
+    static long candidateSeed(long seed, int candidate) {
+        return candidate == 0 ? seed : new SplittableRandom(seed + candidate * 0x9E3779B97F4A7C15L).nextLong();
+    }
+
+    /**
+     * Checks candidates until one before the best found is left or time
+     * runs out. Each worker plays its candidates on one reused field.
+     */
+    private void work() {
+        FieldGenerator candidate = null;
+        Solver solver = new Solver();
+        while (System.nanoTime() < deadline) {
+            int i = next.getAndIncrement();
+            if (i < 0 || i > best.get()) {
+                return;
+            }
+            long candidateSeed = candidateSeed(seed, i);
+            if (candidate == null) {
+                candidate = new FieldGenerator(width, height, mines, candidateSeed, null);
+                candidate.setFirstClickOpening(true);
+            } else {
+                candidate.reset(candidateSeed);
+            }
+            if (solvable(candidate, solver)) {
+                int current = best.get();
+                while (i < current && !best.compareAndSet(current, i)) {
+                    current = best.get();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Plays a candidate from the first click, revealing only what the
+     * solver proves safe
+     * @param candidate the candidate field
+     * @param solver the solver to use
+     * @return true if the field was finished without guessing
+     */
+    private boolean solvable(FieldGenerator candidate, Solver solver) {
+        candidate.revealSpace(x, y);
+        while (!candidate.getGameWin()) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            solver.solve(candidate);
+            int safe = solver.getSafeCount();
+            if (safe == 0) {
+                return false;
+            }
+            for (int k = 0; k < safe; k++) {
+                candidate.revealSpace(solver.getSafeX(k), solver.getSafeY(k));
+            }
+        }
+        return true;
+    }
+}
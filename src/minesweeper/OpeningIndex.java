@@ -0,0 +1,309 @@
+package minesweeper;
+
+import java.util.Arrays;
+
+/**
+ * The openings of a layout, found once instead of on every click. An
+ * opening is a connected region of empty spaces together with the numbers
+ * around it, everything one click on an empty space reveals. Empty spaces
+ * are labelled with a two pass union-find over the packed cells, then the
+ * spaces of each opening are listed back to back in one array, so
+ * revealing an opening is a walk over its list. The same pass counts the
+ * 3BV of the layout, the fewest clicks that reveal every safe space.
+ * <p>
+ * The index only describes the layout, the mask is left to the field.
+ * It does keep per opening counts of flagged and revealed empty spaces,
+ * so the field knows when a bulk reveal would differ from a flood fill.
+ */
+final class OpeningIndex {
+    /** Largest field the index is built for, it takes several ints per space */
+    static final int MAX_CELLS = 1 << 20;
+
+    // Opening of each space, -1 for mines and numbers. While building,
+    // the union-find parent of each empty space, always at or before it.
+    private int[] label = new int[0];
+    // The spaces of opening o are members[start[o]] up to members[start[o + 1]]
+    private int[] start = new int[1];
+    private int[] members = new int[0];
+    // Each number next to an opening and that opening, in pairs, while building
+    private int[] border = new int[0];
+    // Empty spaces of each opening that are flagged, and whether any were revealed
+    private int[] flags = new int[0];
+    private boolean[] opened = new boolean[0];
+    private int count;
+    private int threeBV;
+    private boolean valid;
+    // Distinct openings next to the number being listed
+    private final int[] around = new int[8];
+
+    /**
+     * Forgets the index, for when the layout changed
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Checks whether the index matches the layout
+     * @return true if it was built and the layout hasn't changed since
+     */
+    boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Labels every opening of a layout, reusing the arrays of the last build
+     * @param cells the field, its mask is read for the flag and reveal counts
+     */
+    void build(CellStore cells) {
+        int width = cells.getWidth();
+        int height = cells.getHeight();
+        int size = cells.size();
+        if (label.length < size) {
+            label = new int[size];
+        }
+        // First pass: link each empty space to the empty ones before it,
+        // the root of a region being its first space. The space above
+        // touches both upper corners, so it's the only one needed when empty.
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                if (cells.getField(i) != FieldGenerator.FIELD_EMPTY) {
+                    label[i] = -1;
+                    continue;
+                }
+                label[i] = i;
+                if (y > 0 && label[i - width] >= 0) {
+                    union(i, i - width);
+                    continue;
+                }
+                if (x > 0) {
+                    union(i, i - 1);
+                }
+                if (y > 0) {
+                    if (x > 0) {
+                        union(i, i - width - 1);
+                    }
+                    if (x < width - 1) {
+                        union(i, i - width + 1);
+                    }
+                }
+            }
+        }
+        // Second pass: number the roots in order. A parent comes before its
+        // space, so it already holds the final number of the region.
+        count = 0;
+        for (int i = 0; i < size; i++) {
+            int parent = label[i];
+            if (parent >= 0) {
+                label[i] = parent == i ? count++ : label[parent];
+            }
+        }
+        if (start.length < count + 1) {
+            start = new int[count + 1];
+            flags = new int[count];
+            opened = new boolean[count];
+        }
+        Arrays.fill(start, 0, count + 1, 0);
+        Arrays.fill(flags, 0, count, 0);
+        Arrays.fill(opened, 0, count, false);
+        // Size each opening and pair each number with the openings around it,
+        // counting the numbers no opening reaches toward the 3BV
+        threeBV = count;
+        int pairs = 0;
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                int o = label[i];
+                if (o >= 0) {
+                    start[o]++;
+                    int mask = cells.getMask(i);
+                    if (mask == FieldGenerator.MASK_MARKED) {
+                        flags[o]++;
+                    } else if (mask != FieldGenerator.MASK_HIDDEN) {
+                        opened[o] = true;
+                    }
+                } else if (cells.getField(i) != FieldGenerator.FIELD_MINE) {
+                    int n = openingsAround(width, height, x, y);
+                    if (n == 0) {
+                        threeBV++;
+                    }
+                    if (border.length < pairs + 2 * n) {
+                        border = Arrays.copyOf(border, Math.max(border.length * 2, 1024));
+                    }
+                    for (int k = 0; k < n; k++) {
+                        start[around[k]]++;
+                        border[pairs++] = i;
+                        border[pairs++] = around[k];
+                    }
+                }
+            }
+        }
+        // Turn the sizes into the end of each list, then fill the lists
+        // back to front so each end moves down to its start
+        int total = 0;
+        for (int o = 0; o < count; o++) {
+            total += start[o];
+            start[o] = total;
+        }
+        start[count] = total;
+        if (members.length < total) {
+            members = new int[total];
+        }
+        for (int k = pairs - 2; k >= 0; k -= 2) {
+            members[--start[border[k + 1]]] = border[k];
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            int o = label[i];
+            if (o >= 0) {
+                members[--start[o]] = i;
+            }
+        }
+        valid = true;
+    }
+
+    /**
+     * Joins the regions of two empty spaces, keeping the earlier root
+     * @param a one space
+     * @param b the other space, which might not be empty
+     */
+    private void union(int a, int b) {
+        if (label[b] < 0) {
+            return;
+        }
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA < rootB) {
+            label[rootB] = rootA;
+        } else if (rootB < rootA) {
+            label[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Finds the root of a region, halving the path on the way
+     * @param i an empty space
+     * @return the first space of its region
+     */
+    private int find(int i) {
+        while (label[i] != i) {
+            label[i] = label[label[i]];
+            i = label[i];
+        }
+        return i;
+    }
+
+    /**
+     * Lists the distinct openings touching a number into around
+     * @param width the x-size of the field
+     * @param height the y-size of the field
+     * @param x the x coordinate of the number
+     * @param y the y coordinate of the number
+     * @return how many openings were listed
+     */
+    private int openingsAround(int width, int height, int x, int y) {
+        int left = x > 0 ? x - 1 : x;
+        int right = x < width - 1 ? x + 1 : x;
+        int first = (y > 0 ? y - 1 : y) * width;
+        int last = (y < height - 1 ? y + 1 : y) * width;
+        int n = 0;
+        for (int row = first; row <= last; row += width) {
+            for (int i = row + left; i <= row + right; i++) {
+                int o = label[i];
+                if (o < 0 || (n > 0 && around[n - 1] == o)) {
+                    continue;
+                }
+                int k = 0;
+                while (k < n && around[k] != o) {
+                    k++;
+                }
+                if (k == n) {
+                    around[n++] = o;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Gets the opening an empty space belongs to
+     * @param i the packed index of the space
+     * @return the opening, or -1 if the space is a mine or a number
+     */
+    int getOpening(int i) {
+        return label[i];
+    }
+
+    /**
+     * Checks whether an opening can be revealed from its list. It can't
+     * once a flag or an earlier reveal split it, the flood fill has to
+     * decide what is reachable then.
+     * @param o the opening
+     * @return true if none of its empty spaces are flagged or revealed
+     */
+    boolean canOpen(int o) {
+        return flags[o] == 0 && !opened[o];
+    }
+
+    /**
+     * Notes that an empty space of an opening was revealed
+     * @param o the opening
+     */
+    void setOpened(int o) {
+        opened[o] = true;
+    }
+
+    /**
+     * Notes that a flag was placed on or taken off a space
+     * @param i the packed index of the space
+     * @param delta 1 for a new flag, -1 for a removed one
+     */
+    void flagChanged(int i, int delta) {
+        int o = label[i];
+        if (o >= 0) {
+            flags[o] += delta;
+        }
+    }
+
+    /**
+     * Gets where the list of an opening starts in the members
+     * @param o the opening
+     * @return the position of its first space
+     */
+    int start(int o) {
+        return start[o];
+    }
+
+    /**
+     * Gets where the list of an opening ends in the members
+     * @param o the opening
+     * @return the position after its last space
+     */
+    int end(int o) {
+        return start[o + 1];
+    }
+
+    /**
+     * Gets a space from the lists of the openings
+     * @param k the position in the lists
+     * @return the packed index of the space
+     */
+    int member(int k) {
+        return members[k];
+    }
+
+    /**
+     * Gets the number of openings
+     * @return the number of regions of connected empty spaces
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the 3BV of the layout: one click for each opening plus one
+     * for each number no opening reveals
+     * @return the fewest clicks that reveal every safe space
+     */
+    int get3BV() {
+        return threeBV;
+    }
+}
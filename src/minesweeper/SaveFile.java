@@ -0,0 +1,212 @@
+package minesweeper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Versioned binary save format for a game in progress.
+ * A save is a fixed size header followed by the packed cells of the field,
+ * one byte per space exactly as the CellStore holds them, so both saving and
+ * loading move the cells straight between the file and the store. Nothing
+ * is memory mapped, a mapping holds the file open until it's garbage
+ * collected and on Windows that stops the next save from replacing it.
+ * The counts in the header are only a summary, loading counts them again
+ * from the cells.
+ * <pre>
+ * int  magic "MSWP"
+ * int  version
+ * int  width, height
+ * int  mines, minesRemaining, unrevealed
+ * int  elapsed time in seconds
+ * long seed
+ * byte firstClick
+ * byte options, 1 for first click openings, 2 for no guessing
+ * byte[width * height] packed cells
+ * </pre>
+ */
+public final class SaveFile {
+    private static final int MAGIC = 0x4D535750;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 42;
+    private static final int OPTION_OPENING = 1;
+    private static final int OPTION_NO_GUESS = 2;
+
+    private final FieldGenerator field;
+    private final int time;
+    private final boolean lost;
+
+    private SaveFile(FieldGenerator field, int time, boolean lost) {
+        this.field = field;
+        this.time = time;
+        this.lost = lost;
+    }
+
+    /**
+     * Gets the restored field
+     * @return the field as it was saved
+     */
+    public FieldGenerator getField() {
+        return field;
+    }
+
+    /**
+     * Gets the restored game time
+     * @return the elapsed time in seconds when the game was saved
+     */
+    public int getTime() {
+        return time;
+    }
+
+    /**
+     * Checks whether the saved game was lost, which shows as the mine that
+     * was hit
+     * @return true if the game was over and lost when it was saved
+     */
+    public boolean isLost() {
+        return lost;
+    }
+
+    /**
+     * Saves a game, replacing the file if it exists
+     * @param field the field to save
+     * @param time the elapsed game time in seconds
+     * @param file the file to save to
+     * @throws IOException if the file can't be written
+     */
+    public static void save(FieldGenerator field, int time, File file) throws IOException {
+        CellStore cells = field.getCells();
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(cells.getWidth());
+            header.putInt(cells.getHeight());
+            header.putInt(field.getMines());
+            header.putInt(field.getMinesRemaining());
+            header.putInt(field.getUnrevealed());
+            header.putInt(time);
+            header.putLong(field.getSeed());
+            header.put((byte) (field.getFirstClick() ? 1 : 0));
+            header.put((byte) ((field.getFirstClickOpening() ? OPTION_OPENING : 0) |
+                    (field.getNoGuess() ? OPTION_NO_GUESS : 0)));
+            header.flip();
+            write(channel, header);
+            write(channel, cells.buffer());
+            channel.force(true);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Loads a saved game
+     * @param file the file to load from
+     * @return the restored game
+     * @throws IOException if the file can't be read or isn't a valid save
+     */
+    public static SaveFile load(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a MineSweeper save: " + file);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            read(channel, header, file);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a MineSweeper save: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported save version " + version + ": " + file);
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            int mines = header.getInt();
+            // The mines left and spaces hidden are counted from the cells
+            header.getInt();
+            header.getInt();
+            int time = header.getInt();
+            long seed = header.getLong();
+            boolean firstClick = header.get() != 0;
+            int options = header.get();
+            long size = (long) width * height;
+            if (width < 1 || height < 1 || size > Integer.MAX_VALUE - 8 || channel.size() != HEADER_SIZE + size) {
+                throw new IOException("Corrupt save, size doesn't match a " + width + "x" + height + " field: " + file);
+            }
+            if (mines < 0 || mines >= size || time < 0) {
+                throw new IOException("Corrupt save, counts out of range: " + file);
+            }
+            CellStore cells = new CellStore(width, height);
+            read(channel, cells.buffer(), file);
+            // Every cell has to hold a value and a mask state the game knows,
+            // and the mines have to add up to the header's
+            int mined = 0;
+            int marked = 0;
+            int revealed = 0;
+            boolean lost = false;
+            for (int i = 0; i < cells.size(); i++) {
+                int value = cells.getField(i);
+                int mask = cells.getMask(i);
+                if (value > 8 || mask < FieldGenerator.MASK_INCORRECT || mask > FieldGenerator.MASK_REVEALED) {
+                    throw new IOException("Corrupt save, bad space at " + i % width + "," + i / width + ": " + file);
+                }
+                if (value == FieldGenerator.FIELD_MINE) {
+                    mined++;
+                } else if (mask == FieldGenerator.MASK_REVEALED) {
+                    revealed++;
+                }
+                // A lost game turns the wrong flags into crosses, they still count as flags
+                if (mask == FieldGenerator.MASK_MARKED || mask == FieldGenerator.MASK_INCORRECT) {
+                    marked++;
+                }
+                lost |= mask == FieldGenerator.MASK_LOSE;
+            }
+            if (mined != mines) {
+                throw new IOException("Corrupt save, " + mines + " mines in the header but " + mined + " on the field: " +
+                        file);
+            }
+            FieldGenerator field = new FieldGenerator(cells, mines, mines - marked, cells.size() - revealed, firstClick,
+                    seed);
+            field.setFirstClickOpening((options & OPTION_OPENING) != 0);
+            field.setNoGuess((options & OPTION_NO_GUESS) != 0);
+            return new SaveFile(field, time, lost);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes all of a buffer to a channel, however many writes it takes
+     * @param channel the channel to write to
+     * @param buffer the bytes to write
+     * @throws IOException if the channel can't be written
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Fills a buffer from a channel, however many reads it takes
+     * @param channel the channel to read from
+     * @param buffer the buffer to fill
+     * @param file the file being read, for the error message
+     * @throws IOException if the channel can't be read or ends first
+     */
+    private static void read(FileChannel channel, ByteBuffer buffer, File file) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Corrupt save, file ends early: " + file);
+            }
+        }
+    }
+}
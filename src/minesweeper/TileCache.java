@@ -0,0 +1,102 @@
+package minesweeper;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Process wide cache of the tile images. The tiles are read once, from the
+ * classpath when running from a jar or from the minesweeper/img directory
+ * otherwise, and copied into images compatible with the screen at the tile
+ * size so drawing them never has to convert or scale.
+ * Tiles are indexed 0 through 8 for the numbers, then BOMB, FLAG, HIDDEN,
+ * LOSE and INCORRECT.
+ */
+final class TileCache {
+    static final int TILE_SIZE = 32;
+    static final int BOMB = 9;
+    static final int FLAG = 10;
+    static final int HIDDEN = 11;
+    static final int LOSE = 12;
+    static final int INCORRECT = 13;
+    private static final String[] TILE_NAMES = {
+            "tileclear.png", "tile1.png", "tile2.png", "tile3.png", "tile4.png", "tile5.png", "tile6.png",
+            "tile7.png", "tile8.png", "tilebomb.png", "tileflag.png", "tilehidden.png", "tilelose.png",
+            "tileincorrect.png"
+    };
+
+    private static Image[] tiles;
+
+    private TileCache() {
+        // Static cache only
+    }
+
+    /**
+     * Gets the tiles, loading them on the first call. The array is shared
+     * and must not be modified.
+     * @return the tile images, TILE_SIZE pixels square
+     */
+    static synchronized Image[] getTiles() {
+        if (tiles == null) {
+            tiles = loadTiles();
+        }
+        return tiles;
+    }
+
+    /**
+     * Reads every tile and converts it to a managed image at the tile size
+     * @return the tile images
+     */
+    private static Image[] loadTiles() {
+        GraphicsConfiguration config = null;
+        if (!GraphicsEnvironment.isHeadless()) {
+            config = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration();
+        }
+        Image[] loaded = new Image[TILE_NAMES.length];
+        for (int i = 0; i < TILE_NAMES.length; i++) {
+            BufferedImage tile;
+            if (config != null) {
+                tile = config.createCompatibleImage(TILE_SIZE, TILE_SIZE, Transparency.TRANSLUCENT);
+            } else {
+                tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+            }
+            try {
+                BufferedImage source = readTile(TILE_NAMES[i]);
+                Graphics2D g = tile.createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(source, 0, 0, TILE_SIZE, TILE_SIZE, null);
+                g.dispose();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            loaded[i] = tile;
+        }
+        return loaded;
+    }
+
+    /**
+     * Reads one tile from the classpath, falling back to the file system
+     * @param name the file name of the tile
+     * @return the tile as it is stored
+     * @throws IOException if the tile can't be found or read
+     */
+    private static BufferedImage readTile(String name) throws IOException {
+        InputStream in = TileCache.class.getResourceAsStream("img/" + name);
+        if (in != null) {
+            try {
+                return ImageIO.read(in);
+            } finally {
+                in.close();
+            }
+        }
+        BufferedImage image = ImageIO.read(new File("minesweeper/img/" + name));
+        if (image == null) {
+            throw new IOException("Unreadable tile " + name);
+        }
+        return image;
+    }
+}
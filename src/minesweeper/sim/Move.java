@@ -0,0 +1,67 @@
+package minesweeper.sim;
+
+import minesweeper.util.Cells;
+
+/**
+ * A move chosen by a strategy. One move is reused for a whole simulation
+ * thread, so choosing a move never allocates.
+ */
+public final class Move {
+    private boolean mark;
+    private int x;
+    private int y;
+
+    /**
+     * Sets the move to revealing a space
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    public void reveal(int x, int y) {
+        this.mark = false;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Sets the move to marking a space as a mine
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    public void mark(int x, int y) {
+        this.mark = true;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Checks whether the move marks a mine
+     * @return true for a mark, false for a reveal
+     */
+    public boolean isMark() {
+        return mark;
+    }
+
+    /**
+     * Gets the x coordinate of the move
+     * @return the x coordinate
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Gets the y coordinate of the move
+     * @return the y coordinate
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Gets the space of the move as a packed cell
+     * @return the packed cell, see Cells
+     */
+    public long getCell() {
+        return Cells.pack(x, y);
+    }
+}
@@ -0,0 +1,107 @@
+package minesweeper.sim;
+
+import java.util.Arrays;
+
+/**
+ * Counts games by the number of moves they took. Counts are exact up to
+ * EXACT moves, the array growing only as far as the longest game needs.
+ * Longer games, which only huge boards have, share one overflow count,
+ * their total and the longest still being kept exactly, so the memory
+ * stays bounded whatever the board size.
+ */
+final class MoveHistogram {
+    /** Games shorter than this many moves are counted per move count */
+    static final int EXACT = 1 << 16;
+
+    private long[] counts = new long[64];
+    private long overflow;
+    private long total;
+    private long sum;
+    private long max;
+
+    /**
+     * Counts a game
+     * @param moves the moves it took
+     */
+    void add(long moves) {
+        if (moves < EXACT) {
+            int m = (int) moves;
+            if (m >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.min(Integer.highestOneBit(m) * 2, EXACT));
+            }
+            counts[m]++;
+        } else {
+            overflow++;
+        }
+        total++;
+        sum += moves;
+        max = Math.max(max, moves);
+    }
+
+    /**
+     * Adds the games of another histogram to this one
+     * @param other the histogram to add
+     */
+    void addAll(MoveHistogram other) {
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int m = 0; m < other.counts.length; m++) {
+            counts[m] += other.counts[m];
+        }
+        overflow += other.overflow;
+        total += other.total;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Gets the number of games that took a number of moves
+     * @param moves the number of moves, below EXACT
+     * @return the games that took exactly that many moves
+     */
+    long get(long moves) {
+        return moves >= 0 && moves < counts.length ? counts[(int) moves] : 0;
+    }
+
+    /**
+     * Gets the number of games counted
+     * @return the number of games
+     */
+    long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the average moves of the games
+     * @return the mean, 0 if there are none
+     */
+    double getMean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    /**
+     * Gets the most moves a game took
+     * @return the longest game in moves
+     */
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the moves a fraction of the games took at most
+     * @param fraction the fraction between 0 and 1
+     * @return the moves, or -1 if that many games only fit with the overflow
+     */
+    long percentile(double fraction) {
+        long rank = Math.max((long) Math.ceil(total * fraction), 1);
+        long seen = 0;
+        for (int m = 0; m < counts.length; m++) {
+            seen += counts[m];
+            if (seen >= rank) {
+                return m;
+            }
+        }
+        return -1;
+    }
+}
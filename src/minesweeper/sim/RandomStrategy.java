@@ -0,0 +1,48 @@
+package minesweeper.sim;
+
+import minesweeper.Board;
+import minesweeper.FieldGenerator;
+
+import java.util.SplittableRandom;
+
+/**
+ * Reveals hidden spaces at random, the baseline other strategies are
+ * graded against
+ */
+public class RandomStrategy implements Strategy {
+    /** Creates random strategies */
+    public static final Factory FACTORY = new Factory() {
+        @Override
+        public Strategy create() {
+            return new RandomStrategy();
+        }
+    };
+
+    private SplittableRandom random = new SplittableRandom();
+
+    @Override
+    public void startGame(Board board, long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public void nextMove(Board board, Move move) {
+        guess(board, random, move);
+    }
+
+    /**
+     * Reveals a random hidden space that isn't marked
+     * @param board the board being played
+     * @param random the source of randomness
+     * @param move the move to fill in
+     */
+    static void guess(Board board, SplittableRandom random, Move move) {
+        int x;
+        int y;
+        do {
+            x = random.nextInt(board.getWidth());
+            y = random.nextInt(board.getHeight());
+        } while (board.getMaskValue(x, y) != FieldGenerator.MASK_HIDDEN);
+        move.reveal(x, y);
+    }
+}
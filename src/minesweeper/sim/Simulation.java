@@ -0,0 +1,257 @@
+package minesweeper.sim;
+
+import minesweeper.FieldGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays games headlessly in bulk to grade strategies and difficulty
+ * settings. Game n is played on the field generated from seed first + n, so
+ * a run gives the same totals however many threads play it. Every thread
+ * plays all its games on one board, reset for each game, so no memory is
+ * allocated per game. Nothing here touches the user interface classes.
+ */
+public final class Simulation {
+    private static final int BLOCK = 64;
+
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final Strategy.Factory strategies;
+    private long firstSeed = 0;
+    private long games = 1000;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean firstClickOpening = false;
+
+    /**
+     * Creates a simulation
+     * @param width the x-size of the boards
+     * @param height the y-size of the boards
+     * @param mines the number of mines on each board
+     * @param strategies creates the strategy for each thread
+     */
+    public Simulation(int width, int height, int mines, Strategy.Factory strategies) {
+        // Fail here rather than on every thread
+        new FieldGenerator(width, height, mines, 0, null);
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.strategies = strategies;
+    }
+
+    /**
+     * Sets the seeds to play
+     * @param firstSeed the seed of the first game
+     * @param games the number of games, using the seeds that follow
+     */
+    public void setSeeds(long firstSeed, long games) {
+        if (games < 0) {
+            throw new IllegalArgumentException("Games must not be negative, got " + games);
+        }
+        this.firstSeed = firstSeed;
+        this.games = games;
+    }
+
+    /**
+     * Sets the number of threads to play on
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be positive, got " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Sets whether the first click of every game opens up an empty space
+     * @param opening true to keep the 3x3 around the first click clear
+     */
+    public void setFirstClickOpening(boolean opening) {
+        firstClickOpening = opening;
+    }
+
+    /**
+     * Plays every game
+     * @return the totals
+     */
+    public SimulationResult run() {
+        final AtomicLong next = new AtomicLong();
+        final long maxMoves = 2L * width * height;
+        List<Player> players = new ArrayList<Player>();
+        for (int t = 0; t < threads; t++) {
+            players.add(new Player(next, maxMoves));
+        }
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invokeAll(players);
+        } finally {
+            pool.shutdown();
+        }
+        long nanos = System.nanoTime() - start;
+
+        long wins = 0;
+        long stalled = 0;
+        MoveHistogram wonMoves = new MoveHistogram();
+        MoveHistogram lostMoves = new MoveHistogram();
+        for (Player player : players) {
+            if (player.failure != null) {
+                throw new IllegalStateException("Simulation failed", player.failure);
+            }
+            wins += player.wins;
+            stalled += player.stalled;
+            wonMoves.addAll(player.wonMoves);
+            lostMoves.addAll(player.lostMoves);
+        }
+        return new SimulationResult(games, wins, stalled, nanos, threads, wonMoves, lostMoves);
+    }
+
+    /**
+     * Plays games on one thread, taking seeds in blocks until none are left
+     */
+    private final class Player implements Callable<Void> {
+        private final AtomicLong next;
+        private final long maxMoves;
+        private final MoveHistogram wonMoves = new MoveHistogram();
+        private final MoveHistogram lostMoves = new MoveHistogram();
+        private long wins;
+        private long stalled;
+        private Throwable failure;
+
+        Player(AtomicLong next, long maxMoves) {
+            this.next = next;
+            this.maxMoves = maxMoves;
+        }
+
+        @Override
+        public Void call() {
+            try {
+                play();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            return null;
+        }
+
+        private void play() {
+            Strategy strategy = strategies.create();
+            Move move = new Move();
+            FieldGenerator board = null;
+            long block;
+            while ((block = next.getAndAdd(BLOCK)) < games) {
+                long end = Math.min(block + BLOCK, games);
+                for (long n = block; n < end; n++) {
+                    long seed = firstSeed + n;
+                    if (board == null) {
+                        board = new FieldGenerator(width, height, mines, seed, null);
+                        board.setFirstClickOpening(firstClickOpening);
+                    } else {
+                        board.reset(seed);
+                    }
+                    strategy.startGame(board, seed);
+                    long moves = 0;
+                    boolean lost = false;
+                    while (!lost && !board.getGameWin() && moves < maxMoves) {
+                        strategy.nextMove(board, move);
+                        moves++;
+                        if (move.isMark()) {
+                            board.markMine(move.getX(), move.getY());
+                        } else {
+                            lost = board.revealSpace(move.getX(), move.getY());
+                        }
+                    }
+                    if (!lost && board.getGameWin()) {
+                        wins++;
+                        wonMoves.add(moves);
+                    } else {
+                        if (!lost) {
+                            stalled++;
+                        }
+                        lostMoves.add(moves);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a simulation from the command line and prints the totals.
+     * Options are --width, --height, --mines, --games, --seed, --threads,
+     * --strategy (random, solver or probability) and --opening, given as
+     * --name=value.
+     * @param args the options
+     */
+    public static void main(String[] args) {
+        int width = 30;
+        int height = 16;
+        int mines = 99;
+        long games = 100000;
+        long seed = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String strategy = "solver";
+        boolean opening = false;
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            String name = split < 0 ? arg : arg.substring(0, split);
+            String value = split < 0 ? "" : arg.substring(split + 1);
+            try {
+                if (name.equals("--width")) {
+                    width = Integer.parseInt(value);
+                } else if (name.equals("--height")) {
+                    height = Integer.parseInt(value);
+                } else if (name.equals("--mines")) {
+                    mines = Integer.parseInt(value);
+                } else if (name.equals("--games")) {
+                    games = Long.parseLong(value);
+                } else if (name.equals("--seed")) {
+                    seed = Long.parseLong(value);
+                } else if (name.equals("--threads")) {
+                    threads = Integer.parseInt(value);
+                } else if (name.equals("--strategy")) {
+                    strategy = value;
+                } else if (name.equals("--opening")) {
+                    opening = true;
+                } else {
+                    usage("Unknown option " + arg);
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                usage("Not a number: " + arg);
+                return;
+            }
+        }
+        Strategy.Factory factory;
+        if (strategy.equals("random")) {
+            factory = RandomStrategy.FACTORY;
+        } else if (strategy.equals("solver")) {
+            factory = SolverStrategy.FACTORY;
+        } else if (strategy.equals("probability")) {
+            factory = SolverStrategy.PROBABILITY_FACTORY;
+        } else {
+            usage("Unknown strategy " + strategy);
+            return;
+        }
+        try {
+            Simulation simulation = new Simulation(width, height, mines, factory);
+            simulation.setSeeds(seed, games);
+            simulation.setThreads(threads);
+            simulation.setFirstClickOpening(opening);
+            System.out.printf("%dx%d with %d mines, %s strategy, seeds %d to %d%n", width, height, mines,
+                    strategy, seed, seed + games - 1);
+            simulation.run().print(System.out);
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+        }
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Options: --width=N --height=N --mines=N --games=N --seed=N --threads=N "
+                + "--strategy=random|solver|probability --opening");
+    }
+}
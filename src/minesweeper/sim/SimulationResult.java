@@ -0,0 +1,131 @@
+package minesweeper.sim;
+
+import java.io.PrintStream;
+
+/**
+ * The totals of a simulation run
+ */
+public final class SimulationResult {
+    private final long games;
+    private final long wins;
+    private final long stalled;
+    private final long nanos;
+    private final int threads;
+    private final MoveHistogram wonMoves;
+    private final MoveHistogram lostMoves;
+
+    SimulationResult(long games, long wins, long stalled, long nanos, int threads, MoveHistogram wonMoves,
+                     MoveHistogram lostMoves) {
+        this.games = games;
+        this.wins = wins;
+        this.stalled = stalled;
+        this.nanos = nanos;
+        this.threads = threads;
+        this.wonMoves = wonMoves;
+        this.lostMoves = lostMoves;
+    }
+
+    /**
+     * Gets the number of games played
+     * @return the number of games
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Gets the number of games won
+     * @return the number of wins
+     */
+    public long getWins() {
+        return wins;
+    }
+
+    /**
+     * Gets the number of games stopped for taking more moves than the
+     * board has spaces twice over, counted as losses
+     * @return the number of stalled games
+     */
+    public long getStalled() {
+        return stalled;
+    }
+
+    /**
+     * Gets the wall clock time of the run
+     * @return the elapsed time in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Gets the share of games won
+     * @return the win rate between 0 and 1
+     */
+    public double getWinRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    /**
+     * Gets the throughput of the run
+     * @return games played per second
+     */
+    public double getGamesPerSecond() {
+        return nanos == 0 ? 0 : games * 1e9 / nanos;
+    }
+
+    /**
+     * Gets the number of games won in each number of moves. Games of
+     * MoveHistogram.EXACT moves or more are only in the totals.
+     * @param moves the number of moves
+     * @return the games won in exactly that many moves
+     */
+    public long getWonGames(long moves) {
+        return wonMoves.get(moves);
+    }
+
+    /**
+     * Gets the number of games lost in each number of moves. Games of
+     * MoveHistogram.EXACT moves or more are only in the totals.
+     * @param moves the number of moves
+     * @return the games lost in exactly that many moves
+     */
+    public long getLostGames(long moves) {
+        return lostMoves.get(moves);
+    }
+
+    /**
+     * Gets the most moves any game took
+     * @return the longest game in moves
+     */
+    public long getMaxMoves() {
+        return Math.max(wonMoves.getMax(), lostMoves.getMax());
+    }
+
+    /**
+     * Prints the totals and the move count distributions
+     * @param out the stream to print to
+     */
+    public void print(PrintStream out) {
+        out.printf("games %d in %.2f s on %d threads, %.0f games/s%n", games, nanos / 1e9, threads,
+                getGamesPerSecond());
+        out.printf("wins %d (%.2f%%), stalled %d%n", wins, getWinRate() * 100, stalled);
+        printDistribution(out, "moves, won", wonMoves);
+        printDistribution(out, "moves, lost", lostMoves);
+    }
+
+    private static void printDistribution(PrintStream out, String label, MoveHistogram histogram) {
+        if (histogram.getTotal() == 0) {
+            out.printf("%s: none%n", label);
+            return;
+        }
+        out.printf("%s: mean %.1f p10 %s p50 %s p90 %s p99 %s max %d%n", label, histogram.getMean(),
+                percentile(histogram, 0.1), percentile(histogram, 0.5), percentile(histogram, 0.9),
+                percentile(histogram, 0.99), histogram.getMax());
+    }
+
+    private static String percentile(MoveHistogram histogram, double fraction) {
+        long moves = histogram.percentile(fraction);
+        return moves < 0 ? ">=" + MoveHistogram.EXACT : Long.toString(moves);
+    }
+}
@@ -0,0 +1,88 @@
+package minesweeper.sim;
+
+import minesweeper.Board;
+import minesweeper.FieldGenerator;
+import minesweeper.solver.ProbabilityCalculator;
+import minesweeper.solver.Solver;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays everything the logic solver can prove, opening in the middle of
+ * the board. When nothing can be proven it either guesses at random or
+ * reveals the space least likely to be a mine.
+ */
+public class SolverStrategy implements Strategy {
+    /** Creates strategies that guess at random */
+    public static final Factory FACTORY = new Factory() {
+        @Override
+        public Strategy create() {
+            return new SolverStrategy(false);
+        }
+    };
+    /** Creates strategies that guess the space least likely to be a mine */
+    public static final Factory PROBABILITY_FACTORY = new Factory() {
+        @Override
+        public Strategy create() {
+            return new SolverStrategy(true);
+        }
+    };
+    private static final long GUESS_BUDGET = 5000000L;
+
+    private final Solver solver = new Solver();
+    private final ProbabilityCalculator calculator;
+    private SplittableRandom random = new SplittableRandom();
+    // Proven safe spaces not played yet, as x and y pairs
+    private int[] pending = new int[64];
+    private int pendingCount;
+
+    /**
+     * Creates a solver strategy
+     * @param probabilities true to guess the least likely space, false to guess at random
+     */
+    public SolverStrategy(boolean probabilities) {
+        calculator = probabilities ? new ProbabilityCalculator(GUESS_BUDGET, 0) : null;
+    }
+
+    @Override
+    public void startGame(Board board, long seed) {
+        random = new SplittableRandom(seed);
+        pendingCount = 0;
+    }
+
+    @Override
+    public void nextMove(Board board, Move move) {
+        if (board.getFirstClick()) {
+            move.reveal(board.getWidth() / 2, board.getHeight() / 2);
+            return;
+        }
+        // Proven spaces may have been opened since by a flood fill
+        while (pendingCount > 0) {
+            pendingCount -= 2;
+            int x = pending[pendingCount];
+            int y = pending[pendingCount + 1];
+            if (board.getMaskValue(x, y) == FieldGenerator.MASK_HIDDEN) {
+                move.reveal(x, y);
+                return;
+            }
+        }
+        solver.solve(board);
+        int safe = solver.getSafeCount();
+        if (safe > 0) {
+            if (pending.length < safe * 2) {
+                pending = new int[safe * 2];
+            }
+            // Stored backwards so they're played in the order they were proven
+            for (int k = safe - 1; k > 0; k--) {
+                pending[pendingCount++] = solver.getSafeX(k);
+                pending[pendingCount++] = solver.getSafeY(k);
+            }
+            move.reveal(solver.getSafeX(0), solver.getSafeY(0));
+        } else if (calculator != null) {
+            calculator.calculate(board);
+            move.reveal(calculator.getSafestX(), calculator.getSafestY());
+        } else {
+            RandomStrategy.guess(board, random, move);
+        }
+    }
+}
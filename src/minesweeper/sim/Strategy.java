@@ -0,0 +1,36 @@
+package minesweeper.sim;
+
+import minesweeper.Board;
+
+/**
+ * A way of playing games for the simulation. Each simulation thread gets
+ * its own strategy from a Factory, so strategies can keep working state
+ * without locking.
+ */
+public interface Strategy {
+
+    /**
+     * Called before the first move of every game
+     * @param board the board about to be played, still unclicked
+     * @param seed the seed of the game, for strategies that choose randomly
+     */
+    void startGame(Board board, long seed);
+
+    /**
+     * Chooses the next move
+     * @param board the board being played
+     * @param move the move to fill in
+     */
+    void nextMove(Board board, Move move);
+
+    /**
+     * Creates a strategy for each simulation thread
+     */
+    interface Factory {
+        /**
+         * Creates a new strategy
+         * @return the strategy
+         */
+        Strategy create();
+    }
+}
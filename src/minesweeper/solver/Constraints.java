@@ -0,0 +1,572 @@
+package minesweeper.solver;
+
+import minesweeper.Board;
+import minesweeper.FieldGenerator;
+import minesweeper.util.IntDeque;
+
+import java.util.Arrays;
+
+/**
+ * The constraints a player can see on a board. Every revealed number with
+ * hidden neighbours is a constraint saying how many of those neighbours are
+ * mines. Spaces proven safe or mined are taken out of their constraints, so
+ * the constraints left only cover spaces still unknown.
+ * Everything is held in flat primitive arrays that are only reallocated when
+ * a bigger board is loaded. Spaces are indexed on a grid with a revealed
+ * border all the way round, so neighbours never need a bounds check.
+ */
+final class Constraints {
+    static final byte HIDDEN = 0;
+    static final byte REVEALED = 1;
+    static final byte SAFE = 2;
+    static final byte MINE = 3;
+
+    int width;
+    int height;
+    // Row length and space count of the bordered grid
+    int stride;
+    int size;
+    int mines;
+    // Per space state and revealed number
+    byte[] state = new byte[0];
+    byte[] number = new byte[0];
+    // Up to 8 constraints per space, the revealed neighbours
+    int[] cellCons = new int[0];
+    byte[] cellConCount = new byte[0];
+    // Up to 8 spaces per constraint, the unknown neighbours
+    int[] conCells = new int[0];
+    byte[] conSize = new byte[0];
+    byte[] conMines = new byte[0];
+    int count;
+    // Deductions in the order they were made
+    int[] safe = new int[0];
+    int safeCount;
+    int[] mined = new int[0];
+    int minedCount;
+    int unknown;
+
+    // Frontier spaces grouped by independent component, see split()
+    int[] compCells = new int[0];
+    int[] compStart = new int[1];
+    int[] compCons = new int[0];
+    int[] compConStart = new int[1];
+    int compCount;
+
+    private final int[] neighbors = new int[8];
+    // Spaces the arrays have room for, set once all of them are allocated
+    private int capacity;
+    private int[] conOf = new int[0];
+    private int[] conSeen = new int[0];
+    private int conStamp;
+    private final IntDeque queue = new IntDeque();
+    private boolean[] queued = new boolean[0];
+    private int[] stamp = new int[0];
+    private int currentStamp;
+    private int[] pending = new int[16];
+    private int[] parent = new int[0];
+    private int[] order = new int[0];
+    private int[] compOf = new int[0];
+
+    /**
+     * Reads what a player can see of a board. Flags are the player's guesses
+     * and count as hidden.
+     * @param board the board to read
+     */
+    void load(Board board) {
+        width = board.getWidth();
+        height = board.getHeight();
+        if (((long) width + 2) * (height + 2) > Integer.MAX_VALUE / 8) {
+            throw new IllegalArgumentException("Board too large to solve: " + width + "x" + height);
+        }
+        stride = width + 2;
+        size = stride * (height + 2);
+        mines = board.getMines();
+        ensureCapacity(size);
+        count = 0;
+        safeCount = 0;
+        minedCount = 0;
+        unknown = 0;
+        queue.clear();
+        neighbors[0] = -stride - 1;
+        neighbors[1] = -stride;
+        neighbors[2] = -stride + 1;
+        neighbors[3] = -1;
+        neighbors[4] = 1;
+        neighbors[5] = stride - 1;
+        neighbors[6] = stride;
+        neighbors[7] = stride + 1;
+
+        // The border counts as revealed with no number
+        for (int i = 0; i < stride; i++) {
+            border(i);
+            border(size - 1 - i);
+        }
+        for (int y = 0; y < height; y++) {
+            border((y + 1) * stride);
+            border((y + 1) * stride + stride - 1);
+            for (int x = 0, i = (y + 1) * stride + 1; x < width; x++, i++) {
+                cellConCount[i] = 0;
+                conOf[i] = -1;
+                if (board.getMaskValue(x, y) == FieldGenerator.MASK_REVEALED) {
+                    state[i] = REVEALED;
+                    number[i] = (byte) board.getFieldValue(x, y);
+                } else {
+                    state[i] = HIDDEN;
+                    unknown++;
+                }
+            }
+        }
+        // Pair up hidden spaces and revealed numbers starting from whichever there are fewer of
+        if (unknown <= width * height - unknown) {
+            joinFromHidden();
+        } else {
+            joinFromRevealed();
+        }
+    }
+
+    private void joinFromHidden() {
+        for (int y = 0; y < height; y++) {
+            for (int i = (y + 1) * stride + 1, end = i + width; i < end; i++) {
+                if (state[i] == HIDDEN) {
+                    for (int k = 0; k < 8; k++) {
+                        int j = i + neighbors[k];
+                        if (state[j] == REVEALED && number[j] >= 0) {
+                            join(i, j);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void joinFromRevealed() {
+        for (int y = 0; y < height; y++) {
+            for (int j = (y + 1) * stride + 1, end = j + width; j < end; j++) {
+                if (state[j] == REVEALED && number[j] >= 0) {
+                    for (int k = 0; k < 8; k++) {
+                        int i = j + neighbors[k];
+                        if (state[i] == HIDDEN) {
+                            join(i, j);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a hidden space to the constraint of a revealed neighbour,
+     * creating the constraint the first time
+     * @param i the hidden space
+     * @param j the revealed space
+     */
+    private void join(int i, int j) {
+        int c = conOf[j];
+        if (c < 0) {
+            c = count++;
+            conOf[j] = c;
+            conSize[c] = 0;
+            conMines[c] = number[j];
+            queued[c] = false;
+            enqueue(c);
+        }
+        conCells[c * 8 + conSize[c]++] = i;
+        cellCons[i * 8 + cellConCount[i]++] = c;
+    }
+
+    private void border(int i) {
+        state[i] = REVEALED;
+        number[i] = -1;
+    }
+
+    /**
+     * Gets the index of a space
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the index on the bordered grid
+     */
+    int index(int x, int y) {
+        return (y + 1) * stride + x + 1;
+    }
+
+    /**
+     * Gets the x coordinate of a space
+     * @param i the index on the bordered grid
+     * @return the x coordinate
+     */
+    int x(int i) {
+        return i % stride - 1;
+    }
+
+    /**
+     * Gets the y coordinate of a space
+     * @param i the index on the bordered grid
+     * @return the y coordinate
+     */
+    int y(int i) {
+        return i / stride - 1;
+    }
+
+    /**
+     * Sizes the arrays for a board. The capacity is only raised once every
+     * array is allocated, so running out of memory part way makes the next
+     * load try again rather than index past the old arrays.
+     * @param cells the spaces of the bordered grid
+     */
+    private void ensureCapacity(int cells) {
+        if (capacity >= cells) {
+            return;
+        }
+        capacity = 0;
+        state = new byte[cells];
+        number = new byte[cells];
+        cellCons = new int[cells * 8];
+        cellConCount = new byte[cells];
+        conCells = new int[cells * 8];
+        conSize = new byte[cells];
+        conMines = new byte[cells];
+        conOf = new int[cells];
+        conSeen = new int[cells];
+        conStamp = 0;
+        safe = new int[cells];
+        mined = new int[cells];
+        queued = new boolean[cells];
+        stamp = new int[cells];
+        currentStamp = 0;
+        compCells = new int[cells];
+        compStart = new int[cells + 1];
+        compCons = new int[cells];
+        compConStart = new int[cells + 1];
+        parent = new int[cells];
+        order = new int[cells];
+        compOf = new int[cells];
+        capacity = cells;
+    }
+
+    /**
+     * Gets the number of mines not yet proven
+     * @return the mines left among the unknown spaces
+     */
+    int minesLeft() {
+        return mines - minedCount;
+    }
+
+    /**
+     * Records a space as proven and takes it out of its constraints
+     * @param cell the space
+     * @param mine true if it's a mine, false if it's safe
+     */
+    void settle(int cell, boolean mine) {
+        if (state[cell] != HIDDEN) {
+            return;
+        }
+        unknown--;
+        if (mine) {
+            state[cell] = MINE;
+            mined[minedCount++] = cell;
+        } else {
+            state[cell] = SAFE;
+            safe[safeCount++] = cell;
+        }
+        for (int k = 0; k < cellConCount[cell]; k++) {
+            int c = cellCons[cell * 8 + k];
+            int base = c * 8;
+            int n = conSize[c];
+            for (int m = 0; m < n; m++) {
+                if (conCells[base + m] == cell) {
+                    conCells[base + m] = conCells[base + n - 1];
+                    conSize[c]--;
+                    break;
+                }
+            }
+            if (mine) {
+                conMines[c]--;
+            }
+            enqueue(c);
+        }
+    }
+
+    private void enqueue(int c) {
+        if (!queued[c]) {
+            queued[c] = true;
+            queue.addLast(c);
+        }
+    }
+
+    /**
+     * Applies the single constraint and constraint pair rules until nothing
+     * more can be proven
+     */
+    void reduce() {
+        while (!queue.isEmpty()) {
+            int c = queue.pollFirst();
+            queued[c] = false;
+            int n = conSize[c];
+            if (n == 0) {
+                continue;
+            }
+            int m = conMines[c];
+            if (m == 0 || m == n) {
+                settleAll(c, m != 0);
+            } else if (pairRule(c)) {
+                enqueue(c);
+            }
+        }
+    }
+
+    /**
+     * Settles every space of a constraint, copied first since settling
+     * reorders the constraint
+     */
+    private void settleAll(int c, boolean mine) {
+        int n = 0;
+        for (int k = 0; k < conSize[c]; k++) {
+            pending[n++] = conCells[c * 8 + k];
+        }
+        for (int k = 0; k < n; k++) {
+            settle(pending[k], mine);
+        }
+    }
+
+    /**
+     * Compares a constraint with every constraint it overlaps. With I the
+     * mines in the overlap, I is bounded by both constraints, and so are the
+     * mines in the parts outside the overlap; any part that must be all safe
+     * or all mines gets settled. This covers the subset rule, where I is
+     * exact, as well as partial overlaps.
+     * @param a the constraint
+     * @return true if anything was settled
+     */
+    private boolean pairRule(int a) {
+        int aBase = a * 8;
+        int aSize = conSize[a];
+        int aMines = conMines[a];
+        int mark = nextStamp();
+        for (int k = 0; k < aSize; k++) {
+            stamp[conCells[aBase + k]] = mark;
+        }
+        // Neighbouring numbers share several spaces, only compare them once
+        if (conStamp == Integer.MAX_VALUE) {
+            Arrays.fill(conSeen, 0);
+            conStamp = 0;
+        }
+        int seen = ++conStamp;
+        conSeen[a] = seen;
+        for (int k = 0; k < aSize; k++) {
+            int cell = conCells[aBase + k];
+            for (int l = 0; l < cellConCount[cell]; l++) {
+                int b = cellCons[cell * 8 + l];
+                int bSize = conSize[b];
+                if (conSeen[b] == seen || bSize == 0) {
+                    continue;
+                }
+                conSeen[b] = seen;
+                int bBase = b * 8;
+                int bMines = conMines[b];
+                int overlap = 0;
+                for (int m = 0; m < bSize; m++) {
+                    if (stamp[conCells[bBase + m]] == mark) {
+                        overlap++;
+                    }
+                }
+                int onlyA = aSize - overlap;
+                int onlyB = bSize - overlap;
+                int most = Math.min(overlap, Math.min(aMines, bMines));
+                int least = Math.max(0, Math.max(aMines - onlyA, bMines - onlyB));
+                if (onlyB > 0 && (bMines - least == 0 || bMines - most == onlyB)) {
+                    settleOutside(b, mark, bMines - least != 0);
+                    return true;
+                }
+                if (onlyA > 0 && (aMines - least == 0 || aMines - most == onlyA)) {
+                    settleOutsideOf(a, b, aMines - least != 0);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int nextStamp() {
+        if (currentStamp == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            currentStamp = 0;
+        }
+        return ++currentStamp;
+    }
+
+    /**
+     * Settles the spaces of b not stamped with mark
+     */
+    private void settleOutside(int b, int mark, boolean mine) {
+        int n = 0;
+        for (int k = 0; k < conSize[b]; k++) {
+            int cell = conCells[b * 8 + k];
+            if (stamp[cell] != mark) {
+                pending[n++] = cell;
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            settle(pending[k], mine);
+        }
+    }
+
+    /**
+     * Settles the spaces of a that aren't in b
+     */
+    private void settleOutsideOf(int a, int b, boolean mine) {
+        int n = 0;
+        for (int k = 0; k < conSize[a]; k++) {
+            int cell = conCells[a * 8 + k];
+            boolean shared = false;
+            for (int m = 0; m < conSize[b]; m++) {
+                if (conCells[b * 8 + m] == cell) {
+                    shared = true;
+                    break;
+                }
+            }
+            if (!shared) {
+                pending[n++] = cell;
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            settle(pending[k], mine);
+        }
+    }
+
+    /**
+     * Checks whether a space is hidden, not proven and touches a constraint
+     * @param cell the space
+     * @return true if the space is on the frontier
+     */
+    boolean isFrontier(int cell) {
+        if (state[cell] != HIDDEN) {
+            return false;
+        }
+        for (int k = 0; k < cellConCount[cell]; k++) {
+            if (conSize[cellCons[cell * 8 + k]] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits the frontier into independent components, groups of spaces
+     * linked through shared constraints. Component c holds the spaces
+     * compCells[compStart[c]] up to compStart[c + 1] and the constraints
+     * compCons[compConStart[c]] up to compConStart[c + 1]. Spaces are listed
+     * in the order the constraints reach them, so neighbouring spaces stay
+     * close together.
+     */
+    void split() {
+        int mark = nextStamp();
+        int frontier = 0;
+        for (int c = 0; c < count; c++) {
+            int n = conSize[c];
+            for (int k = 0; k < n; k++) {
+                int cell = conCells[c * 8 + k];
+                if (stamp[cell] != mark) {
+                    stamp[cell] = mark;
+                    parent[cell] = cell;
+                    order[frontier++] = cell;
+                }
+            }
+            for (int k = 1; k < n; k++) {
+                union(conCells[c * 8], conCells[c * 8 + k]);
+            }
+        }
+        // Number the components by their roots, then counting sort the spaces into them
+        int roots = nextStamp();
+        compCount = 0;
+        for (int k = 0; k < frontier; k++) {
+            int root = find(order[k]);
+            if (stamp[root] != roots) {
+                stamp[root] = roots;
+                compOf[root] = compCount;
+                compStart[compCount] = 0;
+                compConStart[compCount] = 0;
+                compCount++;
+            }
+            compStart[compOf[root]]++;
+        }
+        for (int c = 0; c < count; c++) {
+            if (conSize[c] > 0) {
+                compConStart[compOf[find(conCells[c * 8])]]++;
+            }
+        }
+        int cells = 0;
+        int cons = 0;
+        for (int c = 0; c <= compCount; c++) {
+            int n = c < compCount ? compStart[c] : 0;
+            int m = c < compCount ? compConStart[c] : 0;
+            compStart[c] = cells;
+            compConStart[c] = cons;
+            cells += n;
+            cons += m;
+        }
+        for (int k = 0; k < frontier; k++) {
+            int comp = compOf[find(order[k])];
+            compCells[compStart[comp]++] = order[k];
+        }
+        for (int c = 0; c < count; c++) {
+            if (conSize[c] > 0) {
+                int comp = compOf[find(conCells[c * 8])];
+                compCons[compConStart[comp]++] = c;
+            }
+        }
+        // The fills above moved every start to the next component's start
+        for (int c = compCount; c > 0; c--) {
+            compStart[c] = compStart[c - 1];
+            compConStart[c] = compConStart[c - 1];
+        }
+        compStart[0] = 0;
+        compConStart[0] = 0;
+        for (int c = 0; c < compCount; c++) {
+            breadthFirst(compStart[c], compStart[c + 1]);
+        }
+    }
+
+    /**
+     * Reorders the spaces of a component breadth first through their
+     * constraints, so that each constraint's spaces are close together and
+     * searches can check it as early as possible
+     * @param from the first space of the component in compCells
+     * @param to the end of the component in compCells
+     */
+    private void breadthFirst(int from, int to) {
+        int mark = nextStamp();
+        int tail = from;
+        order[tail++] = compCells[from];
+        stamp[compCells[from]] = mark;
+        for (int k = from; k < tail; k++) {
+            int cell = order[k];
+            for (int l = 0; l < cellConCount[cell]; l++) {
+                int c = cellCons[cell * 8 + l];
+                for (int m = 0; m < conSize[c]; m++) {
+                    int next = conCells[c * 8 + m];
+                    if (stamp[next] != mark) {
+                        stamp[next] = mark;
+                        order[tail++] = next;
+                    }
+                }
+            }
+        }
+        System.arraycopy(order, from, compCells, from, to - from);
+    }
+
+    private int find(int cell) {
+        while (parent[cell] != cell) {
+            parent[cell] = parent[parent[cell]];
+            cell = parent[cell];
+        }
+        return cell;
+    }
+
+    private void union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a != b) {
+            parent[a] = b;
+        }
+    }
+}
@@ -0,0 +1,1050 @@
+package minesweeper.solver;
+
+import minesweeper.Board;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Exact mine probabilities for every hidden space, using only what a player
+ * can see of the board.
+ * The frontier, the hidden spaces touching revealed numbers, is split into
+ * independent components. Each component's solutions are counted by number
+ * of mines, and per space, by going through its spaces in order and merging
+ * partial solutions that leave every open number in the same state, so a
+ * long frontier costs about as much as its widest point. The components are
+ * then combined with the number of ways the remaining mines fit in the
+ * spaces away from the frontier.
+ * When a component is too wide to count, too big for its per space counts
+ * to be kept by mine count, or counting runs past half the time budget, its
+ * counts are estimated by sampling instead until three quarters of the
+ * budget. Combining the components exactly takes time and memory growing
+ * with the square of the frontier, so when the products would be too big
+ * or combining runs past the budget the leftover mines are spread at the
+ * one density that places them all on average instead.
+ * Calculators keep their working arrays between calls and aren't thread
+ * safe, use one per thread.
+ */
+public final class ProbabilityCalculator {
+    /** Default time budget, in nanoseconds */
+    public static final long DEFAULT_BUDGET = 20000000L;
+    /** Open numbers a component may have at once and still be counted exactly */
+    private static final int MAX_SLOTS = 15;
+    private static final int MAX_STATES = 1 << 16;
+    // Partial solutions a component may have once half the budget is gone
+    private static final int LATE_STATES = 256;
+    private static final int MAX_POLY = 1 << 21;
+    // Samples tried past the deadline until one is a solution, fewer for big components
+    private static final int MIN_SAMPLES = 1024;
+    private static final int MIN_SAMPLE_SPACES = 1 << 12;
+    // Most per space counts kept over all components, and most product terms when combining
+    private static final int MAX_HITS = 1 << 20;
+    private static final int MAX_PRODUCT = 1 << 20;
+    // Furthest the log odds of the leftover mine density are searched
+    private static final double MAX_TILT = 40;
+
+    private final Constraints cons = new Constraints();
+    private final long budget;
+    private final SplittableRandom random;
+    private double[] probability = new double[0];
+    private boolean exact;
+    private int safest;
+
+    // Per component counts: counts[countOff[c] + k] solutions with k mines,
+    // hits[hitOff[c] + d * (n / w + 1) + k / w] of those with the space at d
+    // a mine, where w = hitWidth[c] mine counts share a column
+    private int[] countOff = new int[1];
+    private int[] hitOff = new int[1];
+    private int[] hitWidth = new int[1];
+    private double[] counts = new double[0];
+    private double[] hits = new double[0];
+    // Logs of the counts, and the counts weighted by the odds of a mine, see solveTilt
+    private double[] logCounts = new double[0];
+    private double[] tilted = new double[0];
+
+    // The spaces of the component being counted, their position and constraints
+    private int[] position = new int[0];
+    private int[] entryStart = new int[1];
+    private int[] entryCon = new int[0];
+    private int[] entrySlot = new int[0];
+    private boolean[] entryFirst = new boolean[0];
+    private byte[] entryAfter = new byte[0];
+    private int[] slot = new int[0];
+    private int[] placed = new int[0];
+    private int[] value = new int[0];
+
+    // Partial solutions of the component, grouped by how many spaces they cover
+    private int[] layerStart = new int[1];
+    private long[] keys = new long[0];
+    private int[] next0 = new int[0];
+    private int[] next1 = new int[0];
+    private int[] forwardOff = new int[0];
+    private int[] backwardOff = new int[0];
+    private double[] forward = new double[0];
+    private double[] backward = new double[0];
+    // Combining the components, kept between calculations
+    private double[] ways = new double[0];
+    private double[] prefix = new double[1];
+    private double[] suffix = new double[1];
+    private int[] prefixOff = new int[2];
+    private int[] suffixOff = new int[2];
+    private double[] others = new double[1];
+    private double[] rest = new double[1];
+    private final long[] tableKeys = new long[MAX_STATES * 2];
+    private final int[] tableValues = new int[MAX_STATES * 2];
+    private final int[] tableStamps = new int[MAX_STATES * 2];
+    private int tableStamp;
+
+    /**
+     * Creates a calculator with the default time budget
+     */
+    public ProbabilityCalculator() {
+        this(DEFAULT_BUDGET, 0);
+    }
+
+    /**
+     * Creates a calculator
+     * @param budget the time budget per calculation in nanoseconds
+     * @param seed the seed for sampling, so sampled results can be repeated
+     */
+    public ProbabilityCalculator(long budget, long seed) {
+        this.budget = budget;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Calculates the mine probability of every hidden space on a board.
+     * Flags are ignored, they're the player's guesses.
+     * @param board the board
+     * @return true if the probabilities are exact, false if any were sampled
+     */
+    public boolean calculate(Board board) {
+        long begin = System.nanoTime();
+        cons.load(board);
+        cons.reduce();
+        cons.split();
+        exact = true;
+        prepare();
+
+        int components = cons.compCount;
+        int frontier = cons.compStart[components];
+        for (int c = 0; c < components; c++) {
+            // Once half the budget is gone only the components that are quick to count are counted exactly
+            boolean late = System.nanoTime() > begin + budget / 2;
+            if (!countExact(c, late ? Long.MAX_VALUE : begin + budget / 2, late ? LATE_STATES : MAX_STATES)) {
+                exact = false;
+                // Split what's left of the budget between the components still to go, keeping a quarter to combine
+                long now = System.nanoTime();
+                long share = Math.max(begin + budget / 4 * 3 - now, 0) / (components - c);
+                countSampled(c, now + share);
+            }
+        }
+        combine(frontier, begin + budget);
+        findSafest();
+        return exact;
+    }
+
+    /**
+     * Sizes the per calculation arrays. Each group is allocated in full
+     * before any of it is kept, so running out of memory part way leaves
+     * the calculator as it was.
+     */
+    private void prepare() {
+        int size = cons.size;
+        if (probability.length < size) {
+            double[] newProbability = new double[size];
+            int[] newPosition = new int[size];
+            int[] newSlot = new int[size];
+            int[] newPlaced = new int[size];
+            probability = newProbability;
+            position = newPosition;
+            slot = newSlot;
+            placed = newPlaced;
+        }
+        int components = cons.compCount;
+        int frontier = cons.compStart[components];
+        if (value.length < frontier) {
+            int[] newEntryCon = new int[frontier * 8];
+            int[] newEntrySlot = new int[frontier * 8];
+            boolean[] newEntryFirst = new boolean[frontier * 8];
+            byte[] newEntryAfter = new byte[frontier * 8];
+            int[] newEntryStart = new int[frontier + 1];
+            int[] newValue = new int[frontier];
+            double[] newOthers = new double[frontier + 1];
+            double[] newRest = new double[frontier + 1];
+            entryCon = newEntryCon;
+            entrySlot = newEntrySlot;
+            entryFirst = newEntryFirst;
+            entryAfter = newEntryAfter;
+            entryStart = newEntryStart;
+            value = newValue;
+            others = newOthers;
+            rest = newRest;
+        }
+        if (countOff.length < components + 1) {
+            int[] newCountOff = new int[components + 1];
+            int[] newHitOff = new int[components + 1];
+            int[] newHitWidth = new int[components + 1];
+            countOff = newCountOff;
+            hitOff = newHitOff;
+            hitWidth = newHitWidth;
+        }
+        // Every mine count gets its own column while they all fit, otherwise
+        // the widest components share columns between neighbouring counts
+        long full = 0;
+        for (int c = 0; c < components; c++) {
+            int n = cons.compStart[c + 1] - cons.compStart[c];
+            full += (long) n * (n + 1);
+        }
+        int columns = full <= MAX_HITS ? Integer.MAX_VALUE : Math.max(MAX_HITS / frontier, 1);
+        int countSize = 0;
+        int hitSize = 0;
+        for (int c = 0; c < components; c++) {
+            int n = cons.compStart[c + 1] - cons.compStart[c];
+            int width = n < columns ? 1 : n / columns + 1;
+            countOff[c] = countSize;
+            hitOff[c] = hitSize;
+            hitWidth[c] = width;
+            countSize += n + 1;
+            hitSize += n * (n / width + 1);
+        }
+        countOff[components] = countSize;
+        hitOff[components] = hitSize;
+        if (counts.length < countSize) {
+            counts = new double[countSize];
+        }
+        if (hits.length < hitSize) {
+            hits = new double[hitSize];
+        }
+        Arrays.fill(counts, 0, countSize, 0);
+        Arrays.fill(hits, 0, hitSize, 0);
+    }
+
+    /**
+     * Lists the constraints of each space in a component with how many of
+     * their spaces come after it, and gives every constraint that's open
+     * across more than one space a slot in the partial solution key
+     * @param c the component
+     * @return false if more than MAX_SLOTS constraints are open at once
+     */
+    private boolean entries(int c) {
+        int start = cons.compStart[c];
+        int n = cons.compStart[c + 1] - start;
+        for (int d = 0; d < n; d++) {
+            position[cons.compCells[start + d]] = d;
+        }
+        int e = 0;
+        int used = 0;
+        boolean fits = true;
+        for (int d = 0; d < n; d++) {
+            int cell = cons.compCells[start + d];
+            entryStart[d] = e;
+            for (int k = 0; k < cons.cellConCount[cell]; k++) {
+                int con = cons.cellCons[cell * 8 + k];
+                int after = 0;
+                boolean first = true;
+                for (int m = 0; m < cons.conSize[con]; m++) {
+                    int p = position[cons.conCells[con * 8 + m]];
+                    if (p > d) {
+                        after++;
+                    } else if (p < d) {
+                        first = false;
+                    }
+                }
+                if (first && after > 0) {
+                    int free = Integer.numberOfTrailingZeros(~used);
+                    if (free >= MAX_SLOTS) {
+                        fits = false;
+                        free = 0;
+                    }
+                    used |= 1 << free;
+                    slot[con] = free;
+                }
+                entryCon[e] = con;
+                entrySlot[e] = slot[con];
+                entryFirst[e] = first;
+                entryAfter[e] = (byte) after;
+                e++;
+            }
+            // Constraints closed by this space give their slot back for the next one
+            for (int k = entryStart[d]; k < e; k++) {
+                if (entryAfter[k] == 0 && !entryFirst[k]) {
+                    used &= ~(1 << entrySlot[k]);
+                }
+            }
+        }
+        entryStart[n] = e;
+        return fits;
+    }
+
+    /**
+     * Moves a partial solution key on by one space
+     * @param key the open constraints' mine counts, 4 bits per slot
+     * @param d the position of the space
+     * @param v 1 if the space is a mine, 0 if not
+     * @return the new key, or -1 if a constraint can no longer be met
+     */
+    private long step(long key, int d, int v) {
+        for (int e = entryStart[d]; e < entryStart[d + 1]; e++) {
+            int shift = entrySlot[e] * 4;
+            int mines = (entryFirst[e] ? 0 : (int) (key >>> shift) & 15) + v;
+            int need = cons.conMines[entryCon[e]];
+            int after = entryAfter[e];
+            if (mines > need || mines + after < need) {
+                return -1;
+            }
+            if (after == 0) {
+                if (!entryFirst[e]) {
+                    key &= ~(15L << shift);
+                }
+            } else {
+                key = (key & ~(15L << shift)) | ((long) mines << shift);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Counts a component's solutions exactly. Partial solutions over the
+     * first d spaces are merged when they leave the open constraints the
+     * same, keeping a count per number of mines, then counted backwards the
+     * same way to get the count for each space.
+     * @param c the component
+     * @param deadline the System.nanoTime() to give up at
+     * @param maxStates the most partial solutions to keep
+     * @return false if the component is too wide or ran out of time
+     */
+    private boolean countExact(int c, long deadline, int maxStates) {
+        if (hitWidth[c] > 1 || !entries(c)) {
+            return false;
+        }
+        int n = cons.compStart[c + 1] - cons.compStart[c];
+        int states = 1;
+        int forwardSize = 1;
+        ensureStates(1, 1);
+        layerStart[0] = 0;
+        layerStart[1] = 1;
+        keys[0] = 0;
+        forwardOff[0] = 0;
+        forward[0] = 1;
+        for (int d = 0; d < n; d++) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            int stamp = nextTableStamp();
+            int from = layerStart[d];
+            int to = layerStart[d + 1];
+            for (int s = from; s < to; s++) {
+                for (int v = 0; v <= 1; v++) {
+                    long key = step(keys[s], d, v);
+                    int target = -1;
+                    if (key >= 0) {
+                        int h = hash(key);
+                        while (tableStamps[h] == stamp && tableKeys[h] != key) {
+                            h = (h + 1) & (tableKeys.length - 1);
+                        }
+                        if (tableStamps[h] == stamp) {
+                            target = tableValues[h];
+                        } else {
+                            // A new partial solution over d + 1 spaces, with d + 2 mine counts
+                            if (states == maxStates || forwardSize + d + 2 > MAX_POLY) {
+                                return false;
+                            }
+                            ensureStates(states + 1, forwardSize + d + 2);
+                            target = states++;
+                            tableStamps[h] = stamp;
+                            tableKeys[h] = key;
+                            tableValues[h] = target;
+                            keys[target] = key;
+                            forwardOff[target] = forwardSize;
+                            Arrays.fill(forward, forwardSize, forwardSize + d + 2, 0);
+                            forwardSize += d + 2;
+                        }
+                        int src = forwardOff[s];
+                        int dst = forwardOff[target] + v;
+                        for (int a = 0; a <= d; a++) {
+                            forward[dst + a] += forward[src + a];
+                        }
+                    }
+                    if (v == 0) {
+                        next0[s] = target;
+                    } else {
+                        next1[s] = target;
+                    }
+                }
+            }
+            layerStart[d + 2] = states;
+        }
+        if (layerStart[n + 1] == layerStart[n]) {
+            return false;
+        }
+
+        // Backwards, the solutions of the spaces from d on by mine count
+        long backwardNeeded = 1;
+        for (int d = 0; d < n; d++) {
+            backwardNeeded += (long) (layerStart[d + 1] - layerStart[d]) * (n - d + 1);
+        }
+        if (backwardNeeded > MAX_POLY) {
+            return false;
+        }
+        if (backward.length < backwardNeeded) {
+            backward = new double[(int) Math.max(backwardNeeded, backward.length * 2L)];
+        }
+        int last = layerStart[n];
+        backwardOff[last] = 0;
+        backward[0] = 1;
+        int backwardSize = 1;
+        for (int d = n - 1; d >= 0; d--) {
+            int length = n - d + 1;
+            for (int s = layerStart[d]; s < layerStart[d + 1]; s++) {
+                int off = backwardSize;
+                backwardOff[s] = off;
+                backwardSize += length;
+                Arrays.fill(backward, off, off + length, 0);
+                if (next0[s] >= 0) {
+                    int src = backwardOff[next0[s]];
+                    for (int b = 0; b < length - 1; b++) {
+                        backward[off + b] += backward[src + b];
+                    }
+                }
+                if (next1[s] >= 0) {
+                    int src = backwardOff[next1[s]];
+                    for (int b = 0; b < length - 1; b++) {
+                        backward[off + b + 1] += backward[src + b];
+                    }
+                }
+            }
+        }
+
+        // Solutions by mine count, then per space the ones where it's a mine
+        int countBase = countOff[c];
+        int finish = forwardOff[last];
+        for (int k = 0; k <= n; k++) {
+            counts[countBase + k] = forward[finish + k];
+        }
+        int hitBase = hitOff[c];
+        for (int d = 0; d < n; d++) {
+            int row = hitBase + d * (n + 1);
+            for (int s = layerStart[d]; s < layerStart[d + 1]; s++) {
+                if (next1[s] < 0) {
+                    continue;
+                }
+                int f = forwardOff[s];
+                int b = backwardOff[next1[s]];
+                for (int a = 0; a <= d; a++) {
+                    double ways = forward[f + a];
+                    if (ways == 0) {
+                        continue;
+                    }
+                    for (int m = 0; m < n - d; m++) {
+                        hits[row + a + m + 1] += ways * backward[b + m];
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estimates a component's counts by building solutions one space at a
+     * time, choosing randomly whenever both values are still possible. Each
+     * solution is weighted by the number of choices it went through, which
+     * makes the weighted counts unbiased estimates of the exact counts.
+     * The weights are kept relative to the most choices seen so far, as a
+     * wide component can go through more than a double can count. Past the
+     * deadline, sampling only goes on until there's one solution, and if
+     * none turns up the component is estimated from its numbers alone.
+     * @param c the component
+     * @param deadline the System.nanoTime() to stop sampling at
+     */
+    private void countSampled(int c, long deadline) {
+        entries(c);
+        int start = cons.compStart[c];
+        int n = cons.compStart[c + 1] - start;
+        int countBase = countOff[c];
+        int hitBase = hitOff[c];
+        int width = hitWidth[c];
+        int columns = n / width + 1;
+        for (int k = cons.compConStart[c]; k < cons.compConStart[c + 1]; k++) {
+            placed[cons.compCons[k]] = 0;
+        }
+        // Small components check the time every 64 samples, big ones every sample
+        int least = Math.max(Math.min(MIN_SAMPLES, MIN_SAMPLE_SPACES / n), 1);
+        int every = n < 64 ? 63 : 0;
+        int most = -1;
+        for (int sample = 0; sample < least && most < 0 || (sample & every) != 0 || System.nanoTime() < deadline;
+             sample++) {
+            int choices = 0;
+            int mines = 0;
+            int d = 0;
+            for (; d < n; d++) {
+                boolean safe = fits(d, 0);
+                boolean mine = fits(d, 1);
+                int v;
+                if (safe && mine) {
+                    choices++;
+                    v = random.nextBoolean() ? 1 : 0;
+                } else if (safe || mine) {
+                    v = mine ? 1 : 0;
+                } else {
+                    break;
+                }
+                value[d] = v;
+                mines += v;
+                for (int e = entryStart[d]; e < entryStart[d + 1]; e++) {
+                    placed[entryCon[e]] += v;
+                }
+            }
+            if (d == n) {
+                if (choices > most) {
+                    if (most >= 0) {
+                        scale(c, Math.scalb(1.0, most - choices));
+                    }
+                    most = choices;
+                }
+                double weight = Math.scalb(1.0, choices - most);
+                counts[countBase + mines] += weight;
+                int column = hitBase + mines / width;
+                for (int k = 0; k < n; k++) {
+                    if (value[k] == 1) {
+                        hits[column + k * columns] += weight;
+                    }
+                }
+            }
+            for (int k = 0; k < d; k++) {
+                int v = value[k];
+                for (int e = entryStart[k]; e < entryStart[k + 1]; e++) {
+                    placed[entryCon[e]] -= v;
+                }
+            }
+        }
+        if (most < 0) {
+            // No sample got through, which gets likelier the wider the component. Each space is taken to be a
+            // mine as often as its numbers have mines per space on average, and the component to hold their sum.
+            double sum = 0;
+            for (int d = 0; d < n; d++) {
+                sum += density(d);
+            }
+            int mines = (int) Math.min(Math.round(sum), n);
+            counts[countBase + mines] = 1;
+            for (int d = 0; d < n; d++) {
+                hits[hitBase + d * columns + mines / width] = density(d);
+            }
+        }
+    }
+
+    /**
+     * Gets the mines per space of the numbers around the space at d, on average
+     */
+    private double density(int d) {
+        double sum = 0;
+        for (int e = entryStart[d]; e < entryStart[d + 1]; e++) {
+            int con = entryCon[e];
+            sum += (double) cons.conMines[con] / cons.conSize[con];
+        }
+        return sum / (entryStart[d + 1] - entryStart[d]);
+    }
+
+    /**
+     * Multiplies a component's counts and hits by a factor
+     */
+    private void scale(int c, double factor) {
+        for (int k = countOff[c]; k < countOff[c + 1]; k++) {
+            counts[k] *= factor;
+        }
+        for (int k = hitOff[c]; k < hitOff[c + 1]; k++) {
+            hits[k] *= factor;
+        }
+    }
+
+    /**
+     * Checks whether the space at d can take a value given the ones before it
+     */
+    private boolean fits(int d, int v) {
+        for (int e = entryStart[d]; e < entryStart[d + 1]; e++) {
+            int mines = placed[entryCon[e]] + v;
+            int need = cons.conMines[entryCon[e]];
+            if (mines > need || mines + entryAfter[e] < need) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Combines the components with the ways the mines left over fit in the
+     * spaces away from the frontier, and fills in every probability
+     * @param frontier the number of spaces in the components
+     * @param deadline the System.nanoTime() to give up combining exactly at
+     */
+    private void combine(int frontier, long deadline) {
+        int components = cons.compCount;
+        int left = cons.minesLeft();
+        int interior = cons.unknown - frontier;
+        for (int c = 0; c < components; c++) {
+            normalize(counts, countOff[c], countOff[c + 1] - countOff[c], hits, hitOff[c], hitOff[c + 1] - hitOff[c]);
+        }
+        for (int i = 0; i < cons.size; i++) {
+            byte state = cons.state[i];
+            probability[i] = state == Constraints.MINE ? 1 : 0;
+        }
+        double tilt = solveTilt(left, interior);
+        if (!combineExact(frontier, left, interior, tilt, deadline)) {
+            exact = false;
+            combineTilted(interior, tilt);
+        }
+    }
+
+    /**
+     * Finds the log odds of a mine for which, were every space away from
+     * the frontier a mine on its own with those odds and each component's
+     * solutions weighted by the odds to the power of their mines, the
+     * mines left over would be placed on average. Newton's method, kept
+     * inside a shrinking bracket since the mines placed only go up with the
+     * odds. Also fills in logCounts.
+     * @param left the mines not yet proven
+     * @param interior the hidden spaces away from the frontier
+     * @return the log odds
+     */
+    private double solveTilt(int left, int interior) {
+        int components = cons.compCount;
+        int countSize = countOff[components];
+        if (logCounts.length < countSize) {
+            double[] newLogCounts = new double[countSize];
+            double[] newTilted = new double[countSize];
+            logCounts = newLogCounts;
+            tilted = newTilted;
+        }
+        for (int k = 0; k < countSize; k++) {
+            logCounts[k] = counts[k] > 0 ? Math.log(counts[k]) : Double.NEGATIVE_INFINITY;
+        }
+        double low = -MAX_TILT;
+        double high = MAX_TILT;
+        double start = Math.min(Math.max((double) left / Math.max(cons.unknown, 1), 1e-9), 1 - 1e-9);
+        double tilt = Math.log(start / (1 - start));
+        for (int step = 0; step < 100 && high - low > 1e-12; step++) {
+            double p = 1 / (1 + Math.exp(-tilt));
+            double excess = interior * p - left;
+            double slope = interior * p * (1 - p);
+            for (int c = 0; c < components; c++) {
+                int base = countOff[c];
+                int n = countOff[c + 1] - base - 1;
+                double shift = shift(c, tilt);
+                double total = 0;
+                double mean = 0;
+                double square = 0;
+                for (int k = 0; k <= n; k++) {
+                    double weight = Math.exp(logCounts[base + k] + k * tilt - shift);
+                    total += weight;
+                    mean += weight * k;
+                    square += weight * k * k;
+                }
+                if (total > 0) {
+                    mean /= total;
+                    excess += mean;
+                    slope += Math.max(square / total - mean * mean, 0);
+                }
+            }
+            if (Math.abs(excess) < 1e-9) {
+                break;
+            }
+            if (excess > 0) {
+                high = tilt;
+            } else {
+                low = tilt;
+            }
+            double next = slope > 0 ? tilt - excess / slope : Double.NaN;
+            tilt = next > low && next < high ? next : (low + high) / 2;
+        }
+        return tilt;
+    }
+
+    /**
+     * Combines the components exactly. Every component's counts are
+     * weighted by the odds to the power of their mines and the interior's
+     * ways by the odds to the power of the mines left to it, which changes
+     * none of the products but keeps their terms close to 1, where they
+     * would otherwise underflow on big boards.
+     * @param tilt the log odds from solveTilt
+     * @return false if the products are too big or it ran out of time
+     */
+    private boolean combineExact(int frontier, int left, int interior, double tilt, long deadline) {
+        int components = cons.compCount;
+        // Prefix and suffix products of the components' counts, so each can be left out in turn.
+        // The product of c components has countOff[c] - c + 1 terms, all of them are kept in two flat arrays.
+        if (!sizeProducts(components)) {
+            return false;
+        }
+        // ways[K] is proportional to the ways to place the other left - K mines in the interior
+        interiorWays(frontier, left, interior, tilt);
+        for (int c = 0; c < components; c++) {
+            int base = countOff[c];
+            double shift = shift(c, tilt);
+            for (int k = 0; k < countOff[c + 1] - base; k++) {
+                tilted[base + k] = Math.exp(logCounts[base + k] + k * tilt - shift);
+            }
+        }
+        prefix[0] = 1;
+        for (int c = 0; c < components; c++) {
+            if (convolve(prefix, prefixOff[c], prefixOff[c + 1] - prefixOff[c], tilted, countOff[c],
+                    countOff[c + 1] - countOff[c], prefix, prefixOff[c + 1], deadline) < 0) {
+                return false;
+            }
+        }
+        suffix[suffixOff[components]] = 1;
+        for (int c = components - 1; c >= 0; c--) {
+            if (convolve(suffix, suffixOff[c + 1], suffixLength(c + 1), tilted, countOff[c],
+                    countOff[c + 1] - countOff[c], suffix, suffixOff[c], deadline) < 0) {
+                return false;
+            }
+        }
+
+        for (int c = 0; c < components; c++) {
+            int n = cons.compStart[c + 1] - cons.compStart[c];
+            int othersLength = convolve(prefix, prefixOff[c], prefixOff[c + 1] - prefixOff[c], suffix,
+                    suffixOff[c + 1], suffixLength(c + 1), others, 0, deadline);
+            if (othersLength < 0) {
+                return false;
+            }
+            // rest[k], the weight of everything else when this component has k mines, taking the odds back off
+            double shift = shift(c, tilt);
+            for (int k = 0; k <= n; k++) {
+                if ((k & 15) == 0 && System.nanoTime() > deadline) {
+                    return false;
+                }
+                double weight = 0;
+                for (int m = 0; m < othersLength && k + m <= frontier; m++) {
+                    weight += others[m] * ways[k + m];
+                }
+                rest[k] = weight * Math.exp(Math.min(k * tilt - shift, 700));
+            }
+            spread(c, rest);
+        }
+        if (interior > 0) {
+            int all = prefixOff[components];
+            int allLength = prefixOff[components + 1] - all;
+            double weight = 0;
+            double expected = 0;
+            for (int k = 0; k < allLength && k <= frontier; k++) {
+                weight += prefix[all + k] * ways[k];
+                expected += prefix[all + k] * ways[k] * (left - k);
+            }
+            fillInterior(weight > 0 ? expected / weight / interior : (double) left / cons.unknown);
+        }
+        return true;
+    }
+
+    /**
+     * Combines the components as if every space away from the frontier
+     * were a mine on its own with the odds from solveTilt. That takes time
+     * in proportion to the frontier, and the more spaces there are the
+     * closer it comes to the exact combination.
+     * @param interior the hidden spaces away from the frontier
+     * @param tilt the log odds
+     */
+    private void combineTilted(int interior, double tilt) {
+        int components = cons.compCount;
+        for (int c = 0; c < components; c++) {
+            int n = countOff[c + 1] - countOff[c] - 1;
+            double shift = shift(c, tilt);
+            for (int k = 0; k <= n; k++) {
+                rest[k] = Math.exp(Math.min(k * tilt - shift, 700));
+            }
+            spread(c, rest);
+        }
+        if (interior > 0) {
+            fillInterior(1 / (1 + Math.exp(-tilt)));
+        }
+    }
+
+    /**
+     * Gets the log of a component's largest count weighted by the odds
+     * @param c the component
+     * @param tilt the log odds
+     * @return the largest log count plus mines times the log odds
+     */
+    private double shift(int c, double tilt) {
+        int base = countOff[c];
+        int n = countOff[c + 1] - base - 1;
+        double shift = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k <= n; k++) {
+            shift = Math.max(shift, logCounts[base + k] + k * tilt);
+        }
+        return shift == Double.NEGATIVE_INFINITY ? 0 : shift;
+    }
+
+    /**
+     * Fills in the probabilities of a component's spaces
+     * @param c the component
+     * @param rest rest[k], the weight of everything else when the component has k mines
+     */
+    private void spread(int c, double[] rest) {
+        int start = cons.compStart[c];
+        int n = cons.compStart[c + 1] - start;
+        int countBase = countOff[c];
+        int width = hitWidth[c];
+        int columns = n / width + 1;
+        double total = 0;
+        for (int k = 0; k <= n; k++) {
+            total += counts[countBase + k] * rest[k];
+        }
+        double[] column = rest;
+        if (width > 1) {
+            // Hits are only kept per column, the mine counts in it weighted by their counts
+            column = others;
+            for (int b = 0; b < columns; b++) {
+                double weight = 0;
+                double solutions = 0;
+                for (int k = b * width; k <= n && k < (b + 1) * width; k++) {
+                    weight += counts[countBase + k] * rest[k];
+                    solutions += counts[countBase + k];
+                }
+                column[b] = solutions > 0 ? weight / solutions : 0;
+            }
+        }
+        for (int d = 0; d < n; d++) {
+            double mine = 0;
+            int row = hitOff[c] + d * columns;
+            for (int b = 0; b < columns; b++) {
+                mine += hits[row + b] * column[b];
+            }
+            probability[cons.compCells[start + d]] = total > 0 ? Math.min(mine / total, 1) : 0.5;
+        }
+    }
+
+    /**
+     * Sets the probability of every hidden space away from the frontier
+     * @param p the probability
+     */
+    private void fillInterior(double p) {
+        for (int i = 0; i < cons.size; i++) {
+            if (cons.state[i] == Constraints.HIDDEN && !cons.isFrontier(i)) {
+                probability[i] = p;
+            }
+        }
+    }
+
+    /**
+     * Lays out the prefix and suffix products and sizes their arrays
+     * @param components the number of components
+     * @return false if the products have more than MAX_PRODUCT terms
+     */
+    private boolean sizeProducts(int components) {
+        long prefixSize = 0;
+        long suffixSize = 0;
+        for (int c = 0; c <= components; c++) {
+            prefixSize += countOff[c] - c + 1;
+            suffixSize += suffixLength(c);
+        }
+        if (prefixSize > MAX_PRODUCT || suffixSize > MAX_PRODUCT) {
+            return false;
+        }
+        if (prefixOff.length < components + 2) {
+            int[] newPrefixOff = new int[components + 2];
+            int[] newSuffixOff = new int[components + 2];
+            prefixOff = newPrefixOff;
+            suffixOff = newSuffixOff;
+        }
+        int offset = 0;
+        for (int c = 0; c <= components; c++) {
+            prefixOff[c] = offset;
+            offset += countOff[c] - c + 1;
+        }
+        prefixOff[components + 1] = offset;
+        offset = 0;
+        for (int c = components; c >= 0; c--) {
+            suffixOff[c] = offset;
+            offset += suffixLength(c);
+        }
+        if (prefix.length < prefixSize) {
+            prefix = new double[(int) prefixSize];
+        }
+        if (suffix.length < suffixSize) {
+            suffix = new double[(int) suffixSize];
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of terms in the product of the components from c on
+     * @param c the first component of the product
+     * @return the number of terms
+     */
+    private int suffixLength(int c) {
+        int components = cons.compCount;
+        return countOff[components] - countOff[c] - (components - c) + 1;
+    }
+
+    /**
+     * Fills ways with the relative number of ways left - K mines fit in the
+     * interior, for each number K of mines in the frontier, divided by the
+     * odds of a mine to the power of K
+     */
+    private void interiorWays(int frontier, int left, int interior, double tilt) {
+        if (ways.length < frontier + 1) {
+            ways = new double[frontier + 1];
+        }
+        Arrays.fill(ways, 0, frontier + 1, 0);
+        int lowest = Math.max(0, left - interior);
+        int highest = Math.min(frontier, left);
+        if (lowest > highest) {
+            return;
+        }
+        // Logs of C(interior, left - K), relative to K = lowest
+        double log = 0;
+        double top = Double.NEGATIVE_INFINITY;
+        for (int k = lowest; k <= highest; k++) {
+            ways[k] = log - k * tilt;
+            top = Math.max(top, ways[k]);
+            int m = left - k;
+            if (m > 0) {
+                log += Math.log(m) - Math.log(interior - m + 1.0);
+            }
+        }
+        for (int k = lowest; k <= highest; k++) {
+            ways[k] = Math.exp(ways[k] - top);
+        }
+    }
+
+    /**
+     * Scales a component's counts so the largest is 1, keeping its hits in
+     * proportion
+     */
+    private static void normalize(double[] counts, int off, int length, double[] hits, int hitOff, int hitLength) {
+        double top = 0;
+        for (int k = 0; k < length; k++) {
+            top = Math.max(top, counts[off + k]);
+        }
+        if (top == 0) {
+            return;
+        }
+        for (int k = 0; k < length; k++) {
+            counts[off + k] /= top;
+        }
+        for (int k = 0; k < hitLength; k++) {
+            hits[hitOff + k] /= top;
+        }
+    }
+
+    /**
+     * Convolves two mine count polynomials into an array, scaled so the
+     * largest term is 1. The shorter one goes on the outside, so the time
+     * is checked between long rows.
+     * @return the number of terms written, or -1 if it ran past the deadline
+     */
+    private static int convolve(double[] a, int aOff, int aLength, double[] b, int bOff, int bLength,
+                                double[] out, int outOff, long deadline) {
+        if (aLength > bLength) {
+            return convolve(b, bOff, bLength, a, aOff, aLength, out, outOff, deadline);
+        }
+        int length = aLength + bLength - 1;
+        Arrays.fill(out, outOff, outOff + length, 0);
+        for (int i = 0; i < aLength; i++) {
+            if ((i & 15) == 0 && System.nanoTime() > deadline) {
+                return -1;
+            }
+            double x = a[aOff + i];
+            if (x == 0) {
+                continue;
+            }
+            for (int j = 0; j < bLength; j++) {
+                out[outOff + i + j] += x * b[bOff + j];
+            }
+        }
+        double top = 0;
+        for (int i = 0; i < length; i++) {
+            top = Math.max(top, out[outOff + i]);
+        }
+        if (top > 0) {
+            for (int i = 0; i < length; i++) {
+                out[outOff + i] /= top;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Finds the hidden space least likely to be a mine, the first in
+     * reading order on a tie
+     */
+    private void findSafest() {
+        safest = -1;
+        for (int i = 0; i < cons.size; i++) {
+            byte state = cons.state[i];
+            if ((state == Constraints.HIDDEN || state == Constraints.SAFE)
+                    && (safest < 0 || probability[i] < probability[safest])) {
+                safest = i;
+            }
+        }
+    }
+
+    private void ensureStates(int states, int poly) {
+        if (keys.length < states) {
+            int size = Math.max(states, keys.length * 2);
+            long[] newKeys = Arrays.copyOf(keys, size);
+            int[] newNext0 = Arrays.copyOf(next0, size);
+            int[] newNext1 = Arrays.copyOf(next1, size);
+            int[] newForwardOff = Arrays.copyOf(forwardOff, size);
+            int[] newBackwardOff = Arrays.copyOf(backwardOff, size);
+            keys = newKeys;
+            next0 = newNext0;
+            next1 = newNext1;
+            forwardOff = newForwardOff;
+            backwardOff = newBackwardOff;
+        }
+        if (forward.length < poly) {
+            forward = Arrays.copyOf(forward, Math.max(poly, forward.length * 2));
+        }
+        int n = cons.compStart[cons.compCount];
+        if (layerStart.length < n + 2) {
+            layerStart = new int[n + 2];
+        }
+    }
+
+    private int nextTableStamp() {
+        if (tableStamp == Integer.MAX_VALUE) {
+            Arrays.fill(tableStamps, 0);
+            tableStamp = 0;
+        }
+        return ++tableStamp;
+    }
+
+    private int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 40) & (tableKeys.length - 1);
+    }
+
+    /**
+     * Checks whether the last calculation was exact
+     * @return false if any component had to be sampled
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Gets the chance a space is a mine
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the probability, 0 for revealed spaces
+     */
+    public double getProbability(int x, int y) {
+        return probability[cons.index(x, y)];
+    }
+
+    /**
+     * Gets the x coordinate of the hidden space least likely to be a mine
+     * @return the x coordinate, or -1 if nothing is hidden
+     */
+    public int getSafestX() {
+        return safest < 0 ? -1 : cons.x(safest);
+    }
+
+    /**
+     * Gets the y coordinate of the hidden space least likely to be a mine
+     * @return the y coordinate, or -1 if nothing is hidden
+     */
+    public int getSafestY() {
+        return safest < 0 ? -1 : cons.y(safest);
+    }
+}
@@ -0,0 +1,383 @@
+package minesweeper.solver;
+
+import minesweeper.Board;
+import minesweeper.util.Cells;
+
+/**
+ * Deterministic logic solver that finds the spaces a player can prove are
+ * safe or mines, using only what a player can see of the board.
+ * Deductions are made in three steps, each only tried when the ones before
+ * it found no safe space:
+ * <ol>
+ * <li>single numbers, all of a number's hidden neighbours are safe or all are mines</li>
+ * <li>pairs of overlapping numbers, including the subset rule</li>
+ * <li>each independent group of numbers is checked as a whole, a space is
+ * proven when no solution of the group gives it the other value</li>
+ * </ol>
+ * Everything is settled when the mines left are none or all of the unknown
+ * spaces.
+ * A solver keeps its working arrays between calls, so it allocates nothing
+ * unless a bigger board is solved. Solvers aren't thread safe, use one per
+ * thread.
+ */
+public final class Solver {
+    /** Components with more spaces than this are not searched */
+    public static final int MAX_SEARCHED = 64;
+    /** Search steps allowed per component before it's given up on */
+    private static final int NODE_BUDGET = 1 << 14;
+    private static final int FOUND = 0;
+    private static final int NONE = 1;
+    private static final int BUDGET = 2;
+    private static final int FIND = 0;
+    private static final int FEWEST = 1;
+    private static final int MOST = 2;
+
+    private final Constraints cons = new Constraints();
+    // Search state, indexed by constraint
+    private int[] placed = new int[0];
+    private int[] open = new int[0];
+    // Search state, indexed by position in the component
+    private final byte[] value = new byte[MAX_SEARCHED];
+    private final boolean[] seenMine = new boolean[MAX_SEARCHED];
+    private final boolean[] seenSafe = new boolean[MAX_SEARCHED];
+    private final int[] proof = new int[MAX_SEARCHED * 2];
+    private int nodes;
+    private int mode;
+    private int best;
+    private int mines;
+    // Mines the component being searched has to place
+    private int low;
+    private int high;
+    // Fewest and most mines each component holds, indexed by component
+    private int[] fewestOf = new int[0];
+    private int[] mostOf = new int[0];
+    private int start;
+    private int length;
+
+    /**
+     * Finds the spaces that can be proven safe or mines on a board.
+     * Flags are ignored, they're the player's guesses.
+     * @param board the board to solve
+     * @return the number of spaces proven
+     */
+    public int solve(Board board) {
+        cons.load(board);
+        cons.reduce();
+        settleByCount();
+        if (cons.safeCount == 0 && cons.unknown > 0) {
+            enumerate();
+            cons.reduce();
+            settleByCount();
+        }
+        return cons.safeCount + cons.minedCount;
+    }
+
+    /**
+     * Settles everything unknown when the mines left are none or all of it
+     */
+    private void settleByCount() {
+        int left = cons.minesLeft();
+        if (cons.unknown == 0 || (left != 0 && left != cons.unknown)) {
+            return;
+        }
+        for (int i = 0; i < cons.size; i++) {
+            if (cons.state[i] == Constraints.HIDDEN) {
+                cons.settle(i, left != 0);
+            }
+        }
+        cons.reduce();
+    }
+
+    /**
+     * Checks the constraints of each component together, settling the
+     * spaces that have the same value in every solution. A solution of one
+     * component only counts if the mines left can be shared out over the
+     * other components and the spaces away from the numbers.
+     */
+    private void enumerate() {
+        cons.split();
+        if (placed.length < cons.size) {
+            placed = new int[cons.size];
+            open = new int[cons.size];
+            fewestOf = new int[cons.size];
+            mostOf = new int[cons.size];
+        }
+        int left = cons.minesLeft();
+        int frontier = cons.compStart[cons.compCount];
+        int interior = cons.unknown - frontier;
+        // The spaces away from the numbers can only be settled when the frontier
+        // might hold every mine left, or leave exactly enough to fill them
+        boolean counting = interior > 0 && (left <= frontier || left - interior >= 0);
+        // The mine count only rules out solutions when the frontier could
+        // hold more than the mines left, or leave more than the rest can take
+        boolean bounded = frontier > left || left > interior;
+        // First the fewest and most mines each component can hold on its own,
+        // the whole component when it can't be or needn't be searched
+        int fewest = 0;
+        int most = 0;
+        low = Integer.MIN_VALUE;
+        high = Integer.MAX_VALUE;
+        for (int c = 0; c < cons.compCount; c++) {
+            start = cons.compStart[c];
+            length = cons.compStart[c + 1] - start;
+            fewestOf[c] = 0;
+            mostOf[c] = length;
+            if (length > MAX_SEARCHED) {
+                counting = false;
+            } else if (bounded || counting) {
+                reset(c);
+                nodes = 0;
+                mines = left;
+                mode = FEWEST;
+                best = length + 1;
+                boolean searched = search(0, left, -1, 0) != BUDGET && best <= length;
+                int fewestHere = best;
+                mode = MOST;
+                best = -1;
+                searched &= search(0, left, -1, 0) != BUDGET;
+                if (searched) {
+                    fewestOf[c] = fewestHere;
+                    mostOf[c] = best;
+                } else {
+                    counting = false;
+                }
+            }
+            fewest += fewestOf[c];
+            most += mostOf[c];
+        }
+        int allFewest = fewest;
+        int allMost = most;
+        mode = FIND;
+        for (int c = 0; c < cons.compCount; c++) {
+            start = cons.compStart[c];
+            length = cons.compStart[c + 1] - start;
+            if (length > MAX_SEARCHED) {
+                continue;
+            }
+            reset(c);
+            for (int k = 0; k < length; k++) {
+                seenMine[k] = false;
+                seenSafe[k] = false;
+            }
+            nodes = 0;
+            mines = cons.minesLeft();
+            low = mines - interior - (allMost - mostOf[c]);
+            high = mines - (allFewest - fewestOf[c]);
+            int proven = 0;
+            if (search(0, mines, -1, 0) != FOUND) {
+                continue;
+            }
+            // A space is proven when no solution gives it the value it hasn't been seen with
+            for (int k = 0; k < length; k++) {
+                if (seenMine[k] && seenSafe[k]) {
+                    continue;
+                }
+                int opposite = seenMine[k] ? 0 : 1;
+                int result = search(0, mines, k, opposite);
+                if (result == BUDGET) {
+                    break;
+                }
+                if (result == NONE) {
+                    proof[proven++] = cons.compCells[start + k];
+                    proof[proven++] = 1 - opposite;
+                }
+            }
+            // Settled only now, settling changes the constraints the searches use.
+            // Proven mines are in every solution, so they leave the other
+            // components' bounds as they were.
+            for (int k = 0; k < proven; k += 2) {
+                cons.settle(proof[k], proof[k + 1] == 1);
+                if (proof[k + 1] == 1) {
+                    allFewest--;
+                    allMost--;
+                    fewestOf[c]--;
+                    mostOf[c]--;
+                }
+            }
+        }
+        if (counting && (fewest == left || most == left - interior)) {
+            boolean mine = fewest != left;
+            for (int i = 0; i < cons.size; i++) {
+                if (cons.state[i] == Constraints.HIDDEN && !cons.isFrontier(i)) {
+                    cons.settle(i, mine);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears the search counts of a component's constraints
+     * @param c the component
+     */
+    private void reset(int c) {
+        for (int k = cons.compConStart[c]; k < cons.compConStart[c + 1]; k++) {
+            int con = cons.compCons[k];
+            placed[con] = 0;
+            open[con] = cons.conSize[con];
+        }
+    }
+
+    /**
+     * Searches the component depth first in its breadth first order. FIND
+     * stops at the first solution, FEWEST and MOST search every solution
+     * that could beat the best so far, leaving the mine count in best.
+     * Solutions placing fewer than low or more than high mines don't count.
+     * @param depth the position in the component
+     * @param left the mines left to place
+     * @param forced the position whose value is fixed, or -1
+     * @param forcedValue the value of the forced position
+     * @return FOUND, NONE, or BUDGET if the search ran out of steps
+     */
+    private int search(int depth, int left, int forced, int forcedValue) {
+        if (++nodes > NODE_BUDGET) {
+            return BUDGET;
+        }
+        int placedHere = mines - left;
+        if ((mode == FEWEST && placedHere >= best) || (mode == MOST && placedHere + length - depth <= best)) {
+            return NONE;
+        }
+        if (placedHere > high || placedHere + length - depth < low) {
+            return NONE;
+        }
+        if (depth == length) {
+            if (mode != FIND) {
+                best = placedHere;
+                return NONE;
+            }
+            for (int k = 0; k < length; k++) {
+                if (value[k] == 1) {
+                    seenMine[k] = true;
+                } else {
+                    seenSafe[k] = true;
+                }
+            }
+            return FOUND;
+        }
+        int cell = cons.compCells[start + depth];
+        for (int v = 0; v <= 1 && v <= left; v++) {
+            if (depth == forced && v != forcedValue) {
+                continue;
+            }
+            value[depth] = (byte) v;
+            int result = assign(cell, v, 1) ? search(depth + 1, left - v, forced, forcedValue) : NONE;
+            assign(cell, v, -1);
+            if (result != NONE) {
+                return result;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Assigns or unassigns a space in each of its constraints
+     * @param cell the space
+     * @param v 1 for a mine, 0 for safe
+     * @param sign 1 to assign, -1 to undo
+     * @return true if every constraint can still be met
+     */
+    private boolean assign(int cell, int v, int sign) {
+        boolean ok = true;
+        for (int k = 0; k < cons.cellConCount[cell]; k++) {
+            int con = cons.cellCons[cell * 8 + k];
+            placed[con] += v * sign;
+            open[con] -= sign;
+            int need = cons.conMines[con];
+            if (placed[con] > need || placed[con] + open[con] < need) {
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Gets the number of spaces the last solve proved safe
+     * @return the number of safe spaces
+     */
+    public int getSafeCount() {
+        return cons.safeCount;
+    }
+
+    /**
+     * Gets the x coordinate of a proven safe space
+     * @param i the position in the list, in the order they were found
+     * @return the x coordinate
+     */
+    public int getSafeX(int i) {
+        return cons.x(cons.safe[i]);
+    }
+
+    /**
+     * Gets the y coordinate of a proven safe space
+     * @param i the position in the list, in the order they were found
+     * @return the y coordinate
+     */
+    public int getSafeY(int i) {
+        return cons.y(cons.safe[i]);
+    }
+
+    /**
+     * Gets a proven safe space as a packed cell
+     * @param i the position in the list, in the order they were found
+     * @return the packed cell, see Cells
+     */
+    public long getSafeCell(int i) {
+        int cell = cons.safe[i];
+        return Cells.pack(cons.x(cell), cons.y(cell));
+    }
+
+    /**
+     * Gets the number of spaces the last solve proved to be mines
+     * @return the number of mines
+     */
+    public int getMineCount() {
+        return cons.minedCount;
+    }
+
+    /**
+     * Gets the x coordinate of a proven mine
+     * @param i the position in the list, in the order they were found
+     * @return the x coordinate
+     */
+    public int getMineX(int i) {
+        return cons.x(cons.mined[i]);
+    }
+
+    /**
+     * Gets the y coordinate of a proven mine
+     * @param i the position in the list, in the order they were found
+     * @return the y coordinate
+     */
+    public int getMineY(int i) {
+        return cons.y(cons.mined[i]);
+    }
+
+    /**
+     * Gets a proven mine as a packed cell
+     * @param i the position in the list, in the order they were found
+     * @return the packed cell, see Cells
+     */
+    public long getMineCell(int i) {
+        int cell = cons.mined[i];
+        return Cells.pack(cons.x(cell), cons.y(cell));
+    }
+
+    /**
+     * Checks whether the last solve proved a space safe
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return true if the space is proven safe
+     */
+    public boolean isSafe(int x, int y) {
+        return cons.state[cons.index(x, y)] == Constraints.SAFE;
+    }
+
+    /**
+     * Checks whether the last solve proved a space to be a mine
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return true if the space is a proven mine
+     */
+    public boolean isMine(int x, int y) {
+        return cons.state[cons.index(x, y)] == Constraints.MINE;
+    }
+}
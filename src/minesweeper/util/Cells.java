@@ -0,0 +1,40 @@
+package minesweeper.util;
+
+/**
+ * Packs the coordinates of a space into a single long, y in the high half
+ * and x in the low half, so cells can be passed around, stored and used as
+ * keys without allocating. Works for any board, including ones too big for
+ * an int index.
+ */
+public final class Cells {
+    private Cells() {
+    }
+
+    /**
+     * Packs two coordinates into one long as y &lt;&lt; 32 | x
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the packed cell
+     */
+    public static long pack(int x, int y) {
+        return ((long) y << 32) | (x & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the x coordinate of a packed cell
+     * @param cell the packed cell
+     * @return the x coordinate
+     */
+    public static int x(long cell) {
+        return (int) cell;
+    }
+
+    /**
+     * Gets the y coordinate of a packed cell
+     * @param cell the packed cell
+     * @return the y coordinate
+     */
+    public static int y(long cell) {
+        return (int) (cell >>> 32);
+    }
+}
@@ -0,0 +1,138 @@
+package minesweeper.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A growable ring buffer of ints, usable as a queue or a stack without
+ * boxing. Cleared deques keep their array.
+ */
+public final class IntDeque {
+    private int[] items;
+    private int head;
+    private int size;
+
+    /**
+     * Creates an empty deque
+     */
+    public IntDeque() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty deque with room for some items before it grows
+     * @param capacity the starting capacity, rounded up to a power of two
+     */
+    public IntDeque(int capacity) {
+        items = new int[Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1];
+    }
+
+    /**
+     * Adds an item to the front
+     * @param item the item
+     */
+    public void addFirst(int item) {
+        grow();
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+        size++;
+    }
+
+    /**
+     * Adds an item to the back
+     * @param item the item
+     */
+    public void addLast(int item) {
+        grow();
+        items[(head + size) & (items.length - 1)] = item;
+        size++;
+    }
+
+    /**
+     * Removes the item at the front
+     * @return the item
+     * @throws NoSuchElementException if the deque is empty
+     */
+    public int pollFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int item = items[head];
+        head = (head + 1) & (items.length - 1);
+        size--;
+        return item;
+    }
+
+    /**
+     * Removes the item at the back
+     * @return the item
+     * @throws NoSuchElementException if the deque is empty
+     */
+    public int pollLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        size--;
+        return items[(head + size) & (items.length - 1)];
+    }
+
+    /**
+     * Gets an item without removing it
+     * @param i the position from the front
+     * @return the item
+     */
+    public int get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + size);
+        }
+        return items[(head + i) & (items.length - 1)];
+    }
+
+    /**
+     * Gets the number of items
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether there are no items
+     * @return true if the deque is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every item
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Doubles the array when it's full, unwrapping the items to its start
+     */
+    private void grow() {
+        if (size < items.length) {
+            return;
+        }
+        int[] grown = new int[items.length * 2];
+        int firstPart = items.length - head;
+        System.arraycopy(items, head, grown, 0, firstPart);
+        System.arraycopy(items, 0, grown, firstPart, head);
+        items = grown;
+        head = 0;
+    }
+
+    @Override
+    public String toString() {
+        int[] copy = new int[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = get(i);
+        }
+        return Arrays.toString(copy);
+    }
+}
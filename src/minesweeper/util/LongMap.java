@@ -0,0 +1,340 @@
+package minesweeper.util;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from long keys, usually packed cells, to objects, without
+ * boxing the keys. Open addressing with linear probing, kept at most half
+ * full. A map can be bounded, it then evicts its least recently used entry
+ * to make room for a new one. A bounded map threads its entries on a list
+ * in order of use, kept in two int arrays beside the table, so a use or an
+ * eviction takes constant time.
+ * @param <V> the type of the values
+ */
+public final class LongMap<V> {
+    private final int maxSize;
+    private long[] keys;
+    private Object[] values;
+    // Slots of the entries used just before and just after each one, -1 at the ends
+    private int[] older;
+    private int[] newer;
+    private int oldest = -1;
+    private int newest = -1;
+    private int size;
+
+    /**
+     * Creates an unbounded map
+     */
+    public LongMap() {
+        this(0);
+    }
+
+    /**
+     * Creates a map
+     * @param maxSize the most entries kept before the least recently used
+     * is evicted, or 0 for no limit
+     */
+    public LongMap(int maxSize) {
+        this.maxSize = maxSize;
+        keys = new long[16];
+        values = new Object[16];
+        if (maxSize > 0) {
+            older = new int[16];
+            newer = new int[16];
+        }
+    }
+
+    /**
+     * Gets the value of a key, counting as a use of it
+     * @param key the key
+     * @return the value, or null if the key isn't in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        if (older != null && slot != newest) {
+            unlink(slot);
+            linkNewest(slot);
+        }
+        return (V) values[slot];
+    }
+
+    /**
+     * Sets the value of a key, evicting the least recently used entry of
+     * a full bounded map
+     * @param key the key
+     * @param value the value, not null
+     */
+    public void put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("LongMap values can't be null");
+        }
+        int slot = find(key);
+        if (slot < 0) {
+            if (maxSize > 0 && size >= maxSize) {
+                evict();
+            }
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            slot = ~find(key);
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+            if (older != null) {
+                linkNewest(slot);
+            }
+            return;
+        }
+        values[slot] = value;
+        if (older != null && slot != newest) {
+            unlink(slot);
+            linkNewest(slot);
+        }
+    }
+
+    /**
+     * Removes a key
+     * @param key the key
+     * @return the value it had, or null if the key wasn't in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        V value = (V) values[slot];
+        removeSlot(slot);
+        return value;
+    }
+
+    /**
+     * Gets the least recently used entry of a bounded map, without it
+     * counting as a use
+     * @return its value, or null if the map is empty or unbounded
+     */
+    @SuppressWarnings("unchecked")
+    public V peekOldest() {
+        return oldest < 0 ? null : (V) values[oldest];
+    }
+
+    /**
+     * Removes the least recently used entry of a bounded map, for owners
+     * that have to let go of more than the entry when it goes
+     * @return its value, or null if the map is empty or unbounded
+     */
+    @SuppressWarnings("unchecked")
+    public V removeOldest() {
+        if (oldest < 0) {
+            return null;
+        }
+        V value = (V) values[oldest];
+        removeSlot(oldest);
+        return value;
+    }
+
+    /**
+     * Gets the number of entries
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every entry, keeping the table
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+        oldest = -1;
+        newest = -1;
+    }
+
+    /**
+     * Finds the next slot holding an entry, for walking the map with keyAt
+     * and valueAt. The map must not be changed during the walk.
+     * @param from the slot to start at, 0 for the first entry
+     * @return the slot, or -1 if there are no more entries
+     */
+    public int nextSlot(int from) {
+        for (int slot = from; slot < values.length; slot++) {
+            if (values[slot] != null) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the key in a slot found with nextSlot
+     * @param slot the slot
+     * @return the key
+     */
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Gets the value in a slot found with nextSlot
+     * @param slot the slot
+     * @return the value
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    /**
+     * Finds the slot of a key
+     * @param key the key
+     * @return the slot holding the key, or ~slot of the empty slot where it would go
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    /**
+     * Empties a slot, moving back the entries after it that would no
+     * longer be found
+     * @param slot the slot
+     */
+    private void removeSlot(int slot) {
+        if (older != null) {
+            unlink(slot);
+        }
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int home = hash(keys[next]) & mask;
+            // Move the entry into the gap unless its home lies between the gap and it
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                if (older != null) {
+                    relink(next, gap);
+                }
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = null;
+        size--;
+    }
+
+    /**
+     * Removes the least recently used entry
+     */
+    private void evict() {
+        if (oldest >= 0) {
+            removeSlot(oldest);
+        }
+    }
+
+    /**
+     * Takes a slot off the use list
+     * @param slot the slot
+     */
+    private void unlink(int slot) {
+        int before = older[slot];
+        int after = newer[slot];
+        if (before >= 0) {
+            newer[before] = after;
+        } else {
+            oldest = after;
+        }
+        if (after >= 0) {
+            older[after] = before;
+        } else {
+            newest = before;
+        }
+    }
+
+    /**
+     * Puts a slot at the most recently used end of the use list
+     * @param slot the slot
+     */
+    private void linkNewest(int slot) {
+        older[slot] = newest;
+        newer[slot] = -1;
+        if (newest >= 0) {
+            newer[newest] = slot;
+        } else {
+            oldest = slot;
+        }
+        newest = slot;
+    }
+
+    /**
+     * Gives an entry moved to another slot its place on the use list
+     * @param from the slot the entry was in
+     * @param to the slot it is in now
+     */
+    private void relink(int from, int to) {
+        int before = older[from];
+        int after = newer[from];
+        older[to] = before;
+        newer[to] = after;
+        if (before >= 0) {
+            newer[before] = to;
+        } else {
+            oldest = to;
+        }
+        if (after >= 0) {
+            older[after] = to;
+        } else {
+            newest = to;
+        }
+    }
+
+    /**
+     * Moves every entry into a bigger table, keeping the order of use
+     * @param capacity the new number of slots, a power of two
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldNewer = newer;
+        int first = oldest;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        if (oldNewer == null) {
+            for (int slot = 0; slot < oldValues.length; slot++) {
+                if (oldValues[slot] != null) {
+                    int to = ~find(oldKeys[slot]);
+                    keys[to] = oldKeys[slot];
+                    values[to] = oldValues[slot];
+                }
+            }
+            return;
+        }
+        older = new int[capacity];
+        newer = new int[capacity];
+        oldest = -1;
+        newest = -1;
+        for (int slot = first; slot >= 0; slot = oldNewer[slot]) {
+            int to = ~find(oldKeys[slot]);
+            keys[to] = oldKeys[slot];
+            values[to] = oldValues[slot];
+            linkNewest(to);
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}